@@ -0,0 +1,48 @@
+package video.stream.application;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.stream.application.content.BandwidthLimiter;
+import video.stream.application.content.ChunkSizePolicy;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.content.ReadAheadPrefetcher;
+import video.stream.application.feign.VideoPathCache;
+import video.stream.application.feign.dto.VideoPath;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadataCache;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.mp4.KeyframeIndexCache;
+import video.stream.application.mp4.Mp4LayoutCache;
+
+final class BenchmarkServices {
+
+    private BenchmarkServices() {
+    }
+
+    static VideoStreamService videoStreamService(Path file, boolean chunkCacheEnabled) {
+        StreamMetrics streamMetrics = new StreamMetrics(new SimpleMeterRegistry(), 1000);
+        ChunkCache chunkCache = new ChunkCache(chunkCacheEnabled, 256 * 1024 * 1024, 256 * 1024, 2);
+        FileChannelPool fileChannelPool = new FileChannelPool(1024, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        LocalDiskTier localDiskTier = new LocalDiskTier(false, "", 0, 4 * 1024 * 1024, 0, 1, 1, fileChannelPool);
+        return new VideoStreamService(
+                new VideoPathCache(videoId -> new VideoPath(file.toString()), 100, Duration.ofMinutes(10),
+                        Duration.ofMinutes(8)),
+                new FileMetadataCache(100, Duration.ofSeconds(5)),
+                new ChunkSizePolicy(VideoStreamService.BYTE_RANGE, VideoStreamService.BYTE_RANGE,
+                        Duration.ofSeconds(2)),
+                new FileRegionWriter(chunkCache, fileChannelPool, localDiskTier, streamMetrics),
+                new ReadAheadPrefetcher(false, 2, 32 * 1024 * 1024, 1, 1, chunkCache, fileChannelPool,
+                        localDiskTier, streamMetrics),
+                new Mp4LayoutCache(true, 32 * 1024 * 1024, 128 * 1024 * 1024, fileChannelPool),
+                new KeyframeIndexCache(64 * 1024 * 1024, fileChannelPool),
+                new HttpCachePolicy("public, max-age=3600"),
+                new BandwidthLimiter(0, 0, 1024 * 1024, 64 * 1024, streamMetrics),
+                streamMetrics,
+                100,
+                16);
+    }
+}
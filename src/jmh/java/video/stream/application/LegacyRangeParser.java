@@ -0,0 +1,42 @@
+package video.stream.application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Copy of the split based Range parser replaced by {@link RangeHeaderParser},
+ * kept as the baseline of {@link RangeParsingBenchmark}.
+ */
+final class LegacyRangeParser {
+
+    private static final String BYTES_PREFIX = "bytes=";
+
+    private LegacyRangeParser() {
+    }
+
+    static List<String[]> parse(String range) {
+        if (!range.startsWith(BYTES_PREFIX)) {
+            throw new IllegalArgumentException(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+        }
+        List<String[]> rangeSpecs = new ArrayList<>();
+        for (String rangeSpec : range.substring(BYTES_PREFIX.length()).split(",", -1)) {
+            String[] ranges = rangeSpec.trim().split("-", -1);
+            if (ranges.length != 2 || ranges[0].isEmpty() && ranges[1].isEmpty()) {
+                throw new IllegalArgumentException(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+            }
+            for (String value : ranges) {
+                if (!value.isEmpty() && !StringUtils.isNumeric(value)) {
+                    throw new IllegalArgumentException(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+                }
+            }
+            if (!ranges[0].isEmpty() && !ranges[1].isEmpty()
+                    && Long.parseLong(ranges[1]) < Long.parseLong(ranges[0])) {
+                throw new IllegalArgumentException(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+            }
+            rangeSpecs.add(ranges);
+        }
+        return rangeSpecs;
+    }
+}
@@ -0,0 +1,82 @@
+package video.stream.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import video.stream.application.content.ContentBody;
+
+/**
+ * End-to-end {@link VideoStreamService#prepareContent(String, Long)} including
+ * writing the body, against sparse temp files of 10 MB to 10 GB. The requested
+ * range is filled with random data, the rest of the file is a hole.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrepareContentBenchmark {
+
+    private static final int DATA_SIZE = 1024 * 1024;
+
+    @Param({ "10485760", "1073741824", "10737418240" })
+    public long fileSize;
+
+    @Param({ "0.0", "0.5", "0.99" })
+    public double offset;
+
+    @Param({ "false", "true" })
+    public boolean chunkCache;
+
+    private Path file;
+    private String range;
+    private VideoStreamService videoStreamService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("video-stream-benchmark", ".mp4");
+        long rangeStart = (long) (fileSize * offset);
+        byte[] data = new byte[DATA_SIZE];
+        new Random(rangeStart).nextBytes(data);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            randomAccessFile.setLength(fileSize);
+            randomAccessFile.seek(Math.min(rangeStart, fileSize - DATA_SIZE));
+            randomAccessFile.write(data);
+        }
+        range = "bytes=" + rangeStart + "-";
+        videoStreamService = BenchmarkServices.videoStreamService(file, chunkCache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long prepareAndWriteContent() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent(range, 1L);
+        response.getBody().writeTo(OutputStream.nullOutputStream());
+        return response.getBody().getContentLength();
+    }
+}
@@ -0,0 +1,66 @@
+package video.stream.application;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import video.stream.application.content.ByteRange;
+import video.stream.application.content.RangeSet;
+
+/**
+ * Range header parsing, resolution against the file size and Content-Range
+ * header construction, run for every chunk of every stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeParsingBenchmark {
+
+    private static final long FILE_SIZE = 4L * 1024 * 1024 * 1024;
+
+    @Param({ "bytes=0-", "bytes=178000-", "bytes=1000-2999999", "bytes=-500", "bytes=0-99,5000-5999,100000-" })
+    public String range;
+
+    private VideoStreamService videoStreamService;
+
+    @Setup
+    public void setUp() {
+        videoStreamService = BenchmarkServices.videoStreamService(Paths.get("unused.mp4"), false);
+    }
+
+    @Benchmark
+    public RangeSet parseRanges() {
+        return videoStreamService.getRanges(range);
+    }
+
+    @Benchmark
+    public List<String[]> parseRangesLegacy() {
+        return LegacyRangeParser.parse(range);
+    }
+
+    @Benchmark
+    public List<ByteRange> parseAndResolveRanges() {
+        return videoStreamService.getByteRanges(videoStreamService.getRanges(range), FILE_SIZE,
+                VideoStreamService.INIT_BYTE_RANGE, VideoStreamService.BYTE_RANGE);
+    }
+
+    @Benchmark
+    public String prepareContentRangeHeader() {
+        return videoStreamService.prepareContentRangeHeader(178000L, 458000L, FILE_SIZE);
+    }
+}
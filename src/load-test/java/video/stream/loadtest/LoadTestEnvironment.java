@@ -0,0 +1,134 @@
+package video.stream.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import video.stream.MovieNetVideoStreamServiceApplication;
+
+/**
+ * Runs the service in process against a stub {@code video-service} that
+ * resolves every video id to one of the generated sample files and serves the
+ * JWK set the player token is signed with.
+ */
+public class LoadTestEnvironment implements AutoCloseable {
+
+    private static final String KEY_ID = "load-test";
+    private static final Pattern VIDEO_ID = Pattern.compile("videoId=(\\d+)");
+
+    private final List<Path> sampleFiles;
+    private final RSAKey key;
+    private final HttpServer stub;
+    private final ConfigurableApplicationContext service;
+    private final URI baseUri;
+
+    public LoadTestEnvironment(Map<String, String> options) throws IOException, JOSEException {
+        this.sampleFiles = SampleFiles.generate(Path.of(options.getOrDefault("sample-dir", "target/load-test")),
+                Integer.parseInt(options.getOrDefault("files", "2")),
+                SampleFiles.parseSize(options.getOrDefault("file-size", "2g")));
+        this.key = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        this.stub = startStub();
+        this.baseUri = URI.create("http://localhost:" + findFreePort());
+        this.service = startService(options);
+    }
+
+    private HttpServer startStub() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String jwkSet = new JWKSet(key.toPublicJWK()).toString();
+        server.createContext("/.well-known/jwks.json", exchange -> respond(exchange, jwkSet));
+        server.createContext("/video/path", exchange -> {
+            Matcher matcher = VIDEO_ID.matcher(String.valueOf(exchange.getRequestURI().getQuery()));
+            long videoId = matcher.find() ? Long.parseLong(matcher.group(1)) : 1L;
+            Path file = sampleFiles.get((int) Math.floorMod(videoId - 1, (long) sampleFiles.size()));
+            respond(exchange, "{\"path\":\"" + file.toAbsolutePath().toString().replace("\\", "\\\\") + "\"}");
+        });
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-test-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private ConfigurableApplicationContext startService(Map<String, String> options) {
+        String stubUri = "http://localhost:" + stub.getAddress().getPort();
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=" + baseUri.getPort(),
+                "--eureka.client.enabled=false",
+                "--spring.cloud.discovery.client.simple.instances.video-service[0].uri=" + stubUri,
+                "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + stubUri + "/.well-known/jwks.json"));
+        options.entrySet().stream()
+                .filter(option -> option.getKey().startsWith("service."))
+                .forEach(option -> args.add("--" + option.getKey().substring(8) + "=" + option.getValue()));
+        return new SpringApplicationBuilder(MovieNetVideoStreamServiceApplication.class)
+                .run(args.toArray(new String[0]));
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    public int getVideoCount() {
+        return sampleFiles.size();
+    }
+
+    public String createToken() throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("load-test")
+                .claim("authorities", List.of("ROLE_USER"))
+                .issueTime(new Date())
+                .expirationTime(new Date(System.currentTimeMillis() + 24 * 3600_000L))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(KEY_ID).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    @Override
+    public void close() {
+        service.close();
+        stub.stop(0);
+    }
+}
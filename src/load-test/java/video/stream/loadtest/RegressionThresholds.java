@@ -0,0 +1,52 @@
+package video.stream.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits a load test run has to stay within. Every limit is optional and only
+ * checked when its option is given, so the same run can be used to explore
+ * and, with the limits of the last accepted run, to fail the build on a
+ * regression.
+ */
+public class RegressionThresholds {
+
+    private final Map<String, String> options;
+
+    public RegressionThresholds(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public List<String> check(StreamLoadTest.Report report) {
+        List<String> violations = new ArrayList<>();
+        checkMax(violations, report, "max-p50-ms", report.percentileMillis(50));
+        checkMax(violations, report, "max-p99-ms", report.percentileMillis(99));
+        checkMax(violations, report, "max-p999-ms", report.percentileMillis(99.9));
+        checkMax(violations, report, "max-ttfb-p99-ms", report.ttfbPercentileMillis(99));
+        checkMax(violations, report, "max-ttfb-p999-ms", report.ttfbPercentileMillis(99.9));
+        checkMax(violations, report, "max-error-rate", report.getErrorRate());
+        checkMax(violations, report, "max-shed-rate", report.getShedRate());
+        checkMin(violations, report, "min-throughput-mbps", report.getThroughputMegabytes());
+        checkMin(violations, report, "min-requests", report.getRequests());
+        return violations;
+    }
+
+    private void checkMax(List<String> violations, StreamLoadTest.Report report, String option, double value) {
+        if (options.containsKey(option) && value > Double.parseDouble(options.get(option))) {
+            violations.add(String.format("%s: %s=%s exceeds %s", report.getName(), option, format(value),
+                    options.get(option)));
+        }
+    }
+
+    private void checkMin(List<String> violations, StreamLoadTest.Report report, String option, double value) {
+        if (options.containsKey(option) && value < Double.parseDouble(options.get(option))) {
+            violations.add(String.format("%s: %s=%s is below %s", report.getName(), option, format(value),
+                    options.get(option)));
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.4f", value);
+    }
+}
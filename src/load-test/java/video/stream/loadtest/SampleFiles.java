@@ -0,0 +1,75 @@
+package video.stream.loadtest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the sample video files the embedded service streams. Files are
+ * filled with a repeated pseudo-random pattern so they are neither sparse nor
+ * compressible, and are kept between runs when their size still matches.
+ */
+public class SampleFiles {
+
+    private static final int PATTERN_SIZE = 4 * 1024 * 1024;
+
+    private SampleFiles() {
+    }
+
+    public static List<Path> generate(Path directory, int count, long size) throws IOException {
+        Files.createDirectories(directory);
+        ByteBuffer pattern = createPattern();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path file = directory.resolve("sample-" + i + ".mp4");
+            if (!Files.exists(file) || Files.size(file) != size) {
+                write(file, size, pattern);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static ByteBuffer createPattern() {
+        byte[] bytes = new byte[PATTERN_SIZE];
+        new Random(42).nextBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void write(Path file, long size, ByteBuffer pattern) throws IOException {
+        System.out.printf("Generating %s (%d MB)%n", file, size / 1_000_000);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (position < size) {
+                ByteBuffer block = pattern.duplicate();
+                block.limit((int) Math.min(block.capacity(), size - position));
+                while (block.hasRemaining()) {
+                    position += channel.write(block, position);
+                }
+            }
+        }
+    }
+
+    public static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long multiplier = 1;
+        if (value.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if (value.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if (value.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value) * multiplier;
+    }
+}
@@ -0,0 +1,404 @@
+package video.stream.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Simulates players streaming videos from one or more running instances and
+ * compares them. Every player requests the initial probe range followed by
+ * sequential open-ended ranges, seeks to a random position or abandons the
+ * video with the configured probabilities, and stops at the end of the file
+ * or after {@code --chunks} requests. A request shed by the concurrency limit
+ * is retried after its {@code Retry-After} and reported apart from the errors.
+ * Players start spread over {@code --ramp-up} and are seeded from
+ * {@code --seed} so runs are repeatable. With {@code --server-metrics} the
+ * live thread count and used memory of every target, and its open connections
+ * when Tomcat's MBean registry is enabled, are sampled from its actuator
+ * metrics during the run, e.g. to compare platform and virtual thread
+ * execution.
+ *
+ * <p>
+ * {@code --protocols=http1,http2} runs the same workload over HTTP/1.1 and
+ * over HTTP/2 ({@code --http2} alone runs only HTTP/2), so the connections,
+ * memory and latency of both can be compared. Without TLS the client
+ * upgrades its connections to h2c, which needs {@code server.http2.enabled}.
+ *
+ * <p>
+ * Without {@code --targets} the service is started in process against a
+ * {@link LoadTestEnvironment} with generated sample files, and options
+ * prefixed with {@code service.} are passed to it as properties, HTTP/2 is
+ * enabled and server metrics are sampled. Every protocol is run against a
+ * freshly started service. The run fails
+ * when a report exceeds one of the {@link RegressionThresholds}.
+ *
+ * <pre>
+ * mvn -P load-test test-compile exec:java -Dexec.args="--targets=servlet=http://localhost:9015,reactive=http://localhost:9016
+ *     --token=... --video-id=1 --players=1000 --chunks=20 --server-metrics"
+ * mvn -P load-test verify -DskipTests -Dload-test.args="--players=2000 --files=4 --file-size=4g --max-p99-ms=500"
+ * mvn -P load-test test-compile exec:java -Dexec.args="--players=2000 --protocols=http1,http2"
+ * </pre>
+ */
+public class StreamLoadTest {
+
+    private static final String STREAM_PATH = "/video-stream?videoId=";
+    private static final String THREADS_METRIC_PATH = "/actuator/metrics/jvm.threads.live";
+    private static final String MEMORY_METRIC_PATH = "/actuator/metrics/jvm.memory.used";
+    private static final String CONNECTIONS_METRIC_PATH = "/actuator/metrics/tomcat.connections.current";
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+-]+)");
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final Map<String, String> options;
+    private final int players;
+    private final int playersPerClient;
+    private final int chunks;
+    private final long firstVideoId;
+    private final int videos;
+    private final double seekProbability;
+    private final double abandonProbability;
+    private final Duration thinkTime;
+    private final Duration rampUp;
+    private final long seed;
+
+    public StreamLoadTest(Map<String, String> options) {
+        this.options = options;
+        this.players = Integer.parseInt(options.getOrDefault("players", "500"));
+        this.playersPerClient = Integer.parseInt(options.getOrDefault("players-per-client", "32"));
+        this.chunks = Integer.parseInt(options.getOrDefault("chunks", "20"));
+        this.firstVideoId = Long.parseLong(options.getOrDefault("video-id", "1"));
+        this.videos = Integer.parseInt(options.getOrDefault("videos", "1"));
+        this.seekProbability = Double.parseDouble(options.getOrDefault("seek-probability", "0.05"));
+        this.abandonProbability = Double.parseDouble(options.getOrDefault("abandon-probability", "0.02"));
+        this.thinkTime = Duration.ofMillis(Long.parseLong(options.getOrDefault("think-time-ms", "0")));
+        this.rampUp = Duration.ofMillis(Long.parseLong(options.getOrDefault("ramp-up-ms", "0")));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        List<HttpClient.Version> versions = parseVersions(options);
+        List<Report> reports = new ArrayList<>();
+        if (options.containsKey("targets")) {
+            StreamLoadTest loadTest = new StreamLoadTest(options);
+            for (String target : options.get("targets").split(",")) {
+                String[] nameAndUrl = target.split("=", 2);
+                for (HttpClient.Version version : versions) {
+                    reports.add(loadTest.run(nameAndUrl[0], nameAndUrl[1], version));
+                    System.out.println(reports.get(reports.size() - 1));
+                }
+            }
+        } else {
+            options.putIfAbsent("service.server.http2.enabled", "true");
+            options.putIfAbsent("service.server.tomcat.mbeanregistry.enabled", "true");
+            options.putIfAbsent("server-metrics", "true");
+            for (HttpClient.Version version : versions) {
+                try (LoadTestEnvironment environment = new LoadTestEnvironment(options)) {
+                    options.put("token", environment.createToken());
+                    options.putIfAbsent("videos", String.valueOf(environment.getVideoCount()));
+                    reports.add(new StreamLoadTest(options)
+                            .run("embedded", environment.getBaseUri().toString(), version));
+                    System.out.println(reports.get(reports.size() - 1));
+                }
+            }
+        }
+        RegressionThresholds thresholds = new RegressionThresholds(options);
+        List<String> violations = reports.stream()
+                .flatMap(report -> thresholds.check(report).stream())
+                .collect(Collectors.toList());
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("Load test regressed past its thresholds:\n  "
+                    + String.join("\n  ", violations));
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        Arrays.stream(args)
+                .filter(arg -> arg.startsWith("--"))
+                .map(arg -> arg.substring(2).split("=", 2))
+                .forEach(option -> options.put(option[0], option.length > 1 ? option[1] : "true"));
+        return options;
+    }
+
+    private static List<HttpClient.Version> parseVersions(Map<String, String> options) {
+        String protocols = options.getOrDefault("protocols", options.containsKey("http2") ? "http2" : "http1");
+        return Arrays.stream(protocols.split(","))
+                .map(protocol -> "http2".equals(protocol) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .collect(Collectors.toList());
+    }
+
+    private static HttpClient createClient(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Players are spread over clients of {@code --players-per-client} each.
+     * Over HTTP/2 every client multiplexes its players on one connection, over
+     * HTTP/1.1 it opens one connection per request in flight. Every client
+     * connects with a request ahead of the run, otherwise the requests sent
+     * while its h2c upgrade is still pending would each open a connection.
+     */
+    public Report run(String name, String baseUrl, HttpClient.Version version) {
+        List<HttpClient> clients = new ArrayList<>();
+        for (int i = 0; i < players; i += playersPerClient) {
+            HttpClient client = createClient(version);
+            connect(client, URI.create(baseUrl + STREAM_PATH + firstVideoId));
+            clients.add(client);
+        }
+        Report report = new Report(version == HttpClient.Version.HTTP_2 ? name + "/h2" : name);
+        HttpClient metricsClient = createClient(HttpClient.Version.HTTP_1_1);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        if (options.containsKey("server-metrics")) {
+            sampler.scheduleAtFixedRate(() -> sampleServerMetrics(metricsClient, baseUrl, report), 0, 500,
+                    TimeUnit.MILLISECONDS);
+        }
+        long startTime = System.nanoTime();
+        List<CompletableFuture<Void>> playbacks = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            HttpClient client = clients.get(i / playersPerClient);
+            URI uri = URI.create(baseUrl + STREAM_PATH + (firstVideoId + i % videos));
+            Random random = new Random(seed + i);
+            Executor start = CompletableFuture.delayedExecutor(rampUp.toNanos() * i / players,
+                    TimeUnit.NANOSECONDS);
+            playbacks.add(CompletableFuture.supplyAsync(() -> null, start)
+                    .thenCompose(ignored -> play(client, uri, random, 0, 0, report)));
+        }
+        CompletableFuture.allOf(playbacks.toArray(new CompletableFuture[0])).join();
+        report.elapsedNanos = System.nanoTime() - startTime;
+        sampler.shutdownNow();
+        return report;
+    }
+
+    private void connect(HttpClient client, URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + options.getOrDefault("token", ""))
+                .header("Range", "bytes=0-0")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sampleServerMetrics(HttpClient client, String baseUrl, Report report) {
+        report.peakServerThreads.accumulateAndGet(readMetric(client, baseUrl + THREADS_METRIC_PATH), Math::max);
+        report.peakServerMemory.accumulateAndGet(readMetric(client, baseUrl + MEMORY_METRIC_PATH), Math::max);
+        report.peakServerConnections.accumulateAndGet(readMetric(client, baseUrl + CONNECTIONS_METRIC_PATH),
+                Math::max);
+    }
+
+    private long readMetric(HttpClient client, String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + options.getOrDefault("token", ""))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        try {
+            Matcher matcher = METRIC_VALUE.matcher(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+            return matcher.find() ? (long) Double.parseDouble(matcher.group(1)) : 0L;
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
+    private CompletableFuture<Void> play(HttpClient client, URI uri, Random random, long position, int chunk,
+            Report report) {
+        if (chunk >= chunks) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + options.getOrDefault("token", ""))
+                .header("Range", "bytes=" + position + "-")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        long requestStart = System.nanoTime();
+        AtomicLong firstByte = new AtomicLong();
+        HttpResponse.BodyHandler<Void> bodyHandler = responseInfo -> {
+            firstByte.set(System.nanoTime());
+            return HttpResponse.BodySubscribers.discarding();
+        };
+        report.requestStarted();
+        return client.sendAsync(request, bodyHandler)
+                .handle((response, error) -> {
+                    report.requestFinished(firstByte.get() - requestStart, System.nanoTime() - requestStart,
+                            response, error);
+                    return error == null ? response : null;
+                })
+                .thenCompose(response -> {
+                    if (response != null && response.statusCode() == SERVICE_UNAVAILABLE) {
+                        return delay(getRetryAfter(response))
+                                .thenCompose(ignored -> play(client, uri, random, position, chunk + 1, report));
+                    }
+                    long next = response == null || response.statusCode() != 206
+                            ? -1L
+                            : getNextPosition(response, random, report);
+                    return next < 0
+                            ? CompletableFuture.completedFuture(null)
+                            : delay(thinkTime).thenCompose(ignored -> play(client, uri, random, next, chunk + 1,
+                                    report));
+                });
+    }
+
+    private static CompletableFuture<Void> delay(Duration duration) {
+        return duration.isZero()
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> {
+                }, CompletableFuture.delayedExecutor(duration.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private static Duration getRetryAfter(HttpResponse<Void> response) {
+        return Duration.ofSeconds(response.headers().firstValueAsLong("Retry-After").orElse(1L));
+    }
+
+    private long getNextPosition(HttpResponse<Void> response, Random random, Report report) {
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        String[] rangeAndSize = contentRange.substring(contentRange.indexOf(' ') + 1).split("/");
+        long end = Long.parseLong(rangeAndSize[0].split("-")[1]);
+        long size = Long.parseLong(rangeAndSize[1]);
+        if (random.nextDouble() < abandonProbability) {
+            report.abandoned.incrementAndGet();
+            return -1L;
+        }
+        if (random.nextDouble() < seekProbability) {
+            report.seeks.incrementAndGet();
+            return (long) (random.nextDouble() * size);
+        }
+        return end + 1 < size ? end + 1 : -1L;
+    }
+
+    public static class Report {
+
+        private final String name;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> timesToFirstByte = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final ConcurrentMap<String, Integer> errorCauses = new ConcurrentHashMap<>();
+        private final AtomicInteger shed = new AtomicInteger();
+        private final AtomicInteger seeks = new AtomicInteger();
+        private final AtomicInteger abandoned = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final AtomicLong peakServerThreads = new AtomicLong();
+        private final AtomicLong peakServerMemory = new AtomicLong();
+        private final AtomicLong peakServerConnections = new AtomicLong();
+        private long elapsedNanos;
+
+        Report(String name) {
+            this.name = name;
+        }
+
+        void requestStarted() {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        }
+
+        void requestFinished(long firstByteNanos, long nanos, HttpResponse<Void> response, Throwable error) {
+            inFlight.decrementAndGet();
+            if (error == null && response.statusCode() == SERVICE_UNAVAILABLE) {
+                shed.incrementAndGet();
+                return;
+            }
+            if (error != null || response.statusCode() != 206) {
+                errors.incrementAndGet();
+                errorCauses.merge(error != null ? getRootCause(error).toString()
+                        : "HTTP " + response.statusCode(), 1, Integer::sum);
+                return;
+            }
+            latencies.add(nanos);
+            timesToFirstByte.add(firstByteNanos);
+            bytes.addAndGet(response.headers().firstValueAsLong("Content-Length").orElse(0));
+        }
+
+        private static Throwable getRootCause(Throwable error) {
+            Throwable cause = error;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRequests() {
+            return latencies.size();
+        }
+
+        public double getErrorRate() {
+            int total = latencies.size() + errors.get();
+            return total == 0 ? 0 : (double) errors.get() / total;
+        }
+
+        public double getShedRate() {
+            int total = latencies.size() + errors.get() + shed.get();
+            return total == 0 ? 0 : (double) shed.get() / total;
+        }
+
+        public double getThroughputMegabytes() {
+            return elapsedNanos == 0 ? 0 : bytes.get() / (elapsedNanos / 1e9) / 1_000_000;
+        }
+
+        public double percentileMillis(double percentile) {
+            return percentileMillis(latencies, percentile);
+        }
+
+        public double ttfbPercentileMillis(double percentile) {
+            return percentileMillis(timesToFirstByte, percentile);
+        }
+
+        private static double percentileMillis(Collection<Long> nanos, double percentile) {
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s requests=%d errors=%d shed=%d seeks=%d abandoned=%d"
+                    + " peakConcurrentRequests=%d throughput=%.1f MB/s ttfb p50=%.1f p99=%.1f p999=%.1f ms"
+                    + " latency p50=%.1f p99=%.1f p999=%.1f ms peakServerThreads=%d peakServerMemory=%d MB"
+                    + " peakServerConnections=%d", name,
+                    latencies.size(), errors.get(), shed.get(), seeks.get(), abandoned.get(), peakInFlight.get(),
+                    getThroughputMegabytes(), ttfbPercentileMillis(50), ttfbPercentileMillis(99),
+                    ttfbPercentileMillis(99.9),
+                    percentileMillis(50), percentileMillis(99), percentileMillis(99.9), peakServerThreads.get(),
+                    peakServerMemory.get() / 1_000_000, peakServerConnections.get())
+                    + (errorCauses.isEmpty() ? "" : " errorCauses=" + errorCauses);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package video.stream.application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.exception.FileOperationException;
+import video.stream.application.feign.VideoPathCache;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.file.FileMetadataCache;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+import video.stream.application.mp4.HlsSegmentIndex;
+import video.stream.application.mp4.HlsSegmentIndexCache;
+import video.stream.application.mp4.Mp4Layout;
+import video.stream.application.mp4.Mp4LayoutCache;
+
+/**
+ * Serves videos as HLS streams of fragmented MP4 segments remuxed on demand
+ * from the progressive MP4 files.
+ */
+@Service
+@Slf4j
+public class HlsStreamService {
+
+    protected static final String PLAYLIST_CONTENT_TYPE_PROPERTY = "application/vnd.apple.mpegurl";
+    protected static final String INIT_SEGMENT_CONTENT_TYPE_PROPERTY = "video/mp4";
+    protected static final String SEGMENT_CONTENT_TYPE_PROPERTY = "video/iso.segment";
+    protected static final String NOT_SEGMENTABLE_ERROR_MSG = "The video cannot be streamed with HLS.";
+    protected static final String WRONG_SEGMENT_ARG_ERROR_MSG = "The argument \"segment\" is not valid.";
+
+    private final VideoPathCache videoPathCache;
+    private final FileMetadataCache fileMetadataCache;
+    private final Mp4LayoutCache mp4LayoutCache;
+    private final HlsSegmentIndexCache hlsSegmentIndexCache;
+    private final FileRegionWriter fileRegionWriter;
+    private final HttpCachePolicy httpCachePolicy;
+    private final StreamMetrics streamMetrics;
+
+    @Autowired
+    public HlsStreamService(VideoPathCache videoPathCache, FileMetadataCache fileMetadataCache,
+            Mp4LayoutCache mp4LayoutCache, HlsSegmentIndexCache hlsSegmentIndexCache,
+            FileRegionWriter fileRegionWriter, HttpCachePolicy httpCachePolicy, StreamMetrics streamMetrics) {
+        this.videoPathCache = videoPathCache;
+        this.fileMetadataCache = fileMetadataCache;
+        this.mp4LayoutCache = mp4LayoutCache;
+        this.hlsSegmentIndexCache = hlsSegmentIndexCache;
+        this.fileRegionWriter = fileRegionWriter;
+        this.httpCachePolicy = httpCachePolicy;
+        this.streamMetrics = streamMetrics;
+    }
+
+    public ResponseEntity<ContentBody> preparePlaylist(RequestConditions conditions, Long videoId)
+            throws FileOperationException {
+        return preparePlaylist(conditions, Paths.get(getPath(videoId)));
+    }
+
+    public ResponseEntity<ContentBody> preparePlaylist(RequestConditions conditions, Path filePath)
+            throws FileOperationException {
+        return prepareContent(conditions, filePath, PLAYLIST_CONTENT_TYPE_PROPERTY,
+                (file, layout, index) -> index.getPlaylist());
+    }
+
+    public ResponseEntity<ContentBody> prepareInitSegment(RequestConditions conditions, Long videoId)
+            throws FileOperationException {
+        return prepareInitSegment(conditions, Paths.get(getPath(videoId)));
+    }
+
+    public ResponseEntity<ContentBody> prepareInitSegment(RequestConditions conditions, Path filePath)
+            throws FileOperationException {
+        return prepareContent(conditions, filePath, INIT_SEGMENT_CONTENT_TYPE_PROPERTY,
+                (file, layout, index) -> index.getInitSegment());
+    }
+
+    public ResponseEntity<ContentBody> prepareSegment(int segment, RequestConditions conditions, Long videoId)
+            throws FileOperationException {
+        return prepareSegment(segment, conditions, Paths.get(getPath(videoId)));
+    }
+
+    public ResponseEntity<ContentBody> prepareSegment(int segment, RequestConditions conditions, Path filePath)
+            throws FileOperationException {
+        return prepareContent(conditions, filePath, SEGMENT_CONTENT_TYPE_PROPERTY, (file, layout, index) -> {
+            if (segment < 0 || segment >= index.getSegmentCount()) {
+                throw new IllegalArgumentException(WRONG_SEGMENT_ARG_ERROR_MSG);
+            }
+            ContentBody body = index.getSegment(segment, file, layout, fileRegionWriter);
+            streamMetrics.recordRange(body.getContentLength());
+            return body;
+        });
+    }
+
+    private ResponseEntity<ContentBody> prepareContent(RequestConditions conditions, Path filePath,
+            String contentType, ContentSelector selector) throws FileOperationException {
+        FileMetadata file = getFileMetadata(filePath);
+        Mp4Layout layout = getLayout(file);
+        HlsSegmentIndex index = getSegmentIndex(file, layout);
+        String entityTag = httpCachePolicy.getEntityTag(file, layout);
+        if (httpCachePolicy.isNotModified(conditions, entityTag, file.getLastModified())) {
+            return httpCachePolicy.prepareNotModified(entityTag, file.getLastModified());
+        }
+        ContentBody body = selector.select(file, layout, index);
+        return httpCachePolicy.addHeaders(ResponseEntity.status(HttpStatus.OK), entityTag, file.getLastModified())
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.getContentLength()))
+                .body(body);
+    }
+
+    private String getPath(Long videoId) {
+        long startTime = System.nanoTime();
+        String path;
+        try {
+            path = videoPathCache.getPath(videoId);
+        } finally {
+            streamMetrics.recordStage(Stage.PATH_RESOLUTION, System.nanoTime() - startTime);
+        }
+        streamMetrics.recordRequest(videoId);
+        return path;
+    }
+
+    private FileMetadata getFileMetadata(Path filePath) throws FileOperationException {
+        long startTime = System.nanoTime();
+        try {
+            return fileMetadataCache.get(filePath);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new FileOperationException();
+        } finally {
+            streamMetrics.recordStage(Stage.FILE_METADATA, System.nanoTime() - startTime);
+        }
+    }
+
+    private Mp4Layout getLayout(FileMetadata file) throws FileOperationException {
+        try {
+            return mp4LayoutCache.get(file);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new FileOperationException();
+        }
+    }
+
+    private HlsSegmentIndex getSegmentIndex(FileMetadata file, Mp4Layout layout) throws FileOperationException {
+        HlsSegmentIndex index;
+        try {
+            index = hlsSegmentIndexCache.get(file, layout);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new FileOperationException();
+        }
+        if (index.isEmpty()) {
+            throw new IllegalArgumentException(NOT_SEGMENTABLE_ERROR_MSG);
+        }
+        return index;
+    }
+
+    @FunctionalInterface
+    private interface ContentSelector {
+
+        ContentBody select(FileMetadata file, Mp4Layout layout, HlsSegmentIndex index);
+
+    }
+}
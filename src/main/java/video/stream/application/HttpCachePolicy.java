@@ -0,0 +1,115 @@
+package video.stream.application;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import video.stream.application.content.ContentBody;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.mp4.Mp4Layout;
+
+/**
+ * Validators and cache directives of streamed responses, and evaluation of
+ * the conditional headers of requests against them, so that clients can
+ * cache and revalidate responses. Entity tags are strong, as the bytes of a
+ * file version served in a given layout never change.
+ * <p>
+ * Streams require a bearer token, so responses are {@code private} by
+ * default and only the player's own cache keeps them. A {@code public}
+ * directive, letting a reverse proxy or CDN share them between clients, is
+ * only safe when every video served is public content, as the shared cache
+ * then serves it without authentication.
+ */
+@Component
+public class HttpCachePolicy {
+
+    private static final String RELOCATED_LAYOUT_SUFFIX = "-fs";
+    private static final String WEAK_PREFIX = "W/";
+
+    private final String cacheControl;
+
+    @Autowired
+    public HttpCachePolicy(@Value("${video-stream.cache-control:private, no-cache}") String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public String getEntityTag(FileMetadata file, Mp4Layout layout) {
+        String entityTag = file.getEntityTag();
+        if (!layout.isRelocated()) {
+            return entityTag;
+        }
+        return entityTag.substring(0, entityTag.length() - 1) + RELOCATED_LAYOUT_SUFFIX + '"';
+    }
+
+    /**
+     * Evaluates {@code If-None-Match}, or {@code If-Modified-Since} when the
+     * former is absent, as a cache revalidating its stored response would
+     * send them.
+     */
+    public boolean isNotModified(RequestConditions conditions, String entityTag, long lastModified) {
+        if (conditions.getIfNoneMatch() != null) {
+            return matchesAny(conditions.getIfNoneMatch(), entityTag);
+        }
+        return conditions.getIfModifiedSince() >= 0
+                && lastModified / 1000 <= conditions.getIfModifiedSince() / 1000;
+    }
+
+    /**
+     * Evaluates {@code If-Range}: the range applies only when the validator
+     * is the current strong entity tag or exactly the modification date.
+     */
+    public boolean isRangeApplicable(RequestConditions conditions, String entityTag, long lastModified) {
+        String ifRange = conditions.getIfRange();
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith(WEAK_PREFIX)) {
+            return ifRange.equals(entityTag);
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond()
+                    == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    public ResponseEntity.BodyBuilder addHeaders(ResponseEntity.BodyBuilder builder, String entityTag,
+            long lastModified) {
+        return builder
+                .header(HttpHeaders.ETAG, entityTag)
+                .lastModified(lastModified)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+
+    public ResponseEntity<ContentBody> prepareNotModified(String entityTag, long lastModified) {
+        return addHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), entityTag, lastModified).build();
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String entityTag) {
+        int start = 0;
+        while (start < ifNoneMatch.length()) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = ifNoneMatch.length();
+            }
+            String candidate = ifNoneMatch.substring(start, end).trim();
+            if (candidate.startsWith(WEAK_PREFIX)) {
+                candidate = candidate.substring(WEAK_PREFIX.length());
+            }
+            if (candidate.equals("*") || candidate.equals(entityTag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+package video.stream.application;
+
+import video.stream.application.content.RangeSet;
+
+/**
+ * Single-pass parser of the {@code Range} header value
+ * ({@code bytes=first-last, first-, -suffix}) that writes the specs into a
+ * {@link RangeSet} without allocating intermediate strings. Optional
+ * whitespace is allowed around each spec; anything else that is not a digit,
+ * {@code -} or {@code ,}, an empty spec, a value overflowing {@code long} or a
+ * last position before the first one is rejected. So is a header with more
+ * than {@code maxSpecs} specs, before the set grows for them, as many tiny
+ * ranges cost far more to serve than they are worth to a player.
+ */
+public final class RangeHeaderParser {
+
+    private static final String BYTES_PREFIX = "bytes=";
+
+    private RangeHeaderParser() {
+    }
+
+    /**
+     * Tells whether the header asks for a single range from the first byte of
+     * the file, the way players probe a video to start playing it. Several
+     * ranges or an invalid header do not.
+     */
+    public static boolean isSingleRangeFromStart(CharSequence range) {
+        try {
+            return parse(range, new RangeSet(), 1).getFirst(0) == 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static RangeSet parse(CharSequence range, RangeSet rangeSet, int maxSpecs) {
+        rangeSet.clear();
+        int length = range.length();
+        int index = checkPrefix(range);
+        while (true) {
+            index = skipWhitespace(range, index);
+            long first = RangeSet.UNSPECIFIED;
+            int digitsStart = index;
+            while (index < length && isDigit(range.charAt(index))) {
+                first = appendDigit(first, range.charAt(index));
+                index++;
+            }
+            boolean hasFirst = index > digitsStart;
+            if (index == length || range.charAt(index) != '-') {
+                throw invalidRange();
+            }
+            index++;
+            long last = RangeSet.UNSPECIFIED;
+            digitsStart = index;
+            while (index < length && isDigit(range.charAt(index))) {
+                last = appendDigit(last, range.charAt(index));
+                index++;
+            }
+            boolean hasLast = index > digitsStart;
+            if (!hasFirst && !hasLast || hasFirst && hasLast && last < first) {
+                throw invalidRange();
+            }
+            if (rangeSet.size() == maxSpecs) {
+                throw new IllegalArgumentException(VideoStreamService.TOO_MANY_RANGES_ERROR_MSG);
+            }
+            rangeSet.add(first, last);
+            index = skipWhitespace(range, index);
+            if (index == length) {
+                return rangeSet;
+            }
+            if (range.charAt(index) != ',') {
+                throw invalidRange();
+            }
+            index++;
+        }
+    }
+
+    private static int checkPrefix(CharSequence range) {
+        if (range.length() < BYTES_PREFIX.length()) {
+            throw invalidRange();
+        }
+        for (int i = 0; i < BYTES_PREFIX.length(); i++) {
+            if (range.charAt(i) != BYTES_PREFIX.charAt(i)) {
+                throw invalidRange();
+            }
+        }
+        return BYTES_PREFIX.length();
+    }
+
+    private static int skipWhitespace(CharSequence range, int index) {
+        while (index < range.length() && (range.charAt(index) == ' ' || range.charAt(index) == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static long appendDigit(long value, char c) {
+        long current = value == RangeSet.UNSPECIFIED ? 0 : value;
+        int digit = c - '0';
+        if (current > (Long.MAX_VALUE - digit) / 10) {
+            throw invalidRange();
+        }
+        return current * 10 + digit;
+    }
+
+    private static IllegalArgumentException invalidRange() {
+        return new IllegalArgumentException(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+    }
+}
@@ -0,0 +1,34 @@
+package video.stream.application;
+
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Conditional headers of a request, {@code null} or {@code -1} when absent.
+ */
+@AllArgsConstructor
+@Getter
+public class RequestConditions {
+
+    public static final RequestConditions NONE = new RequestConditions(null, -1, null);
+
+    private final String ifNoneMatch;
+    private final long ifModifiedSince;
+    private final String ifRange;
+
+    public static RequestConditions of(HttpHeaders headers) {
+        List<String> ifNoneMatch = headers.get(HttpHeaders.IF_NONE_MATCH);
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = headers.getIfModifiedSince();
+        } catch (IllegalArgumentException e) {
+            ifModifiedSince = -1;
+        }
+        return new RequestConditions(ifNoneMatch != null ? String.join(",", ifNoneMatch) : null,
+                ifModifiedSince, headers.getFirst(HttpHeaders.IF_RANGE));
+    }
+}
@@ -1,19 +1,44 @@
 package video.stream.application;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 
 import lombok.extern.slf4j.Slf4j;
+import video.stream.application.content.BandwidthLimiter;
+import video.stream.application.content.ByteRange;
+import video.stream.application.content.ChunkSizePolicy;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegion;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.content.MultipartFileRegions;
+import video.stream.application.content.ObservedContentBody;
+import video.stream.application.content.ReadAheadPrefetcher;
+import video.stream.application.content.RangeSet;
 import video.stream.application.exception.FileOperationException;
-import video.stream.application.feign.VideoServiceFeign;
+import video.stream.application.feign.VideoPathCache;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.file.FileMetadataCache;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+import video.stream.application.mp4.KeyframeIndex;
+import video.stream.application.mp4.KeyframeIndexCache;
+import video.stream.application.mp4.Mp4Layout;
+import video.stream.application.mp4.Mp4LayoutCache;
 
 @Service
 @Slf4j
@@ -21,110 +46,321 @@ public class VideoStreamService {
 
     protected static final String CONTENT_TYPE_PROPERTY = "video/mp4";
     protected static final String ACCEPT_RANGES_PROPERTY = "bytes";
+    protected static final String MULTIPART_CONTENT_TYPE_PROPERTY = "multipart/byteranges; boundary=";
     protected static final long INIT_BYTE_RANGE = 17000L;
     protected static final long BYTE_RANGE = 280000L;
     protected static final String WRONG_RANGE_ARG_ERROR_MSG = "The argument \"range\" is not valid.";
-    private static final String BYTES_PREFIX = "bytes=";
+    protected static final String TOO_MANY_RANGES_ERROR_MSG = "The argument \"range\" has too many ranges.";
+    protected static final String WRONG_TIME_ARG_ERROR_MSG = "The argument \"time\" is not valid.";
+    protected static final String NOT_SEEKABLE_ERROR_MSG = "The video does not support seeking by time.";
+    protected static final String KEYFRAME_TIME_HEADER = "X-Keyframe-Time";
+    private static final String ANONYMOUS_CLIENT_ID = "anonymous";
 
-    private final VideoServiceFeign videoServiceFeign;
+    private final VideoPathCache videoPathCache;
+    private final FileMetadataCache fileMetadataCache;
+    private final ChunkSizePolicy chunkSizePolicy;
+    private final FileRegionWriter fileRegionWriter;
+    private final ReadAheadPrefetcher readAheadPrefetcher;
+    private final Mp4LayoutCache mp4LayoutCache;
+    private final KeyframeIndexCache keyframeIndexCache;
+    private final HttpCachePolicy httpCachePolicy;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final StreamMetrics streamMetrics;
+    private final int maxRangeSpecs;
+    private final int maxRangeParts;
 
     @Autowired
-    public VideoStreamService(VideoServiceFeign videoServiceFeign) {
-        this.videoServiceFeign = videoServiceFeign;
+    public VideoStreamService(VideoPathCache videoPathCache, FileMetadataCache fileMetadataCache,
+            ChunkSizePolicy chunkSizePolicy, FileRegionWriter fileRegionWriter,
+            ReadAheadPrefetcher readAheadPrefetcher, Mp4LayoutCache mp4LayoutCache,
+            KeyframeIndexCache keyframeIndexCache, HttpCachePolicy httpCachePolicy,
+            BandwidthLimiter bandwidthLimiter, StreamMetrics streamMetrics,
+            @Value("${video-stream.range.max-specs:100}") int maxRangeSpecs,
+            @Value("${video-stream.multipart.max-parts:16}") int maxRangeParts) {
+        this.videoPathCache = videoPathCache;
+        this.fileMetadataCache = fileMetadataCache;
+        this.chunkSizePolicy = chunkSizePolicy;
+        this.fileRegionWriter = fileRegionWriter;
+        this.readAheadPrefetcher = readAheadPrefetcher;
+        this.mp4LayoutCache = mp4LayoutCache;
+        this.keyframeIndexCache = keyframeIndexCache;
+        this.httpCachePolicy = httpCachePolicy;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.streamMetrics = streamMetrics;
+        this.maxRangeSpecs = maxRangeSpecs;
+        this.maxRangeParts = maxRangeParts;
     }
 
-    public ResponseEntity<byte[]> prepareContent(String range, Long videoId) throws FileOperationException {
-        String filePath = getPath(videoId);
-        try (InputStream inputStream = new FileInputStream(filePath)) {
-            return prepareContent(inputStream, range);
+    public ResponseEntity<ContentBody> prepareContent(String range, Long videoId) throws FileOperationException {
+        return prepareContent(range, RequestConditions.NONE, videoId);
+    }
+
+    public ResponseEntity<ContentBody> prepareContent(String range, RequestConditions conditions, Long videoId)
+            throws FileOperationException {
+        return prepareContent(range, conditions, Paths.get(getPath(videoId)), getClientId());
+    }
+
+    public ResponseEntity<ContentBody> prepareContent(String range, Path filePath, String clientId)
+            throws FileOperationException {
+        return prepareContent(range, RequestConditions.NONE, filePath, clientId);
+    }
+
+    /**
+     * Serves the requested range unless {@code conditions} show the client
+     * already holds the current version, or, when its {@code If-Range}
+     * validator is stale, the whole file instead of the range.
+     */
+    public ResponseEntity<ContentBody> prepareContent(String range, RequestConditions conditions, Path filePath,
+            String clientId) throws FileOperationException {
+        try {
+            return prepareContent(filePath, range, conditions, clientId);
         } catch (IOException e) {
             log.error(e.getMessage(), e);
             throw new FileOperationException();
         }
     }
 
+    /**
+     * Streams the video from the last keyframe presented at or before
+     * {@code time} seconds, as if the client had requested the open ended
+     * range starting at that keyframe.
+     */
+    public ResponseEntity<ContentBody> prepareSeekContent(double time, Long videoId) throws FileOperationException {
+        return prepareSeekContent(time, Paths.get(getPath(videoId)), getClientId());
+    }
+
+    public ResponseEntity<ContentBody> prepareSeekContent(double time, Path filePath, String clientId)
+            throws FileOperationException {
+        if (!(time >= 0) || Double.isInfinite(time)) {
+            throw new IllegalArgumentException(WRONG_TIME_ARG_ERROR_MSG);
+        }
+        try {
+            return prepareSeekContent(filePath, time, clientId);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new FileOperationException();
+        }
+    }
+
+    /**
+     * Resolves the path of the video and only then counts the request, so ids
+     * that do not resolve cannot take the tagged slots of the request metrics.
+     */
     private String getPath(Long videoId) {
-        return videoServiceFeign.getVideoFilePath(videoId).getPath();
+        long startTime = System.nanoTime();
+        String path;
+        try {
+            path = videoPathCache.getPath(videoId);
+        } finally {
+            streamMetrics.recordStage(Stage.PATH_RESOLUTION, System.nanoTime() - startTime);
+        }
+        streamMetrics.recordRequest(videoId);
+        return path;
+    }
+
+    private String getClientId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : ANONYMOUS_CLIENT_ID;
+    }
+
+    private ResponseEntity<ContentBody> prepareContent(Path filePath, String range, RequestConditions conditions,
+            String clientId) throws IOException {
+        FileMetadata file = getFileMetadata(filePath);
+        Mp4Layout layout = mp4LayoutCache.get(file);
+        String entityTag = httpCachePolicy.getEntityTag(file, layout);
+        if (httpCachePolicy.isNotModified(conditions, entityTag, file.getLastModified())) {
+            return httpCachePolicy.prepareNotModified(entityTag, file.getLastModified());
+        }
+        if (!httpCachePolicy.isRangeApplicable(conditions, entityTag, file.getLastModified())) {
+            return prepareFullContent(file, layout, entityTag, clientId);
+        }
+        return prepareContent(file, layout, getRanges(range), clientId, entityTag);
     }
 
-    private ResponseEntity<byte[]> prepareContent(InputStream inputStream, String range)
+    private ResponseEntity<ContentBody> prepareSeekContent(Path filePath, double time, String clientId)
             throws IOException {
-        Long fileSize = getFileSize(inputStream);
-        String[] ranges = getRanges(range);
-        long rangeStart = getRangeStart(ranges);
-        long rangeEnd = getRangeEnd(ranges, rangeStart, fileSize);
-        byte[] data = readByteRange(inputStream, rangeStart, rangeEnd);
+        FileMetadata file = getFileMetadata(filePath);
+        Mp4Layout layout = mp4LayoutCache.get(file);
+        KeyframeIndex keyframeIndex = keyframeIndexCache.get(file, layout);
+        if (keyframeIndex.isEmpty()) {
+            throw new IllegalArgumentException(NOT_SEEKABLE_ERROR_MSG);
+        }
+        int keyframe = keyframeIndex.findKeyframe(time);
+        RangeSet rangeSet = new RangeSet();
+        rangeSet.add(keyframeIndex.getOffset(keyframe), RangeSet.UNSPECIFIED);
+        ResponseEntity<ContentBody> content = prepareContent(file, layout, rangeSet, clientId,
+                httpCachePolicy.getEntityTag(file, layout));
+        return ResponseEntity.status(content.getStatusCode())
+                .headers(content.getHeaders())
+                .header(KEYFRAME_TIME_HEADER, String.valueOf(keyframeIndex.getTime(keyframe)))
+                .body(content.getBody());
+    }
+
+    private ResponseEntity<ContentBody> prepareContent(FileMetadata file, Mp4Layout layout, RangeSet rangeSet,
+            String clientId, String entityTag) {
+        long fileSize = layout.getSize();
+        long chunkSize = chunkSizePolicy.getChunkSize(clientId);
+        // only the relocated moov, held in memory, has to reach the player in one response
+        long initRange = layout.isRelocated() ? Math.max(INIT_BYTE_RANGE, layout.getHeaderSize() - 1)
+                : INIT_BYTE_RANGE;
+        List<ByteRange> byteRanges = getByteRanges(rangeSet, fileSize, initRange, chunkSize);
+        if (byteRanges.isEmpty()) {
+            return prepareRangeNotSatisfiable(fileSize);
+        }
+        for (int i = 0; i < byteRanges.size(); i++) {
+            streamMetrics.recordRange(byteRanges.get(i).getLength());
+        }
+        if (byteRanges.size() > 1 && !layout.isRelocated()) {
+            return prepareMultipartContent(file, byteRanges, entityTag, clientId);
+        }
+        long rangeStart = byteRanges.get(0).getStart();
+        long rangeEnd = byteRanges.get(byteRanges.size() - 1).getEnd();
+        ContentBody body = layout.slice(file, rangeStart, rangeEnd - rangeStart + 1, fileRegionWriter);
+        if (body instanceof FileRegion) {
+            FileRegion region = (FileRegion) body;
+            readAheadPrefetcher.onRangeRequested(file, clientId, region.getPosition(),
+                    region.getPosition() + region.getCount() - 1,
+                    rangeSet.isOpenEnded(0) ? chunkSize : region.getCount());
+        }
         String contentLength = getContentLength(rangeStart, rangeEnd);
-        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+        return httpCachePolicy.addHeaders(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), entityTag,
+                file.getLastModified())
                 .header(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE_PROPERTY)
                 .header(HttpHeaders.ACCEPT_RANGES, ACCEPT_RANGES_PROPERTY)
                 .header(HttpHeaders.CONTENT_LENGTH, contentLength)
                 .header(HttpHeaders.CONTENT_RANGE, prepareContentRangeHeader(rangeStart, rangeEnd, fileSize))
-                .body(data);
+                .body(observeTransfer(body, rangeSet, clientId));
+    }
+
+    private FileMetadata getFileMetadata(Path filePath) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return fileMetadataCache.get(filePath);
+        } finally {
+            streamMetrics.recordStage(Stage.FILE_METADATA, System.nanoTime() - startTime);
+        }
+    }
+
+    private ResponseEntity<ContentBody> prepareFullContent(FileMetadata file, Mp4Layout layout, String entityTag,
+            String clientId) {
+        return httpCachePolicy.addHeaders(ResponseEntity.status(HttpStatus.OK), entityTag, file.getLastModified())
+                .header(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE_PROPERTY)
+                .header(HttpHeaders.ACCEPT_RANGES, ACCEPT_RANGES_PROPERTY)
+                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(layout.getSize()))
+                .body(bandwidthLimiter.shape(layout.slice(file, 0, layout.getSize(), fileRegionWriter), clientId));
     }
 
-    private Long getFileSize(InputStream inputStream) throws IOException {
-        return Long.valueOf(inputStream.available());
+    private ResponseEntity<ContentBody> prepareMultipartContent(FileMetadata file, List<ByteRange> byteRanges,
+            String entityTag, String clientId) {
+        List<FileRegion> regions = byteRanges.stream()
+                .map(byteRange -> new FileRegion(file, byteRange.getStart(), byteRange.getLength(),
+                        fileRegionWriter))
+                .collect(Collectors.toList());
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        MultipartFileRegions body = new MultipartFileRegions(regions, boundary, CONTENT_TYPE_PROPERTY,
+                file.getSize());
+        return httpCachePolicy.addHeaders(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), entityTag,
+                file.getLastModified())
+                .header(HttpHeaders.CONTENT_TYPE, MULTIPART_CONTENT_TYPE_PROPERTY + boundary)
+                .header(HttpHeaders.ACCEPT_RANGES, ACCEPT_RANGES_PROPERTY)
+                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.getContentLength()))
+                .body(bandwidthLimiter.shape(body, clientId));
     }
 
-    private String[] getRanges(String range) {
-        checkIfRangeHasValidPrefix(range);
-        String[] ranges = range.replace(BYTES_PREFIX, "").split("-");
-        checkIfRangesHaveValidLength(ranges);
-        checkIfRangesHaveValidValues(ranges);
-        return ranges;
+    private ResponseEntity<ContentBody> prepareRangeNotSatisfiable(long fileSize) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.ACCEPT_RANGES, ACCEPT_RANGES_PROPERTY)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize)
+                .build();
     }
 
-    private void checkIfRangeHasValidPrefix(String range) {
-        if (!range.startsWith(BYTES_PREFIX)) {
-            throw new IllegalArgumentException(WRONG_RANGE_ARG_ERROR_MSG);
+    private ContentBody observeTransfer(ContentBody body, RangeSet rangeSet, String clientId) {
+        ContentBody shapedBody = bandwidthLimiter.shape(body, clientId);
+        if (rangeSet.size() > 1 || !rangeSet.isOpenEnded(0)) {
+            return shapedBody;
         }
+        return new ObservedContentBody(shapedBody,
+                (bytes, nanos) -> chunkSizePolicy.recordTransfer(clientId, bytes, nanos));
+    }
+
+    /**
+     * Parses the header into a new {@link RangeSet}. A set per request costs
+     * two small arrays, while a set kept per thread would be allocated for
+     * every request anyway on virtual threads.
+     */
+    RangeSet getRanges(CharSequence range) {
+        return RangeHeaderParser.parse(range, new RangeSet(), maxRangeSpecs);
     }
 
-    private void checkIfRangesHaveValidLength(String[] ranges) {
-        if (ranges.length == 0 || ranges.length > 2) {
-            throw new IllegalArgumentException(WRONG_RANGE_ARG_ERROR_MSG);
+    List<ByteRange> getByteRanges(RangeSet rangeSet, long fileSize, long initRange, long chunkSize) {
+        List<ByteRange> byteRanges = new ArrayList<>(rangeSet.size());
+        for (int i = 0; i < rangeSet.size(); i++) {
+            if (isSatisfiable(rangeSet, i, fileSize)) {
+                long rangeStart = getRangeStart(rangeSet, i, fileSize);
+                long rangeEnd = getRangeEnd(rangeSet, i, rangeStart, fileSize, initRange, chunkSize);
+                byteRanges.add(new ByteRange(rangeStart, rangeEnd));
+            }
         }
+        return coalesceRanges(byteRanges);
     }
 
-    private void checkIfRangesHaveValidValues(String[] ranges) {
-        for (int i = 0; i < ranges.length; i++) {
-            if (!StringUtils.isNumeric(ranges[i])) {
-                throw new IllegalArgumentException(WRONG_RANGE_ARG_ERROR_MSG);
+    private List<ByteRange> coalesceRanges(List<ByteRange> byteRanges) {
+        if (byteRanges.size() < 2) {
+            return byteRanges;
+        }
+        byteRanges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> coalesced = new ArrayList<>();
+        ByteRange current = byteRanges.get(0);
+        for (ByteRange next : byteRanges.subList(1, byteRanges.size())) {
+            if (next.getStart() <= current.getEnd() + 1) {
+                current = new ByteRange(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+            } else {
+                coalesced.add(current);
+                current = next;
             }
         }
+        coalesced.add(current);
+        if (coalesced.size() > maxRangeParts) {
+            ByteRange last = coalesced.get(coalesced.size() - 1);
+            return List.of(new ByteRange(coalesced.get(0).getStart(), last.getEnd()));
+        }
+        return coalesced;
     }
 
-    private long getRangeStart(String[] ranges) {
-        return Long.parseLong(ranges[0]);
+    private boolean isSatisfiable(RangeSet rangeSet, int index, long fileSize) {
+        if (rangeSet.isSuffix(index)) {
+            return fileSize > 0 && rangeSet.getLast(index) > 0;
+        }
+        return rangeSet.getFirst(index) < fileSize;
+    }
+
+    private long getRangeStart(RangeSet rangeSet, int index, long fileSize) {
+        if (rangeSet.isSuffix(index)) {
+            return fileSize - Math.min(rangeSet.getLast(index), fileSize);
+        }
+        return rangeSet.getFirst(index);
     }
 
-    private long getRangeEnd(String[] ranges, long rangeStart, Long fileSize) {
-        long rangeEnd;
-        if (ranges.length > 1) {
-            rangeEnd = Long.parseLong(ranges[1]);
+    private long getRangeEnd(RangeSet rangeSet, int index, long rangeStart, long fileSize, long initRange,
+            long chunkSize) {
+        if (rangeSet.isSuffix(index)) {
+            return fileSize - 1;
         }
-        if (rangeStart == 0) {
-            rangeEnd = rangeStart + INIT_BYTE_RANGE;
-        } else {
-            rangeEnd = rangeStart + BYTE_RANGE;
+        if (!rangeSet.isOpenEnded(index)) {
+            return Math.min(rangeSet.getLast(index), fileSize - 1);
         }
-        if (fileSize < rangeEnd) {
-            rangeEnd = fileSize - 1;
+        long byteRange = rangeStart == 0 ? initRange : chunkSize;
+        if (rangeStart > fileSize - 1 - byteRange) {
+            return fileSize - 1;
         }
-        return rangeEnd;
+        return rangeStart + byteRange;
     }
 
     private String getContentLength(long rangeStart, long rangeEnd) {
         return String.valueOf((rangeEnd - rangeStart) + 1);
     }
 
-    private byte[] readByteRange(InputStream inputStream, long start, long end) throws IOException {
-        inputStream.skipNBytes(start);
-        return inputStream.readNBytes((int) end - (int) start + 1);
-    }
-
-    private String prepareContentRangeHeader(long rangeStart, long rangeEnd, Long fileSize) {
+    String prepareContentRangeHeader(long rangeStart, long rangeEnd, long fileSize) {
         return new StringBuilder()
                 .append("bytes")
                 .append(" ")
@@ -0,0 +1,135 @@
+package video.stream.application.content;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import video.stream.application.metrics.StreamMetrics;
+
+/**
+ * Shapes the bandwidth of response bodies with a {@link TokenBucket} per
+ * client and one shared by all clients. Bodies are paced in quanta of
+ * {@code quantum} bytes, each reserved from both buckets before it is
+ * written, so streams waiting on the same bucket are served in turns of one
+ * quantum, which splits the rate fairly between the active streams instead of
+ * letting large ranges go first. A rate of {@code 0} disables the limit.
+ */
+@Component
+public class BandwidthLimiter {
+
+    private static final long MIN_PARK_NANOS = Duration.ofMillis(1).toNanos();
+
+    private final long perClientRate;
+    private final long burst;
+    private final int quantum;
+    private final TokenBucket globalBucket;
+    private final Cache<String, TokenBucket> clientBuckets;
+    private final StreamMetrics streamMetrics;
+    private final Ticker ticker;
+
+    @Autowired
+    public BandwidthLimiter(
+            @Value("${video-stream.bandwidth.per-client:0}") long perClientRate,
+            @Value("${video-stream.bandwidth.global:0}") long globalRate,
+            @Value("${video-stream.bandwidth.burst:1048576}") long burst,
+            @Value("${video-stream.bandwidth.quantum:65536}") int quantum,
+            StreamMetrics streamMetrics) {
+        this(perClientRate, globalRate, burst, quantum, streamMetrics, Ticker.systemTicker());
+    }
+
+    BandwidthLimiter(long perClientRate, long globalRate, long burst, int quantum, StreamMetrics streamMetrics,
+            Ticker ticker) {
+        this.perClientRate = perClientRate;
+        this.burst = burst;
+        this.quantum = quantum;
+        this.globalBucket = globalRate > 0 ? new TokenBucket(globalRate, burst, ticker.read()) : null;
+        this.clientBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .ticker(ticker)
+                .build();
+        this.streamMetrics = streamMetrics;
+        this.ticker = ticker;
+    }
+
+    public boolean isEnabled() {
+        return perClientRate > 0 || globalBucket != null;
+    }
+
+    /**
+     * Returns the body paced by the limits of the client, or the body itself
+     * when shaping is disabled.
+     */
+    public ContentBody shape(ContentBody body, String clientId) {
+        if (!isEnabled()) {
+            return body;
+        }
+        return new ShapedContentBody(body, new Pacer(getClientBucket(clientId)));
+    }
+
+    private TokenBucket getClientBucket(String clientId) {
+        if (perClientRate <= 0) {
+            return null;
+        }
+        return clientBuckets.get(clientId, id -> new TokenBucket(perClientRate, burst, ticker.read()));
+    }
+
+    /**
+     * Paces one response body against the buckets of its client.
+     */
+    public class Pacer {
+
+        private final TokenBucket clientBucket;
+
+        Pacer(TokenBucket clientBucket) {
+            this.clientBucket = clientBucket;
+        }
+
+        public int getQuantum() {
+            return quantum;
+        }
+
+        /**
+         * Reserves {@code bytes} from the buckets, returning the nanoseconds
+         * to wait before writing them.
+         */
+        public long reserve(long bytes) {
+            long now = ticker.read();
+            long clientWait = clientBucket != null ? clientBucket.reserve(bytes, now) : 0;
+            long globalWait = globalBucket != null ? globalBucket.reserve(bytes, now) : 0;
+            long wait = Math.max(clientWait, globalWait);
+            if (wait > 0) {
+                streamMetrics.recordThrottledBytes(globalWait > clientWait, bytes);
+            }
+            return wait;
+        }
+
+        /**
+         * Reserves {@code bytes} and blocks until they may be written. Waits
+         * shorter than a millisecond are not slept but carried over by the
+         * buckets to the next reservation.
+         */
+        public void pace(long bytes) throws InterruptedIOException {
+            long wait = reserve(bytes);
+            if (wait < MIN_PARK_NANOS) {
+                return;
+            }
+            long deadline = ticker.read() + wait;
+            long remaining = wait;
+            while (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while pacing the response.");
+                }
+                remaining = deadline - ticker.read();
+            }
+        }
+    }
+}
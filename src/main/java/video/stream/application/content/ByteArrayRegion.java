@@ -0,0 +1,30 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Part of a body that is generated in memory rather than read from the file,
+ * such as a rewritten MP4 header.
+ */
+@AllArgsConstructor
+@Getter
+public class ByteArrayRegion implements ContentBody {
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(data, offset, length);
+    }
+}
@@ -0,0 +1,20 @@
+package video.stream.application.content;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ByteRange {
+
+    private final long start;
+    private final long end;
+
+    public long getLength() {
+        return end - start + 1;
+    }
+}
@@ -0,0 +1,62 @@
+package video.stream.application.content;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Sizes open-ended range responses from the throughput observed for a client,
+ * so fast clients get fewer and bigger chunks. Clients without history, or
+ * slower than {@code minChunkSize} per {@code targetChunkDuration}, get
+ * {@code minChunkSize}.
+ */
+@Component
+public class ChunkSizePolicy {
+
+    private static final double SMOOTHING_FACTOR = 0.3;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long minChunkSize;
+    private final long maxChunkSize;
+    private final long targetChunkNanos;
+    private final ConcurrentMap<String, Double> throughputs;
+
+    @Autowired
+    public ChunkSizePolicy(
+            @Value("${video-stream.chunk.min-size:280000}") long minChunkSize,
+            @Value("${video-stream.chunk.max-size:8388608}") long maxChunkSize,
+            @Value("${video-stream.chunk.target-duration:2s}") Duration targetChunkDuration) {
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = Math.max(minChunkSize, maxChunkSize);
+        this.targetChunkNanos = targetChunkDuration.toNanos();
+        this.throughputs = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .<String, Double>build()
+                .asMap();
+    }
+
+    public long getChunkSize(String clientId) {
+        Double bytesPerSecond = throughputs.get(clientId);
+        if (bytesPerSecond == null) {
+            return minChunkSize;
+        }
+        double chunkSize = bytesPerSecond * targetChunkNanos / NANOS_PER_SECOND;
+        return (long) Math.max(minChunkSize, Math.min(maxChunkSize, chunkSize));
+    }
+
+    public void recordTransfer(String clientId, long bytes, long nanos) {
+        if (bytes <= 0 || nanos <= 0) {
+            return;
+        }
+        double bytesPerSecond = (double) bytes * NANOS_PER_SECOND / nanos;
+        throughputs.merge(clientId, bytesPerSecond,
+                (previous, sample) -> previous + SMOOTHING_FACTOR * (sample - previous));
+    }
+}
@@ -0,0 +1,32 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Body written as the concatenation of its parts, used when a range of a
+ * virtual file layout spans file regions and in-memory data.
+ */
+@Getter
+public class CompositeContentBody implements ContentBody {
+
+    private final List<ContentBody> parts;
+    private final long contentLength;
+
+    public CompositeContentBody(List<ContentBody> parts) {
+        this.parts = parts;
+        this.contentLength = parts.stream()
+                .mapToLong(ContentBody::getContentLength)
+                .sum();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (ContentBody part : parts) {
+            part.writeTo(outputStream);
+        }
+    }
+}
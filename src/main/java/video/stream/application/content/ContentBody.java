@@ -0,0 +1,12 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ContentBody {
+
+    long getContentLength();
+
+    void writeTo(OutputStream outputStream) throws IOException;
+
+}
@@ -0,0 +1,35 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Byte range of a file that is written by the {@link FileRegionWriter}
+ * straight from the file channel or from cached off-heap blocks, so no chunk
+ * sized buffer is allocated on the heap.
+ */
+@AllArgsConstructor
+@Getter
+@ToString(exclude = "writer")
+public class FileRegion implements ContentBody {
+
+    private final FileMetadata file;
+    private final long position;
+    private final long count;
+    private final FileRegionWriter writer;
+
+    @Override
+    public long getContentLength() {
+        return count;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        writer.write(this, outputStream);
+    }
+}
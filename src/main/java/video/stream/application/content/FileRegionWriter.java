@@ -0,0 +1,188 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+
+/**
+ * Writes {@link FileRegion}s to the client. Blocks held by the
+ * {@link ChunkCache} are written from their off-heap buffers, everything else
+ * is transferred from the {@link LocalDiskTier} copy of the file where it has
+ * one and from the file's channel shared through the {@link FileChannelPool}
+ * otherwise. Acquiring the channel, block reads and the whole write are timed
+ * as stages of {@link StreamMetrics}. Writers pulling the content in buffers
+ * instead read it through the same sources with a {@link Reader}.
+ */
+@Component
+public class FileRegionWriter {
+
+    private final ChunkCache chunkCache;
+    private final FileChannelPool fileChannelPool;
+    private final LocalDiskTier localDiskTier;
+    private final StreamMetrics streamMetrics;
+
+    @Autowired
+    public FileRegionWriter(ChunkCache chunkCache, FileChannelPool fileChannelPool, LocalDiskTier localDiskTier,
+            StreamMetrics streamMetrics) {
+        this.chunkCache = chunkCache;
+        this.fileChannelPool = fileChannelPool;
+        this.localDiskTier = localDiskTier;
+        this.streamMetrics = streamMetrics;
+    }
+
+    /**
+     * Tells whether file content may be served from copies held by the
+     * {@link ChunkCache} or the {@link LocalDiskTier}, so reading the file
+     * directly would bypass them.
+     */
+    public boolean isCaching() {
+        return chunkCache.isEnabled() || localDiskTier.isEnabled();
+    }
+
+    /**
+     * Opens a reader of the file, which must be closed once the caller is
+     * done reading.
+     */
+    public Reader openReader(FileMetadata file) {
+        return new Reader(file);
+    }
+
+    public void write(FileRegion region, OutputStream outputStream) throws IOException {
+        long startTime = System.nanoTime();
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        try (LazyFileChannel channel = new LazyFileChannel(region.getFile());
+                LocalDiskTier.Lease source = localDiskTier.open(region.getFile(), channel::get)) {
+            if (chunkCache.isEnabled()) {
+                writeBlocks(region, source, target);
+            } else {
+                source.transferTo(region.getPosition(), region.getCount(), target);
+            }
+        }
+        streamMetrics.recordStage(Stage.WRITE, System.nanoTime() - startTime);
+        streamMetrics.recordBytesServed(region.getCount());
+    }
+
+    private void writeBlocks(FileRegion region, LocalDiskTier.Lease source, WritableByteChannel target)
+            throws IOException {
+        int blockSize = chunkCache.getBlockSize();
+        long position = region.getPosition();
+        long end = region.getPosition() + region.getCount();
+        while (position < end) {
+            long blockIndex = position / blockSize;
+            long blockEnd = Math.min(end, (blockIndex + 1) * blockSize);
+            ByteBuffer block = chunkCache.getBlock(region.getFile(), blockIndex,
+                    (buffer, blockPosition) -> read(source, buffer, blockPosition));
+            if (block == null) {
+                source.transferTo(position, blockEnd - position, target);
+            } else {
+                int offset = (int) (position - blockIndex * blockSize);
+                block.position(offset).limit(offset + (int) (blockEnd - position));
+                while (block.hasRemaining()) {
+                    target.write(block);
+                }
+            }
+            position = blockEnd;
+        }
+    }
+
+    private void read(LocalDiskTier.Lease source, ByteBuffer buffer, long position) throws IOException {
+        long startTime = System.nanoTime();
+        source.read(buffer, position);
+        streamMetrics.recordStage(Stage.FILE_READ, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Reads file content into buffers, from the blocks of the
+     * {@link ChunkCache} when it is enabled and from the {@link LocalDiskTier}
+     * lease of the file otherwise.
+     */
+    public class Reader implements AutoCloseable {
+
+        private final FileMetadata file;
+        private final LazyFileChannel channel;
+        private final LocalDiskTier.Lease source;
+
+        private Reader(FileMetadata file) {
+            this.file = file;
+            this.channel = new LazyFileChannel(file);
+            this.source = localDiskTier.open(file, channel::get);
+        }
+
+        /**
+         * Fills the remaining bytes of the buffer with the file content at
+         * {@code position}.
+         */
+        public void read(ByteBuffer buffer, long position) throws IOException {
+            long start = position - buffer.position();
+            if (!chunkCache.isEnabled()) {
+                FileRegionWriter.this.read(source, buffer, start);
+                return;
+            }
+            int blockSize = chunkCache.getBlockSize();
+            while (buffer.hasRemaining()) {
+                long current = start + buffer.position();
+                long blockIndex = current / blockSize;
+                int length = (int) Math.min(buffer.remaining(), (blockIndex + 1) * blockSize - current);
+                ByteBuffer block = chunkCache.getBlock(file, blockIndex,
+                        (blockBuffer, blockPosition) -> FileRegionWriter.this.read(source, blockBuffer, blockPosition));
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + length);
+                try {
+                    if (block == null) {
+                        FileRegionWriter.this.read(source, buffer, start);
+                    } else {
+                        int offset = (int) (current - blockIndex * blockSize);
+                        buffer.put(block.position(offset).limit(offset + length));
+                    }
+                } finally {
+                    buffer.limit(limit);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            source.close();
+            channel.close();
+        }
+    }
+
+    private class LazyFileChannel implements AutoCloseable {
+
+        private final FileMetadata file;
+        private FileChannelPool.Lease lease;
+
+        LazyFileChannel(FileMetadata file) {
+            this.file = file;
+        }
+
+        FileChannel get() throws IOException {
+            if (lease == null) {
+                long startTime = System.nanoTime();
+                lease = fileChannelPool.acquire(file);
+                streamMetrics.recordStage(Stage.FILE_OPEN, System.nanoTime() - startTime);
+            }
+            return lease.getChannel();
+        }
+
+        @Override
+        public void close() {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * {@code multipart/byteranges} body whose parts are streamed one
+ * {@link FileRegion} after another, so only the small part headers are held in
+ * memory.
+ */
+@Getter
+public class MultipartFileRegions implements ContentBody {
+
+    private static final String CRLF = "\r\n";
+
+    private final List<FileRegion> regions;
+    private final String boundary;
+    private final String partContentType;
+    private final long fileSize;
+    private final long contentLength;
+
+    public MultipartFileRegions(List<FileRegion> regions, String boundary, String partContentType,
+            long fileSize) {
+        this.regions = regions;
+        this.boundary = boundary;
+        this.partContentType = partContentType;
+        this.fileSize = fileSize;
+        this.contentLength = computeContentLength();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (FileRegion region : regions) {
+            outputStream.write(getPartHeader(region));
+            region.writeTo(outputStream);
+            outputStream.write(getPartEnd());
+        }
+        outputStream.write(getClosingDelimiter());
+    }
+
+    private long computeContentLength() {
+        long length = getClosingDelimiter().length;
+        for (FileRegion region : regions) {
+            length += getPartHeader(region).length + region.getCount() + getPartEnd().length;
+        }
+        return length;
+    }
+
+    public byte[] getPartHeader(FileRegion region) {
+        return new StringBuilder()
+                .append("--").append(boundary).append(CRLF)
+                .append("Content-Type: ").append(partContentType).append(CRLF)
+                .append("Content-Range: bytes ")
+                .append(region.getPosition())
+                .append("-")
+                .append(region.getPosition() + region.getCount() - 1)
+                .append("/")
+                .append(fileSize)
+                .append(CRLF)
+                .append(CRLF)
+                .toString()
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public byte[] getPartEnd() {
+        return CRLF.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public byte[] getClosingDelimiter() {
+        return ("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,32 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Notifies a {@link TransferListener} once the delegate body has been written
+ * and flushed to the client.
+ */
+@AllArgsConstructor
+@Getter
+public class ObservedContentBody implements ContentBody {
+
+    private final ContentBody delegate;
+    private final TransferListener listener;
+
+    @Override
+    public long getContentLength() {
+        return delegate.getContentLength();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        long startTime = System.nanoTime();
+        delegate.writeTo(outputStream);
+        outputStream.flush();
+        listener.onTransferred(delegate.getContentLength(), System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,52 @@
+package video.stream.application.content;
+
+import java.util.Arrays;
+
+/**
+ * Mutable, reusable list of parsed byte-range-specs kept in primitive arrays.
+ * A missing first-byte-pos (suffix range) or last-byte-pos (open-ended range)
+ * is stored as {@link #UNSPECIFIED}.
+ */
+public class RangeSet {
+
+    public static final long UNSPECIFIED = -1L;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] firsts = new long[INITIAL_CAPACITY];
+    private long[] lasts = new long[INITIAL_CAPACITY];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public long getFirst(int index) {
+        return firsts[index];
+    }
+
+    public long getLast(int index) {
+        return lasts[index];
+    }
+
+    public boolean isSuffix(int index) {
+        return firsts[index] == UNSPECIFIED;
+    }
+
+    public boolean isOpenEnded(int index) {
+        return lasts[index] == UNSPECIFIED;
+    }
+
+    public void add(long first, long last) {
+        if (size == firsts.length) {
+            firsts = Arrays.copyOf(firsts, size * 2);
+            lasts = Arrays.copyOf(lasts, size * 2);
+        }
+        firsts[size] = first;
+        lasts[size] = last;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,193 @@
+package video.stream.application.content;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+
+/**
+ * Reads the chunks a player is expected to request next while it is still
+ * downloading the current one. Playback position is tracked per file and
+ * client; after a sequential request the next {@code lookaheadChunks} chunks
+ * are prefetched, after a seek only the next one. Prefetched blocks go to the
+ * {@link ChunkCache} when it is enabled, otherwise they are read and
+ * discarded to warm the page cache. Reads go through the {@link LocalDiskTier},
+ * so prefetching also schedules the local copy of the blocks ahead.
+ * <p>
+ * Prefetching runs on a small pool of low priority threads with a bounded
+ * queue and at most {@code maxInFlightBytes} being read at once. Work that
+ * does not fit is dropped rather than delaying foreground requests.
+ */
+@Component
+@Slf4j
+public class ReadAheadPrefetcher {
+
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private final boolean enabled;
+    private final int lookaheadChunks;
+    private final Semaphore inFlightBytes;
+    private final int maxInFlightBytes;
+    private final Executor executor;
+    private final ChunkCache chunkCache;
+    private final FileChannelPool fileChannelPool;
+    private final LocalDiskTier localDiskTier;
+    private final StreamMetrics streamMetrics;
+    private final Cache<SessionKey, Session> sessions;
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    @Autowired
+    public ReadAheadPrefetcher(
+            @Value("${video-stream.prefetch.enabled:true}") boolean enabled,
+            @Value("${video-stream.prefetch.lookahead-chunks:2}") int lookaheadChunks,
+            @Value("${video-stream.prefetch.max-in-flight:33554432}") int maxInFlightBytes,
+            @Value("${video-stream.prefetch.threads:2}") int threads,
+            @Value("${video-stream.prefetch.queue-capacity:64}") int queueCapacity,
+            ChunkCache chunkCache, FileChannelPool fileChannelPool, LocalDiskTier localDiskTier,
+            StreamMetrics streamMetrics) {
+        this(enabled, lookaheadChunks, maxInFlightBytes, createExecutor(threads, queueCapacity), chunkCache,
+                fileChannelPool, localDiskTier, streamMetrics);
+    }
+
+    ReadAheadPrefetcher(boolean enabled, int lookaheadChunks, int maxInFlightBytes, Executor executor,
+            ChunkCache chunkCache, FileChannelPool fileChannelPool, LocalDiskTier localDiskTier,
+            StreamMetrics streamMetrics) {
+        this.enabled = enabled;
+        this.lookaheadChunks = lookaheadChunks;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.inFlightBytes = new Semaphore(maxInFlightBytes);
+        this.executor = executor;
+        this.chunkCache = chunkCache;
+        this.fileChannelPool = fileChannelPool;
+        this.localDiskTier = localDiskTier;
+        this.streamMetrics = streamMetrics;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .build();
+    }
+
+    /**
+     * Records that the client requested {@code [start, end]} of the file and
+     * schedules reading the following chunks of {@code chunkSize} bytes.
+     */
+    public void onRangeRequested(FileMetadata file, String clientId, long start, long end, long chunkSize) {
+        if (!enabled) {
+            return;
+        }
+        Session session = sessions.get(new SessionKey(file.getPath(), clientId), key -> new Session());
+        long from;
+        long to;
+        synchronized (session) {
+            boolean sequential = start == session.nextPosition;
+            long chunks = sequential ? lookaheadChunks : 1;
+            from = sequential ? Math.max(end + 1, session.prefetchedUntil) : end + 1;
+            to = Math.min(Math.min(file.getSize(), end + 1 + chunks * chunkSize), from + maxInFlightBytes);
+            session.nextPosition = end + 1;
+            session.prefetchedUntil = Math.max(from, to);
+        }
+        if (from < to) {
+            schedule(file, from, to);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private void schedule(FileMetadata file, long from, long to) {
+        int bytes = (int) (to - from);
+        if (!inFlightBytes.tryAcquire(bytes)) {
+            streamMetrics.recordPrefetchDropped();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    prefetch(file, from, to);
+                    streamMetrics.recordPrefetchedBytes(bytes);
+                } catch (IOException e) {
+                    log.debug("Could not prefetch " + file.getPath(), e);
+                } finally {
+                    inFlightBytes.release(bytes);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightBytes.release(bytes);
+            streamMetrics.recordPrefetchDropped();
+        }
+    }
+
+    private void prefetch(FileMetadata file, long from, long to) throws IOException {
+        try (FileChannelPool.Lease lease = fileChannelPool.acquire(file);
+                LocalDiskTier.Lease source = localDiskTier.open(file, lease::getChannel)) {
+            if (chunkCache.isEnabled()) {
+                int blockSize = chunkCache.getBlockSize();
+                for (long blockIndex = from / blockSize; blockIndex * blockSize < to; blockIndex++) {
+                    chunkCache.prefetchBlock(file, blockIndex, source::read);
+                }
+            } else {
+                ByteBuffer buffer = readBuffers.get();
+                for (long position = from; position < to; position += buffer.capacity()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+                    source.read(buffer, position);
+                }
+            }
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "read-ahead-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class SessionKey {
+
+        private final Path path;
+        private final String clientId;
+    }
+
+    private static class Session {
+
+        private long nextPosition = -1;
+        private long prefetchedUntil;
+    }
+}
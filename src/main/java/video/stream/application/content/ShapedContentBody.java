@@ -0,0 +1,69 @@
+package video.stream.application.content;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Writes the delegate body in quanta reserved from the
+ * {@link BandwidthLimiter}, blocking the writing thread while the client or
+ * the service is over its rate.
+ */
+@AllArgsConstructor
+@Getter
+public class ShapedContentBody implements ContentBody {
+
+    private final ContentBody delegate;
+    private final BandwidthLimiter.Pacer pacer;
+
+    @Override
+    public long getContentLength() {
+        return delegate.getContentLength();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        delegate.writeTo(new PacedOutputStream(outputStream));
+    }
+
+    private class PacedOutputStream extends FilterOutputStream {
+
+        private long unreserved = delegate.getContentLength();
+        private long credit;
+
+        PacedOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            acquire(1);
+            out.write(b);
+            credit--;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int count = (int) Math.min(length, acquire(length));
+                out.write(bytes, offset, count);
+                credit -= count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        private long acquire(long bytes) throws IOException {
+            if (credit == 0) {
+                long quantum = unreserved > 0 ? Math.min(pacer.getQuantum(), unreserved) : bytes;
+                pacer.pace(quantum);
+                unreserved -= quantum;
+                credit = quantum;
+            }
+            return credit;
+        }
+    }
+}
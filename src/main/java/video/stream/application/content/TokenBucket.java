@@ -0,0 +1,52 @@
+package video.stream.application.content;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its generic cell rate algorithm form: the state
+ * is the single theoretical arrival time of the next byte, advanced with a
+ * compare-and-set by every reservation. Reservations never fail, a caller
+ * exceeding the rate is told how long to wait before sending instead, so the
+ * bucket paces writers rather than rejecting them.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long bytesPerSecond;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(long bytesPerSecond, long burstBytes, long now) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstNanos = toNanos(burstBytes);
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    /**
+     * Takes {@code bytes} from the bucket at {@code now}, returning the
+     * nanoseconds to wait before they may be sent, {@code 0} when they fit
+     * the burst.
+     */
+    public long reserve(long bytes, long now) {
+        long cost = toNanos(bytes);
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long nextArrival = (arrival - now < 0 ? now : arrival) + cost;
+            if (theoreticalArrival.compareAndSet(arrival, nextArrival)) {
+                return Math.max(0, nextArrival - burstNanos - now);
+            }
+        }
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    private long toNanos(long bytes) {
+        if (bytes > Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return bytes / bytesPerSecond * NANOS_PER_SECOND;
+        }
+        return bytes * NANOS_PER_SECOND / bytesPerSecond;
+    }
+}
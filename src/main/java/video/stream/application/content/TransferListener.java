@@ -0,0 +1,8 @@
+package video.stream.application.content;
+
+@FunctionalInterface
+public interface TransferListener {
+
+    void onTransferred(long bytes, long nanos);
+
+}
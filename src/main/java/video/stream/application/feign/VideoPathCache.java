@@ -0,0 +1,54 @@
+package video.stream.application.feign;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * In-process cache of video file paths in front of {@link VideoServiceFeign}.
+ * Concurrent misses for the same video wait for a single upstream call, and
+ * entries read after {@code refreshAfter} are reloaded in the background while
+ * the cached path keeps being served until {@code expireAfter}.
+ */
+@Component
+public class VideoPathCache {
+
+    private final LoadingCache<Long, String> cache;
+
+    @Autowired
+    public VideoPathCache(VideoServiceFeign videoServiceFeign,
+            @Value("${video-stream.video-path.maximum-size:10000}") long maximumSize,
+            @Value("${video-stream.video-path.expire-after:10m}") Duration expireAfter,
+            @Value("${video-stream.video-path.refresh-after:8m}") Duration refreshAfter) {
+        this(videoServiceFeign, maximumSize, expireAfter, refreshAfter, Ticker.systemTicker(),
+                new DelegatingSecurityContextExecutor(ForkJoinPool.commonPool()));
+    }
+
+    VideoPathCache(VideoServiceFeign videoServiceFeign, long maximumSize, Duration expireAfter,
+            Duration refreshAfter, Ticker ticker, Executor executor) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfter)
+                .refreshAfterWrite(refreshAfter)
+                .ticker(ticker)
+                .executor(executor)
+                .build(videoId -> videoServiceFeign.getVideoFilePath(videoId).getPath());
+    }
+
+    public String getPath(Long videoId) {
+        return cache.get(videoId);
+    }
+
+    public void invalidate(Long videoId) {
+        cache.invalidate(videoId);
+    }
+}
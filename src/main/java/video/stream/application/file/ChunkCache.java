@@ -0,0 +1,179 @@
+package video.stream.application.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Off-heap cache of fixed-size file blocks shared by all streams. A block is
+ * only loaded into a direct buffer once it was requested
+ * {@code admissionThreshold} times, so one-off reads keep going straight from
+ * the file to the socket. Eviction uses Caffeine's W-TinyLFU policy bounded by
+ * the total size of cached blocks.
+ *
+ * <p>
+ * The cache is disabled by default. Enabled, it holds up to
+ * {@code maxMemory} bytes of direct memory on top of the heap, so
+ * {@code -XX:MaxDirectMemorySize} has to leave room for it next to the
+ * buffers of the web server. Blocks are read by the first request missing
+ * them, outside of any cache lock, while concurrent requests for the same
+ * block wait for that read.
+ */
+@Component
+public class ChunkCache {
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final int blockSize;
+    private final int admissionThreshold;
+    private final AsyncCache<ChunkKey, ByteBuffer> blocks;
+    private final Cache<ChunkKey, AtomicInteger> requestCounts;
+
+    @Autowired
+    public ChunkCache(
+            @Value("${video-stream.chunk-cache.enabled:false}") boolean enabled,
+            @Value("${video-stream.chunk-cache.max-memory:268435456}") long maxMemory,
+            @Value("${video-stream.chunk-cache.block-size:262144}") int blockSize,
+            @Value("${video-stream.chunk-cache.admission-threshold:2}") int admissionThreshold) {
+        this.enabled = enabled;
+        this.blockSize = blockSize;
+        this.admissionThreshold = admissionThreshold;
+        this.blocks = Caffeine.newBuilder()
+                .maximumWeight(maxMemory)
+                .<ChunkKey, ByteBuffer>weigher((key, block) -> block.capacity())
+                .recordStats()
+                .buildAsync();
+        this.requestCounts = Caffeine.newBuilder()
+                .maximumSize(Math.max(1024, 4 * maxMemory / blockSize))
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * Returns a read-only view of the cached block, loading it when it was
+     * requested often enough, or {@code null} when the block is not admitted
+     * to the cache yet.
+     */
+    public ByteBuffer getBlock(FileMetadata file, long blockIndex, BlockLoader loader) throws IOException {
+        ChunkKey key = createKey(file, blockIndex);
+        CompletableFuture<ByteBuffer> block = blocks.getIfPresent(key);
+        if (block == null) {
+            if (!isAdmitted(key)) {
+                return null;
+            }
+            return loadBlock(key, file, blockIndex, loader).duplicate();
+        }
+        return await(block).duplicate();
+    }
+
+    /**
+     * Loads the block into the cache regardless of how often it was requested,
+     * for blocks that are about to be read.
+     */
+    public void prefetchBlock(FileMetadata file, long blockIndex, BlockLoader loader) throws IOException {
+        ChunkKey key = createKey(file, blockIndex);
+        if (blocks.getIfPresent(key) == null) {
+            loadBlock(key, file, blockIndex, loader);
+        }
+    }
+
+    public CacheStats getStats() {
+        return blocks.synchronous().stats();
+    }
+
+    public long getUsedMemory() {
+        return blocks.synchronous().policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    void cleanUp() {
+        blocks.synchronous().cleanUp();
+    }
+
+    private boolean isAdmitted(ChunkKey key) {
+        return requestCounts.get(key, k -> new AtomicInteger()).incrementAndGet() >= admissionThreshold;
+    }
+
+    /**
+     * Reads the block on the calling thread unless another request is already
+     * reading it. Only the pending future is put under the cache's lock, it
+     * weighs nothing until the read completes and a failed read is removed
+     * again.
+     */
+    private ByteBuffer loadBlock(ChunkKey key, FileMetadata file, long blockIndex, BlockLoader loader)
+            throws IOException {
+        CompletableFuture<ByteBuffer> loading = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> block = blocks.get(key, (k, executor) -> loading);
+        if (block != loading) {
+            return await(block);
+        }
+        requestCounts.invalidate(key);
+        try {
+            long position = blockIndex * blockSize;
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(blockSize, file.getSize() - position));
+            loader.load(buffer, position);
+            buffer.flip();
+            ByteBuffer readOnlyBlock = buffer.asReadOnlyBuffer();
+            loading.complete(readOnlyBlock);
+            return readOnlyBlock;
+        } catch (IOException | RuntimeException e) {
+            blocks.asMap().remove(key, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static ByteBuffer await(CompletableFuture<ByteBuffer> block) throws IOException {
+        try {
+            return block.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    private ChunkKey createKey(FileMetadata file, long blockIndex) {
+        return new ChunkKey(getFileIdentity(file), file.getLastModified(), file.getSize(), blockIndex);
+    }
+
+    private Object getFileIdentity(FileMetadata file) {
+        return file.getFileKey() != null ? file.getFileKey() : file.getPath();
+    }
+
+    @FunctionalInterface
+    public interface BlockLoader {
+
+        void load(ByteBuffer block, long position) throws IOException;
+
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class ChunkKey {
+
+        private final Object fileIdentity;
+        private final long lastModified;
+        private final long size;
+        private final long blockIndex;
+    }
+}
@@ -0,0 +1,256 @@
+package video.stream.application.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shares one read-only {@link FileChannel} per file between all requests
+ * reading it, which is safe because only positional reads and transfers are
+ * used. Channels are reference counted and closed when the file is replaced
+ * (its metadata no longer matches) or after being idle for
+ * {@code idleTimeout}. At most {@code maxOpenChannels} descriptors are open;
+ * when all of them are in use, opening another one waits up to
+ * {@code acquireTimeout} for a channel to become idle and be evicted.
+ */
+@Component
+@Slf4j
+public class FileChannelPool {
+
+    private static final long EVICTION_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Map<Path, PooledChannel> channels = new ConcurrentHashMap<>();
+    private final int maxOpenChannels;
+    private final Semaphore descriptors;
+    private final long idleTimeoutNanos;
+    private final long acquireTimeoutNanos;
+    private final Ticker ticker;
+    private volatile long lastCleanUp;
+
+    @Autowired
+    public FileChannelPool(
+            @Value("${video-stream.file-channels.max-open:1024}") int maxOpenChannels,
+            @Value("${video-stream.file-channels.idle-timeout:30s}") Duration idleTimeout,
+            @Value("${video-stream.file-channels.acquire-timeout:1s}") Duration acquireTimeout) {
+        this(maxOpenChannels, idleTimeout, acquireTimeout, Ticker.systemTicker());
+    }
+
+    FileChannelPool(int maxOpenChannels, Duration idleTimeout, Duration acquireTimeout, Ticker ticker) {
+        this.maxOpenChannels = maxOpenChannels;
+        this.descriptors = new Semaphore(maxOpenChannels);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.ticker = ticker;
+        this.lastCleanUp = ticker.read();
+    }
+
+    /**
+     * Returns a lease of the shared channel of the file, opening it when the
+     * file has no channel yet or was replaced since its channel was opened.
+     * The lease must be closed once the caller is done with the channel.
+     */
+    public Lease acquire(FileMetadata file) throws IOException {
+        cleanUpIfDue();
+        Path key = file.getPath();
+        while (true) {
+            PooledChannel pooled = channels.get(key);
+            if (pooled != null && pooled.matches(file)) {
+                if (pooled.retain()) {
+                    return new Lease(pooled);
+                }
+            } else if (pooled != null) {
+                retire(key, pooled);
+            }
+            PooledChannel opened = open(file);
+            opened.retain();
+            PooledChannel existing = channels.putIfAbsent(key, opened);
+            if (existing == null) {
+                return new Lease(opened);
+            }
+            opened.release();
+            opened.retire();
+        }
+    }
+
+    public int getOpenChannels() {
+        return channels.size();
+    }
+
+    /**
+     * Closes channels idle for longer than {@code idleTimeout}.
+     */
+    void cleanUp() {
+        long now = ticker.read();
+        lastCleanUp = now;
+        channels.forEach((key, pooled) -> {
+            if (pooled.isIdleSince(now - idleTimeoutNanos)) {
+                retire(key, pooled);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        channels.forEach(this::retire);
+    }
+
+    private void cleanUpIfDue() {
+        if (ticker.read() - lastCleanUp > idleTimeoutNanos / 2) {
+            cleanUp();
+        }
+    }
+
+    private PooledChannel open(FileMetadata file) throws IOException {
+        acquireDescriptor();
+        try {
+            return new PooledChannel(file, FileChannel.open(file.getPath(), StandardOpenOption.READ));
+        } catch (IOException | RuntimeException e) {
+            descriptors.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a descriptor, evicting the least recently used idle channel when
+     * none is left. Channels released while waiting stay open as idle
+     * entries without freeing a descriptor, so eviction is retried between
+     * short waits until {@code acquireTimeout} has passed.
+     */
+    private void acquireDescriptor() throws IOException {
+        if (descriptors.tryAcquire()) {
+            return;
+        }
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        try {
+            while (true) {
+                evictLeastRecentlyUsed();
+                long remaining = deadline - System.nanoTime();
+                if (descriptors.tryAcquire(Math.max(0L, Math.min(remaining, EVICTION_RETRY_NANOS)),
+                        TimeUnit.NANOSECONDS)) {
+                    return;
+                }
+                if (remaining <= 0) {
+                    throw new IOException("All " + maxOpenChannels + " pooled file channels are in use.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a file channel.", e);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        long now = ticker.read();
+        channels.entrySet().stream()
+                .filter(entry -> entry.getValue().isIdleSince(now))
+                .min(Comparator.comparingLong(entry -> entry.getValue().getLastUsed()))
+                .ifPresent(entry -> retire(entry.getKey(), entry.getValue()));
+    }
+
+    private void retire(Path key, PooledChannel pooled) {
+        if (channels.remove(key, pooled)) {
+            pooled.retire();
+        }
+    }
+
+    public static class Lease implements AutoCloseable {
+
+        private final PooledChannel pooled;
+        private boolean closed;
+
+        private Lease(PooledChannel pooled) {
+            this.pooled = pooled;
+        }
+
+        public FileChannel getChannel() {
+            return pooled.channel;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pooled.release();
+            }
+        }
+    }
+
+    private class PooledChannel {
+
+        private final FileMetadata file;
+        private final FileChannel channel;
+        private int references;
+        private boolean retired;
+        private long lastUsed;
+
+        PooledChannel(FileMetadata file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+            this.lastUsed = ticker.read();
+        }
+
+        boolean matches(FileMetadata other) {
+            return file.equals(other);
+        }
+
+        synchronized boolean retain() {
+            if (retired) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        synchronized void release() {
+            references--;
+            lastUsed = ticker.read();
+            if (retired && references == 0) {
+                closeChannel();
+            }
+        }
+
+        synchronized void retire() {
+            if (!retired) {
+                retired = true;
+                if (references == 0) {
+                    closeChannel();
+                }
+            }
+        }
+
+        synchronized long getLastUsed() {
+            return lastUsed;
+        }
+
+        synchronized boolean isIdleSince(long time) {
+            return references == 0 && lastUsed <= time;
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close channel of " + file.getPath(), e);
+            } finally {
+                descriptors.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package video.stream.application.file;
+
+import java.nio.file.Path;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class FileMetadata {
+
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final Object fileKey;
+    /**
+     * Strong entity tag of this file version, derived from size, modification
+     * time and path. The file key is left out, as the same file on the shared
+     * mount has a different one on every instance, and instances have to agree
+     * on the tag for conditional requests routed to another one.
+     */
+    @Getter(lazy = true)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final String entityTag = createEntityTag();
+
+    private String createEntityTag() {
+        return new StringBuilder()
+                .append('"')
+                .append(Long.toHexString(size))
+                .append('-')
+                .append(Long.toHexString(lastModified))
+                .append('-')
+                .append(Integer.toHexString(path.toString().hashCode()))
+                .append('"')
+                .toString();
+    }
+}
@@ -0,0 +1,87 @@
+package video.stream.application.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Keeps size, modification time and file key of served files, so the hot path
+ * does not have to stat the file on every range request. Entries older than
+ * {@code revalidateAfter} are re-read in the background and replaced when the
+ * file changed, and dropped when it no longer exists.
+ */
+@Component
+public class FileMetadataCache {
+
+    private final LoadingCache<Path, FileMetadata> cache;
+
+    @Autowired
+    public FileMetadataCache(
+            @Value("${video-stream.file-metadata.maximum-size:10000}") long maximumSize,
+            @Value("${video-stream.file-metadata.revalidate-after:5s}") Duration revalidateAfter) {
+        this(maximumSize, revalidateAfter, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    FileMetadataCache(long maximumSize, Duration revalidateAfter, Ticker ticker, Executor executor) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(revalidateAfter)
+                .ticker(ticker)
+                .executor(executor)
+                .build(new MetadataLoader());
+    }
+
+    public FileMetadata get(Path path) throws IOException {
+        try {
+            return cache.get(path);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void invalidate(Path path) {
+        cache.invalidate(path);
+    }
+
+    private static FileMetadata readMetadata(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileMetadata(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                attributes.fileKey());
+    }
+
+    private static class MetadataLoader implements CacheLoader<Path, FileMetadata> {
+
+        @Override
+        public FileMetadata load(Path path) throws IOException {
+            return readMetadata(path);
+        }
+
+        @Override
+        public FileMetadata reload(Path path, FileMetadata oldValue) throws IOException {
+            try {
+                FileMetadata metadata = readMetadata(path);
+                return metadata.equals(oldValue) ? oldValue : metadata;
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+}
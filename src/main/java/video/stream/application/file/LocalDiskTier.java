@@ -0,0 +1,665 @@
+package video.stream.application.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-through copy of origin files on a local disk, for origins on slow
+ * network storage. Files are copied block by block in the background as they
+ * are read, starting with the block read from the origin and the next
+ * {@code fillAheadBlocks}, so streaming never waits for a copy: completed
+ * blocks are read from the local copy, everything else from the origin.
+ * <p>
+ * Each copy is a sparse data file next to an index file holding the origin
+ * path, size and modification time and a bitmap of completed blocks, named
+ * after a hash of the origin version and a generation. A block
+ * is marked in the index only after its data was forced to disk, so copies
+ * survive restarts without ever serving a torn block. The copy of a replaced
+ * origin file is dropped on first access, and the least recently used copies
+ * are deleted when the blocks would exceed {@code maxSize}.
+ * <p>
+ * Each copy is guarded by its own monitor, held only for its own bookkeeping
+ * and never while taking another one, so streams of different files never
+ * wait on each other. Only the size of all copies is shared, in an atomic
+ * counter.
+ */
+@Component
+@Slf4j
+public class LocalDiskTier {
+
+    private static final int INDEX_MAGIC = 0x56535449;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final String DATA_SUFFIX = ".data";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final char GENERATION_SEPARATOR = '-';
+
+    @Getter
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    @Getter
+    private final int blockSize;
+    private final int fillAheadBlocks;
+    private final Executor executor;
+    private final FileChannelPool fileChannelPool;
+    private final Clock clock;
+    private final ThreadLocal<ByteBuffer> fillBuffers;
+    private final Map<Path, CachedFile> files = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    @Autowired
+    public LocalDiskTier(
+            @Value("${video-stream.local-tier.enabled:false}") boolean enabled,
+            @Value("${video-stream.local-tier.directory:${java.io.tmpdir}/video-stream-tier}") String directory,
+            @Value("${video-stream.local-tier.max-size:10737418240}") long maxSize,
+            @Value("${video-stream.local-tier.block-size:4194304}") int blockSize,
+            @Value("${video-stream.local-tier.fill-ahead-blocks:4}") int fillAheadBlocks,
+            @Value("${video-stream.local-tier.fill-threads:2}") int fillThreads,
+            @Value("${video-stream.local-tier.queue-capacity:64}") int queueCapacity,
+            FileChannelPool fileChannelPool) {
+        this(enabled, Paths.get(directory), maxSize, blockSize, fillAheadBlocks,
+                createExecutor(fillThreads, queueCapacity), fileChannelPool, Clock.systemUTC());
+    }
+
+    LocalDiskTier(boolean enabled, Path directory, long maxSize, int blockSize, int fillAheadBlocks,
+            Executor executor, FileChannelPool fileChannelPool, Clock clock) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.blockSize = blockSize;
+        this.fillAheadBlocks = fillAheadBlocks;
+        this.executor = executor;
+        this.fileChannelPool = fileChannelPool;
+        this.clock = clock;
+        this.fillBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(blockSize));
+    }
+
+    /**
+     * Picks up the local copies left by previous runs.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (enabled) {
+            Files.createDirectories(directory);
+            loadIndexes();
+        }
+    }
+
+    /**
+     * Returns a lease reading the file from its local copy where blocks are
+     * complete and through {@code origin} elsewhere, scheduling the copy of
+     * the blocks read from the origin. The lease must be closed once the
+     * caller is done reading.
+     */
+    public Lease open(FileMetadata file, ChannelSupplier origin) {
+        if (!enabled) {
+            return new Lease(null, origin);
+        }
+        while (true) {
+            CachedFile cached = files.get(file.getPath());
+            if (cached != null && !cached.matches(file)) {
+                retire(cached, false);
+                cached = null;
+            }
+            if (cached == null) {
+                try {
+                    cached = create(file);
+                } catch (IOException e) {
+                    log.warn("Could not create local copy of " + file.getPath(), e);
+                    return new Lease(null, origin);
+                }
+                CachedFile existing = files.putIfAbsent(file.getPath(), cached);
+                if (existing != null) {
+                    // another request created a copy at the same time
+                    cached.delete();
+                    continue;
+                }
+            }
+            if (cached.retain(file, clock.millis())) {
+                return new Lease(cached, origin);
+            }
+        }
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public int getCachedFiles() {
+        return files.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+        files.values().forEach(CachedFile::closeChannels);
+        files.clear();
+    }
+
+    /**
+     * Creates the files of a new copy. Names are never reused, so the new
+     * copy cannot truncate, or later be deleted along with, the files of a
+     * retired copy of the same origin version still being read.
+     */
+    private CachedFile create(FileMetadata file) throws IOException {
+        String hash = createName(file);
+        byte[] originPath = file.getPath().toString().getBytes(StandardCharsets.UTF_8);
+        int blockCount = getBlockCount(file.getSize());
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE + originPath.length + (blockCount + 7) / 8)
+                .putInt(INDEX_MAGIC)
+                .putInt(INDEX_VERSION)
+                .putInt(blockSize)
+                .putLong(file.getSize())
+                .putLong(file.getLastModified())
+                .putInt(originPath.length)
+                .put(originPath);
+        while (true) {
+            String name = hash + GENERATION_SEPARATOR + generations.incrementAndGet();
+            Path dataPath = directory.resolve(name + DATA_SUFFIX);
+            Path indexPath = directory.resolve(name + INDEX_SUFFIX);
+            FileChannel index;
+            try {
+                index = FileChannel.open(indexPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                // a copy loaded from a previous run
+                continue;
+            }
+            try {
+                header.clear();
+                writeFully(index, header, 0);
+                return new CachedFile(file, dataPath, indexPath, FileChannel.open(dataPath,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                        index, INDEX_HEADER_SIZE + originPath.length, new AtomicLongArray((blockCount + 63) / 64));
+            } catch (IOException | RuntimeException e) {
+                index.close();
+                deleteQuietly(indexPath);
+                if (!(e instanceof FileAlreadyExistsException)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void loadIndexes() throws IOException {
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*" + INDEX_SUFFIX)) {
+            for (Path indexPath : indexes) {
+                Path dataPath = getDataPath(indexPath);
+                try {
+                    CachedFile loaded = load(indexPath, dataPath);
+                    CachedFile previous = files.put(loaded.origin.getPath(), loaded);
+                    usedBytes.addAndGet(loaded.usedBytes);
+                    if (previous != null) {
+                        retire(previous.lastAccess < loaded.lastAccess ? previous : loaded, false);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Dropping unreadable local copy " + indexPath, e);
+                    deleteQuietly(indexPath);
+                    deleteQuietly(dataPath);
+                }
+            }
+        }
+        try (DirectoryStream<Path> data = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+            for (Path dataPath : data) {
+                if (!Files.exists(getIndexPath(dataPath))) {
+                    deleteQuietly(dataPath);
+                }
+            }
+        }
+        while (usedBytes.get() > maxSize && evictLeastRecentlyUsed(null)) {
+            // keep evicting until the copies fit the budget
+        }
+        log.info("Loaded " + files.size() + " local copies using " + usedBytes.get() + " bytes from " + directory);
+    }
+
+    private CachedFile load(Path indexPath, Path dataPath) throws IOException {
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        if (index.getInt() != INDEX_MAGIC || index.getInt() != INDEX_VERSION || index.getInt() != blockSize) {
+            throw new IOException("Index was written by another version or block size.");
+        }
+        long size = index.getLong();
+        long lastModified = index.getLong();
+        byte[] originPath = new byte[index.getInt()];
+        index.get(originPath);
+        int bitmapOffset = index.position();
+        int blockCount = getBlockCount(size);
+        BitSet bitmap = BitSet.valueOf(index);
+        AtomicLongArray completed = new AtomicLongArray((blockCount + 63) / 64);
+        long[] words = bitmap.get(0, blockCount).toLongArray();
+        for (int i = 0; i < words.length; i++) {
+            completed.set(i, words[i]);
+        }
+        FileMetadata origin = new FileMetadata(Paths.get(new String(originPath, StandardCharsets.UTF_8)), size,
+                lastModified, null);
+        FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            CachedFile loaded = new CachedFile(origin, dataPath, indexPath,
+                    FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE), indexChannel,
+                    bitmapOffset, completed);
+            for (int block = bitmap.nextSetBit(0); block >= 0 && block < blockCount;
+                    block = bitmap.nextSetBit(block + 1)) {
+                loaded.usedBytes += loaded.getBlockLength(block);
+            }
+            loaded.lastAccess = Files.getLastModifiedTime(indexPath).toMillis();
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            throw e;
+        }
+    }
+
+    private void scheduleFill(CachedFile cached, int firstBlock) {
+        int lastBlock = (int) Math.min(cached.blockCount, (long) firstBlock + 1 + fillAheadBlocks);
+        for (int block = firstBlock; block < lastBlock; block++) {
+            if (cached.isComplete(block) || !cached.claim(block)) {
+                continue;
+            }
+            int length = cached.getBlockLength(block);
+            if (!reserve(length, cached)) {
+                complete(cached, block, 0, false);
+                return;
+            }
+            int filledBlock = block;
+            try {
+                executor.execute(() -> fill(cached, filledBlock, length));
+            } catch (RejectedExecutionException e) {
+                complete(cached, block, length, false);
+                return;
+            }
+        }
+    }
+
+    private void fill(CachedFile cached, int block, int length) {
+        boolean filled = false;
+        long position = (long) block * blockSize;
+        try (FileChannelPool.Lease lease = fileChannelPool.acquire(cached.origin)) {
+            ByteBuffer buffer = fillBuffers.get();
+            buffer.clear().limit(length);
+            FileChannel origin = lease.getChannel();
+            while (buffer.hasRemaining()) {
+                if (origin.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of file at position " + (position + buffer.position()));
+                }
+            }
+            buffer.flip();
+            writeFully(cached.data, buffer, position);
+            cached.data.force(false);
+            filled = true;
+        } catch (IOException e) {
+            log.debug("Could not copy block " + block + " of " + cached.origin.getPath(), e);
+        } finally {
+            complete(cached, block, length, filled);
+        }
+    }
+
+    private void complete(CachedFile cached, int block, int length, boolean filled) {
+        synchronized (cached) {
+            cached.pending.clear(block);
+            if (!cached.retired) {
+                if (filled) {
+                    try {
+                        cached.markComplete(block);
+                    } catch (IOException e) {
+                        log.warn("Could not update index of " + cached.indexPath, e);
+                        unreserve(length, cached);
+                    }
+                } else {
+                    unreserve(length, cached);
+                }
+            }
+        }
+        release(cached);
+    }
+
+    /**
+     * Adds the block to the size of the copy, evicting the least recently
+     * used copies not in use while the size of all copies would exceed the
+     * budget.
+     */
+    private boolean reserve(long length, CachedFile cached) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + length <= maxSize) {
+                if (usedBytes.compareAndSet(used, used + length)) {
+                    break;
+                }
+            } else if (!evictLeastRecentlyUsed(cached)) {
+                return false;
+            }
+        }
+        synchronized (cached) {
+            if (!cached.retired) {
+                cached.usedBytes += length;
+                return true;
+            }
+        }
+        usedBytes.addAndGet(-length);
+        return false;
+    }
+
+    /**
+     * Gives back the size of a block of a copy not retired, called while
+     * holding the monitor of the copy.
+     */
+    private void unreserve(long length, CachedFile cached) {
+        cached.usedBytes -= length;
+        usedBytes.addAndGet(-length);
+    }
+
+    private boolean evictLeastRecentlyUsed(CachedFile excluded) {
+        while (true) {
+            Optional<CachedFile> victim = files.values().stream()
+                    .filter(cached -> cached != excluded && cached.isIdle())
+                    .min(Comparator.comparingLong(cached -> cached.lastAccess));
+            if (victim.isEmpty()) {
+                return false;
+            }
+            if (retire(victim.get(), true)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(CachedFile cached) {
+        boolean delete;
+        synchronized (cached) {
+            cached.references--;
+            delete = cached.retired && cached.references == 0;
+        }
+        if (delete) {
+            cached.delete();
+        }
+    }
+
+    /**
+     * Retires the copy, deleting it once no lease reads it anymore. With
+     * {@code onlyIfIdle}, a copy taken by a lease in the meantime is kept.
+     */
+    private boolean retire(CachedFile cached, boolean onlyIfIdle) {
+        long freed;
+        boolean delete;
+        synchronized (cached) {
+            if (cached.retired || onlyIfIdle && cached.references > 0) {
+                return false;
+            }
+            cached.retired = true;
+            freed = cached.usedBytes;
+            delete = cached.references == 0;
+        }
+        files.remove(cached.origin.getPath(), cached);
+        usedBytes.addAndGet(-freed);
+        if (delete) {
+            cached.delete();
+        }
+        return true;
+    }
+
+    private int getBlockCount(long size) {
+        return (int) ((size + blockSize - 1) / blockSize);
+    }
+
+    private static String createName(FileMetadata file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(file.getPath().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(ByteBuffer.allocate(16).putLong(file.getSize()).putLong(file.getLastModified()).array());
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest()) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path getDataPath(Path indexPath) {
+        String name = indexPath.getFileName().toString();
+        return indexPath.resolveSibling(name.substring(0, name.length() - INDEX_SUFFIX.length()) + DATA_SUFFIX);
+    }
+
+    private static Path getIndexPath(Path dataPath) {
+        String name = dataPath.getFileName().toString();
+        return dataPath.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete " + path, e);
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "local-tier-fill-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @FunctionalInterface
+    public interface ChannelSupplier {
+
+        FileChannel get() throws IOException;
+
+    }
+
+    /**
+     * Reads of one file, each served from the local copy when the block it
+     * falls into is complete and from the origin channel otherwise.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final CachedFile cached;
+        private final ChannelSupplier origin;
+        private boolean closed;
+
+        private Lease(CachedFile cached, ChannelSupplier origin) {
+            this.cached = cached;
+            this.origin = origin;
+        }
+
+        /**
+         * Fills the remaining bytes of the buffer with the file content at
+         * {@code position}.
+         */
+        public void read(ByteBuffer buffer, long position) throws IOException {
+            int limit = buffer.limit();
+            try {
+                while (buffer.position() < limit) {
+                    long current = position + buffer.position();
+                    buffer.limit((int) Math.min(limit, buffer.position() + (getSpanEnd(current) - current)));
+                    if (getChannel(current).read(buffer, current) < 0) {
+                        throw new EOFException("Unexpected end of file at position " + current);
+                    }
+                    buffer.limit(limit);
+                }
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            long end = position + count;
+            while (position < end) {
+                long spanEnd = Math.min(end, getSpanEnd(position));
+                long transferred = getChannel(position).transferTo(position, spanEnd - position, target);
+                if (transferred <= 0) {
+                    throw new EOFException("Unexpected end of file at position " + position);
+                }
+                position += transferred;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed && cached != null) {
+                closed = true;
+                release(cached);
+            }
+        }
+
+        private long getSpanEnd(long position) {
+            return cached == null ? Long.MAX_VALUE : (position / blockSize + 1) * blockSize;
+        }
+
+        private FileChannel getChannel(long position) throws IOException {
+            if (cached != null) {
+                int block = (int) (position / blockSize);
+                if (cached.isComplete(block)) {
+                    return cached.data;
+                }
+                scheduleFill(cached, block);
+            }
+            return origin.get();
+        }
+    }
+
+    private class CachedFile {
+
+        private final Path dataPath;
+        private final Path indexPath;
+        private final FileChannel data;
+        private final FileChannel index;
+        private final int bitmapOffset;
+        private final int blockCount;
+        private final AtomicLongArray completed;
+        private final BitSet pending = new BitSet();
+        private volatile FileMetadata origin;
+        private volatile long lastAccess;
+        private long usedBytes;
+        private int references;
+        private boolean retired;
+
+        CachedFile(FileMetadata origin, Path dataPath, Path indexPath, FileChannel data, FileChannel index,
+                int bitmapOffset, AtomicLongArray completed) {
+            this.origin = origin;
+            this.dataPath = dataPath;
+            this.indexPath = indexPath;
+            this.data = data;
+            this.index = index;
+            this.bitmapOffset = bitmapOffset;
+            this.blockCount = getBlockCount(origin.getSize());
+            this.completed = completed;
+        }
+
+        boolean matches(FileMetadata file) {
+            return origin.getSize() == file.getSize() && origin.getLastModified() == file.getLastModified();
+        }
+
+        /**
+         * Takes a reference for a lease, unless the copy has been retired.
+         */
+        synchronized boolean retain(FileMetadata file, long now) {
+            if (retired) {
+                return false;
+            }
+            origin = file;
+            references++;
+            lastAccess = now;
+            return true;
+        }
+
+        /**
+         * Marks the block as being filled and takes a reference for the fill,
+         * unless it is already being filled or the copy has been retired.
+         */
+        synchronized boolean claim(int block) {
+            if (retired || pending.get(block)) {
+                return false;
+            }
+            pending.set(block);
+            references++;
+            return true;
+        }
+
+        synchronized boolean isIdle() {
+            return !retired && references == 0;
+        }
+
+        boolean isComplete(int block) {
+            return (completed.get(block >>> 6) & (1L << block)) != 0;
+        }
+
+        int getBlockLength(int block) {
+            return (int) Math.min(blockSize, origin.getSize() - (long) block * blockSize);
+        }
+
+        /**
+         * Marks the block complete, rewriting the index byte holding its bit.
+         */
+        void markComplete(int block) throws IOException {
+            long word = completed.get(block >>> 6) | (1L << block);
+            int shift = (block & 0x38);
+            writeFully(index, ByteBuffer.wrap(new byte[] {(byte) (word >>> shift)}), bitmapOffset + block / 8);
+            completed.set(block >>> 6, word);
+        }
+
+        void closeChannels() {
+            try {
+                data.close();
+                index.close();
+            } catch (IOException e) {
+                log.warn("Could not close local copy " + dataPath, e);
+            }
+        }
+
+        void delete() {
+            closeChannels();
+            deleteQuietly(indexPath);
+            deleteQuietly(dataPath);
+        }
+    }
+}
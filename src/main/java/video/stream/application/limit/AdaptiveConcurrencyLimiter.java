@@ -0,0 +1,229 @@
+package video.stream.application.limit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Limits the stream requests served concurrently to what the disk and the
+ * {@code video-service} keep up with, and rejects the rest up front instead of
+ * letting them queue for workers. The limit follows the latency of the
+ * requests up to the start of their body, which the service controls, rather
+ * than up to its end, which depends on the chunk size, the pacing and the
+ * client's network: it grows while the short-term latency stays within
+ * {@code tolerance} of the long-term one and shrinks by their ratio once it
+ * rises above, so it settles where adding requests starts to add latency.
+ * Failed requests shrink it multiplicatively.
+ * <p>
+ * Playback starts only get {@code startShare} of the limit while requests for
+ * the following chunks of a stream in progress may use all of it, so players
+ * already playing keep their chunks when new starts are shed.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double startShare;
+    private final Duration retryAfter;
+    private final Ticker ticker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger startsInFlight = new AtomicInteger();
+    private final LongAdder rejectedStarts = new LongAdder();
+    private final LongAdder rejectedContinuations = new LongAdder();
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(
+            @Value("${video-stream.concurrency-limit.enabled:false}") boolean enabled,
+            @Value("${video-stream.concurrency-limit.initial-limit:200}") int initialLimit,
+            @Value("${video-stream.concurrency-limit.min-limit:20}") int minLimit,
+            @Value("${video-stream.concurrency-limit.max-limit:2000}") int maxLimit,
+            @Value("${video-stream.concurrency-limit.tolerance:1.5}") double tolerance,
+            @Value("${video-stream.concurrency-limit.smoothing:0.2}") double smoothing,
+            @Value("${video-stream.concurrency-limit.start-share:0.5}") double startShare,
+            @Value("${video-stream.concurrency-limit.retry-after:1s}") Duration retryAfter) {
+        this(enabled, initialLimit, minLimit, maxLimit, tolerance, smoothing, startShare, retryAfter,
+                Ticker.systemTicker());
+    }
+
+    AdaptiveConcurrencyLimiter(boolean enabled, int initialLimit, int minLimit, int maxLimit, double tolerance,
+            double smoothing, double startShare, Duration retryAfter, Ticker ticker) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.startShare = startShare;
+        this.retryAfter = retryAfter;
+        this.ticker = ticker;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits a request, or returns {@code null} when it is over its budget.
+     * The caller has to complete the returned permit once the response has
+     * been written.
+     */
+    public Permit tryAcquire(boolean playbackStart) {
+        int currentLimit = (int) limit;
+        if (playbackStart && startsInFlight.incrementAndGet() > currentLimit * startShare) {
+            startsInFlight.decrementAndGet();
+            rejectedStarts.increment();
+            return null;
+        }
+        int concurrency = inFlight.incrementAndGet();
+        if (concurrency > currentLimit) {
+            inFlight.decrementAndGet();
+            if (playbackStart) {
+                startsInFlight.decrementAndGet();
+                rejectedStarts.increment();
+            } else {
+                rejectedContinuations.increment();
+            }
+            return null;
+        }
+        return new Permit(playbackStart, concurrency, ticker.read());
+    }
+
+    private void release(Permit permit, Outcome outcome) {
+        inFlight.decrementAndGet();
+        if (permit.playbackStart) {
+            startsInFlight.decrementAndGet();
+        }
+        if (outcome == Outcome.DROPPED) {
+            synchronized (this) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            }
+        } else if (outcome == Outcome.SUCCEEDED) {
+            long latency = permit.latency > 0 ? permit.latency : ticker.read() - permit.startTime;
+            update(Math.max(1L, latency), permit.concurrency);
+        }
+    }
+
+    private synchronized void update(long rtt, int concurrency) {
+        if (longRtt == 0) {
+            shortRtt = rtt;
+            longRtt = rtt;
+            return;
+        }
+        shortRtt += (rtt - shortRtt) * 2 / (SHORT_WINDOW + 1);
+        longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        if (longRtt > 2 * shortRtt) {
+            // recover quickly from a latency spike that has passed
+            longRtt *= 0.95;
+        }
+        if (concurrency < limit / 2) {
+            // too few requests to tell whether the limit could grow
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedStarts() {
+        return rejectedStarts.sum();
+    }
+
+    public long getRejectedContinuations() {
+        return rejectedContinuations.sum();
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    private enum Outcome {
+        SUCCEEDED, DROPPED, IGNORED
+    }
+
+    /**
+     * Slot of an admitted request. Only the first of its completions releases
+     * the slot.
+     */
+    public final class Permit {
+
+        private final boolean playbackStart;
+        private final int concurrency;
+        private final long startTime;
+        private long latency;
+        private boolean released;
+
+        private Permit(boolean playbackStart, int concurrency, long startTime) {
+            this.playbackStart = playbackStart;
+            this.concurrency = concurrency;
+            this.startTime = startTime;
+        }
+
+        /**
+         * Takes the latency sample of the request when its body starts, the
+         * service having resolved and positioned what it serves, so the pacing
+         * of the body and the client reading it do not count. Only the first
+         * call takes it.
+         */
+        public synchronized void bodyStarted() {
+            if (latency == 0) {
+                latency = Math.max(1L, ticker.read() - startTime);
+            }
+        }
+
+        /**
+         * Releases the slot and samples the latency of the request, up to the
+         * start of its body if that has been reported, otherwise up to now.
+         */
+        public void succeeded() {
+            complete(Outcome.SUCCEEDED);
+        }
+
+        /**
+         * Releases the slot of a request that failed on the service side,
+         * shrinking the limit.
+         */
+        public void dropped() {
+            complete(Outcome.DROPPED);
+        }
+
+        /**
+         * Releases the slot without sampling, for requests whose latency says
+         * nothing about the load, such as those aborted by the client.
+         */
+        public void ignored() {
+            complete(Outcome.IGNORED);
+        }
+
+        private synchronized void complete(Outcome outcome) {
+            if (!released) {
+                released = true;
+                release(this, outcome);
+            }
+        }
+    }
+}
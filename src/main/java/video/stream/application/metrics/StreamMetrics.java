@@ -0,0 +1,177 @@
+package video.stream.application.metrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the streaming pipeline. All meters are registered up front, or
+ * once per video, so recording on the hot path is a lookup-free update of a
+ * lock-free counter. Timers and range sizes publish fixed percentile histogram
+ * buckets, aggregated by the monitoring backend instead of computing
+ * percentiles in the service.
+ */
+@Component
+public class StreamMetrics {
+
+    public static final String STAGE_TIMER = "video.stream.stage";
+    public static final String BYTES_SERVED_COUNTER = "video.stream.bytes.served";
+    public static final String RANGE_SIZE_SUMMARY = "video.stream.range.size";
+    public static final String REQUESTS_COUNTER = "video.stream.requests";
+    public static final String ACTIVE_STREAMS_GAUGE = "video.stream.active";
+    public static final String PREFETCHED_BYTES_COUNTER = "video.stream.prefetch.bytes";
+    public static final String PREFETCH_DROPPED_COUNTER = "video.stream.prefetch.dropped";
+    public static final String THROTTLED_BYTES_COUNTER = "video.stream.throttled.bytes";
+    static final String OTHER_VIDEOS_TAG = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxTaggedVideos;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Counter bytesServed;
+    private final DistributionSummary rangeSizes;
+    private final Map<Long, Counter> videoRequests = new ConcurrentHashMap<>();
+    private final Counter otherVideoRequests;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final Counter prefetchedBytes;
+    private final Counter prefetchDropped;
+    private final Counter clientThrottledBytes;
+    private final Counter globalThrottledBytes;
+
+    @Autowired
+    public StreamMetrics(MeterRegistry meterRegistry,
+            @Value("${video-stream.metrics.max-tagged-videos:1000}") int maxTaggedVideos) {
+        this.meterRegistry = meterRegistry;
+        this.maxTaggedVideos = maxTaggedVideos;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder(STAGE_TIMER)
+                    .description("Time spent in a stage of serving a range request")
+                    .tag("stage", stage.getTagValue())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry));
+        }
+        this.bytesServed = Counter.builder(BYTES_SERVED_COUNTER)
+                .baseUnit("bytes")
+                .description("Bytes of video content written to clients")
+                .register(meterRegistry);
+        this.rangeSizes = DistributionSummary.builder(RANGE_SIZE_SUMMARY)
+                .baseUnit("bytes")
+                .description("Length of the byte ranges served")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(64.0 * 1024 * 1024)
+                .register(meterRegistry);
+        this.otherVideoRequests = videoRequestCounter(OTHER_VIDEOS_TAG);
+        this.prefetchedBytes = Counter.builder(PREFETCHED_BYTES_COUNTER)
+                .baseUnit("bytes")
+                .description("Bytes read ahead of the requests of players")
+                .register(meterRegistry);
+        this.prefetchDropped = Counter.builder(PREFETCH_DROPPED_COUNTER)
+                .description("Prefetches skipped because the prefetch capacity was exhausted")
+                .register(meterRegistry);
+        this.clientThrottledBytes = throttledBytesCounter("client");
+        this.globalThrottledBytes = throttledBytesCounter("global");
+        Gauge.builder(ACTIVE_STREAMS_GAUGE, activeStreams, AtomicInteger::get)
+                .description("Response bodies currently being written")
+                .register(meterRegistry);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBytesServed(long bytes) {
+        bytesServed.increment(bytes);
+    }
+
+    public void recordRange(long length) {
+        rangeSizes.record(length);
+    }
+
+    /**
+     * Counts a request for the video. Only the first {@code maxTaggedVideos}
+     * videos get their own counter, the rest share the {@code other} tag to
+     * keep the number of time series bounded.
+     */
+    public void recordRequest(Long videoId) {
+        Counter counter = videoRequests.get(videoId);
+        if (counter == null) {
+            counter = videoRequests.size() < maxTaggedVideos
+                    ? videoRequests.computeIfAbsent(videoId, id -> videoRequestCounter(String.valueOf(id)))
+                    : otherVideoRequests;
+        }
+        counter.increment();
+    }
+
+    public void recordPrefetchedBytes(long bytes) {
+        prefetchedBytes.increment(bytes);
+    }
+
+    public void recordPrefetchDropped() {
+        prefetchDropped.increment();
+    }
+
+    /**
+     * Counts bytes whose write was delayed, attributed to the bandwidth limit
+     * of the client or the global one, whichever imposed the longer delay.
+     */
+    public void recordThrottledBytes(boolean globalLimit, long bytes) {
+        (globalLimit ? globalThrottledBytes : clientThrottledBytes).increment(bytes);
+    }
+
+    public void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamFinished() {
+        activeStreams.decrementAndGet();
+    }
+
+    private Counter videoRequestCounter(String videoTag) {
+        return Counter.builder(REQUESTS_COUNTER)
+                .description("Range requests per video")
+                .tag("video", videoTag)
+                .register(meterRegistry);
+    }
+
+    private Counter throttledBytesCounter(String limitTag) {
+        return Counter.builder(THROTTLED_BYTES_COUNTER)
+                .baseUnit("bytes")
+                .description("Bytes whose write was delayed by bandwidth shaping")
+                .tag("limit", limitTag)
+                .register(meterRegistry);
+    }
+
+    public enum Stage {
+
+        PATH_RESOLUTION("path-resolution"),
+        FILE_METADATA("file-metadata"),
+        FILE_OPEN("file-open"),
+        FILE_READ("file-read"),
+        WRITE("write");
+
+        private final String tagValue;
+
+        Stage(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package video.stream.application.mp4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Rewrites a {@code moov} box that is moved from behind the media data to
+ * {@code insertPosition}, in front of it. Every chunk offset in
+ * {@code stco}/{@code co64} tables is shifted by where its byte ends up in the
+ * relocated layout; {@code stco} tables whose offsets no longer fit 32 bits
+ * are widened to {@code co64}, which grows the box and therefore the shift
+ * until no more tables overflow.
+ */
+final class FaststartRelocator {
+
+    private static final long MAX_32_BIT_OFFSET = 0xFFFFFFFFL;
+    private static final int TABLE_ENTRIES_OFFSET = 8;
+
+    private FaststartRelocator() {
+    }
+
+    static byte[] relocate(byte[] moov, long moovPosition, long insertPosition) {
+        ByteBuffer source = ByteBuffer.wrap(moov);
+        List<Mp4Box> boxes = Mp4Parser.readBoxes(source, 0, moov.length);
+        List<Mp4Box> offsetTables = new ArrayList<>();
+        collectOffsetTables(boxes, offsetTables);
+        Set<Mp4Box> widenedTables = Collections.newSetFromMap(new IdentityHashMap<>());
+        long relocatedSize = moov.length;
+        boolean widened = true;
+        while (widened) {
+            widened = false;
+            LongUnaryOperator mapping = offsetMapping(moovPosition, moov.length, insertPosition, relocatedSize);
+            for (Mp4Box table : offsetTables) {
+                if (Mp4Parser.STCO.equals(table.getType()) && !widenedTables.contains(table)
+                        && getMaxOffset(source, table, mapping) > MAX_32_BIT_OFFSET) {
+                    widenedTables.add(table);
+                    relocatedSize += 4L * getEntryCount(source, table);
+                    widened = true;
+                }
+            }
+        }
+        ByteBuffer target = ByteBuffer.allocate(Math.toIntExact(relocatedSize));
+        LongUnaryOperator mapping = offsetMapping(moovPosition, moov.length, insertPosition, relocatedSize);
+        for (Mp4Box box : boxes) {
+            write(box, source, target, widenedTables, mapping);
+        }
+        return target.array();
+    }
+
+    static LongUnaryOperator offsetMapping(long moovPosition, long moovSize, long insertPosition,
+            long relocatedSize) {
+        return offset -> {
+            if (offset < insertPosition) {
+                return offset;
+            }
+            if (offset < moovPosition) {
+                return offset + relocatedSize;
+            }
+            return offset - moovSize + relocatedSize;
+        };
+    }
+
+    private static void collectOffsetTables(List<Mp4Box> boxes, List<Mp4Box> offsetTables) {
+        for (Mp4Box box : boxes) {
+            if (Mp4Parser.STCO.equals(box.getType()) || Mp4Parser.CO64.equals(box.getType())) {
+                offsetTables.add(box);
+            }
+            collectOffsetTables(box.getChildren(), offsetTables);
+        }
+    }
+
+    private static int getEntryCount(ByteBuffer source, Mp4Box table) {
+        return source.getInt((int) table.getPayloadPosition() + 4);
+    }
+
+    private static long getMaxOffset(ByteBuffer source, Mp4Box table, LongUnaryOperator mapping) {
+        int entries = (int) table.getPayloadPosition() + TABLE_ENTRIES_OFFSET;
+        long maxOffset = 0;
+        for (int i = 0; i < getEntryCount(source, table); i++) {
+            long offset = Integer.toUnsignedLong(source.getInt(entries + 4 * i));
+            maxOffset = Math.max(maxOffset, mapping.applyAsLong(offset));
+        }
+        return maxOffset;
+    }
+
+    private static long getRelocatedSize(Mp4Box box, ByteBuffer source, Set<Mp4Box> widenedTables) {
+        if (widenedTables.contains(box)) {
+            return box.getSize() + 4L * getEntryCount(source, box);
+        }
+        if (box.getChildren().isEmpty()) {
+            return box.getSize();
+        }
+        long size = box.getSize();
+        for (Mp4Box child : box.getChildren()) {
+            size += getRelocatedSize(child, source, widenedTables) - child.getSize();
+        }
+        return size;
+    }
+
+    private static void write(Mp4Box box, ByteBuffer source, ByteBuffer target, Set<Mp4Box> widenedTables,
+            LongUnaryOperator mapping) {
+        boolean widened = widenedTables.contains(box);
+        if (box.getChildren().isEmpty() && !Mp4Parser.STCO.equals(box.getType())
+                && !Mp4Parser.CO64.equals(box.getType())) {
+            target.put(source.duplicate().position((int) box.getPosition()).limit((int) box.getEnd()));
+            return;
+        }
+        writeHeader(widened ? Mp4Parser.CO64 : box.getType(), getRelocatedSize(box, source, widenedTables),
+                box.getHeaderSize(), target);
+        if (!box.getChildren().isEmpty()) {
+            long position = box.getPayloadPosition();
+            for (Mp4Box child : box.getChildren()) {
+                write(child, source, target, widenedTables, mapping);
+                position = child.getEnd();
+            }
+            target.put(source.duplicate().position((int) position).limit((int) box.getEnd()));
+            return;
+        }
+        int payload = (int) box.getPayloadPosition();
+        int entryCount = getEntryCount(source, box);
+        target.putInt(source.getInt(payload)).putInt(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            if (Mp4Parser.CO64.equals(box.getType())) {
+                target.putLong(mapping.applyAsLong(source.getLong(payload + TABLE_ENTRIES_OFFSET + 8 * i)));
+            } else {
+                long offset = mapping.applyAsLong(
+                        Integer.toUnsignedLong(source.getInt(payload + TABLE_ENTRIES_OFFSET + 4 * i)));
+                if (widened) {
+                    target.putLong(offset);
+                } else {
+                    target.putInt((int) offset);
+                }
+            }
+        }
+    }
+
+    private static void writeHeader(String type, long size, int headerSize, ByteBuffer target) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        if (headerSize == 16) {
+            target.putInt(1).put(typeBytes).putLong(size);
+        } else {
+            target.putInt((int) size).put(typeBytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package video.stream.application.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the boxes of fragmented MP4 remuxed from a progressive one: the
+ * initialization segment, whose {@code moov} keeps the sample descriptions of
+ * the source tracks but none of their samples, and the {@code moof} box and
+ * {@code mdat} header of a media segment.
+ */
+final class FragmentedMp4Writer {
+
+    static final int MDAT_HEADER_SIZE = 8;
+
+    private static final Set<String> STBL_ANCESTORS = Set.of("trak", "mdia", "minf");
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400 | 0x000800;
+    private static final int VERSION_1 = 0x01000000;
+    private static final int TRUN_ENTRY_SIZE = 16;
+    private static final int TRAF_FIXED_SIZE = 8 + 16 + 20 + 20;
+
+    private FragmentedMp4Writer() {
+    }
+
+    static byte[] initSegment(Mp4Movie movie, List<Mp4Track> tracks) {
+        ByteBuffer source = movie.getMoov();
+        ByteArrayOutputStream moov = new ByteArrayOutputStream();
+        moov.writeBytes(copy(source, movie.getMoovBox().findChild("mvhd")));
+        ByteArrayOutputStream mvex = new ByteArrayOutputStream();
+        for (Mp4Track track : tracks) {
+            moov.writeBytes(rewriteTrak(source, track.getTrak(), track.getStbl()));
+            mvex.writeBytes(fullBox("trex", 0, ByteBuffer.allocate(20)
+                    .putInt(track.getTrackId())
+                    .putInt(1)
+                    .array()));
+        }
+        moov.writeBytes(box("mvex", mvex.toByteArray()));
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        segment.writeBytes(box("ftyp", "iso6\0\0\0\0iso6mp41".getBytes(StandardCharsets.ISO_8859_1)));
+        segment.writeBytes(box("moov", moov.toByteArray()));
+        return segment.toByteArray();
+    }
+
+    static int moofSize(int[] sampleCounts) {
+        int size = 8 + 16;
+        for (int sampleCount : sampleCounts) {
+            if (sampleCount > 0) {
+                size += TRAF_FIXED_SIZE + TRUN_ENTRY_SIZE * sampleCount;
+            }
+        }
+        return size;
+    }
+
+    static void putMoofHeader(ByteBuffer target, int moofSize, int sequenceNumber) {
+        target.putInt(moofSize).put(type("moof"));
+        target.putInt(16).put(type("mfhd")).putInt(0).putInt(sequenceNumber);
+    }
+
+    static void putTrafHeader(ByteBuffer target, int trackId, int sampleCount, long baseDecodeTime,
+            int dataOffset) {
+        target.putInt(TRAF_FIXED_SIZE + TRUN_ENTRY_SIZE * sampleCount).put(type("traf"));
+        target.putInt(16).put(type("tfhd")).putInt(TFHD_DEFAULT_BASE_IS_MOOF).putInt(trackId);
+        target.putInt(20).put(type("tfdt")).putInt(VERSION_1).putLong(baseDecodeTime);
+        target.putInt(20 + TRUN_ENTRY_SIZE * sampleCount).put(type("trun")).putInt(VERSION_1 | TRUN_FLAGS)
+                .putInt(sampleCount).putInt(dataOffset);
+    }
+
+    static void putTrunEntry(ByteBuffer target, SampleTableIterator sample) {
+        target.putInt(sample.getDuration())
+                .putInt(sample.getSize())
+                .putInt(sample.isSync() ? SYNC_SAMPLE_FLAGS : NON_SYNC_SAMPLE_FLAGS)
+                .putInt(sample.getCompositionOffset());
+    }
+
+    static void putMdatHeader(ByteBuffer target, long payloadSize) {
+        target.putInt(Math.toIntExact(MDAT_HEADER_SIZE + payloadSize)).put(type("mdat"));
+    }
+
+    private static byte[] rewriteTrak(ByteBuffer source, Mp4Box box, Mp4Box stbl) {
+        if (box == stbl) {
+            ByteArrayOutputStream tables = new ByteArrayOutputStream();
+            tables.writeBytes(copy(source, stbl.findChild("stsd")));
+            tables.writeBytes(fullBox("stts", 0, new byte[4]));
+            tables.writeBytes(fullBox("stsc", 0, new byte[4]));
+            tables.writeBytes(fullBox("stsz", 0, new byte[8]));
+            tables.writeBytes(fullBox("stco", 0, new byte[4]));
+            return box("stbl", tables.toByteArray());
+        }
+        if (!STBL_ANCESTORS.contains(box.getType())) {
+            return copy(source, box);
+        }
+        ByteArrayOutputStream children = new ByteArrayOutputStream();
+        for (Mp4Box child : box.getChildren()) {
+            children.writeBytes(rewriteTrak(source, child, stbl));
+        }
+        return box(box.getType(), children.toByteArray());
+    }
+
+    private static byte[] copy(ByteBuffer source, Mp4Box box) {
+        if (box == null) {
+            throw new Mp4FormatException("Movie lacks a box needed for fragmenting.");
+        }
+        byte[] bytes = new byte[(int) box.getSize()];
+        source.duplicate().position((int) box.getPosition()).get(bytes);
+        return bytes;
+    }
+
+    private static byte[] fullBox(String type, int versionAndFlags, byte[] payload) {
+        return box(type, ByteBuffer.allocate(4 + payload.length).putInt(versionAndFlags).put(payload).array());
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type(type))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] type(String type) {
+        return type.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
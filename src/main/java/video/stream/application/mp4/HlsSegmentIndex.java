@@ -0,0 +1,231 @@
+package video.stream.application.mp4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import video.stream.application.content.ByteArrayRegion;
+import video.stream.application.content.CompositeContentBody;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Split of an MP4 file into HLS media segments in fragmented MP4, remuxed from
+ * the original samples without re-encoding. Segments start at a keyframe of
+ * the video track and last at least the target duration; the samples of the
+ * audio track are assigned to segments by decoding time. For every segment
+ * and track only a sample table position and a sample count are kept, the
+ * {@code moof} box is generated when the segment is requested and the samples
+ * are streamed from the file.
+ */
+public class HlsSegmentIndex {
+
+    static final HlsSegmentIndex EMPTY = new HlsSegmentIndex(List.of(), new SampleTableIterator[0][0],
+            new int[0][0], new double[0], new byte[0], new byte[0], 0);
+
+    private static final String VIDEO_HANDLER = "vide";
+    private static final String AUDIO_HANDLER = "soun";
+    private static final String INIT_SEGMENT_URI = "init.mp4";
+    private static final String SEGMENT_URI_SUFFIX = ".m4s";
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SEGMENT_OVERHEAD = 256;
+
+    private final List<Mp4Track> tracks;
+    private final SampleTableIterator[][] segmentStarts;
+    private final int[][] sampleCounts;
+    private final double[] durations;
+    private final byte[] initSegment;
+    private final byte[] playlist;
+    private final int weight;
+
+    private HlsSegmentIndex(List<Mp4Track> tracks, SampleTableIterator[][] segmentStarts, int[][] sampleCounts,
+            double[] durations, byte[] initSegment, byte[] playlist, int moovSize) {
+        this.tracks = tracks;
+        this.segmentStarts = segmentStarts;
+        this.sampleCounts = sampleCounts;
+        this.durations = durations;
+        this.initSegment = initSegment;
+        this.playlist = playlist;
+        this.weight = moovSize + initSegment.length + playlist.length
+                + SEGMENT_OVERHEAD * tracks.size() * durations.length;
+    }
+
+    /**
+     * Splits the video track, or the audio track when there is none, into
+     * segments of at least {@code targetDuration} seconds.
+     *
+     * @throws Mp4FormatException when the movie has neither a video nor an
+     *                            audio track or its sample tables are not
+     *                            valid
+     */
+    static HlsSegmentIndex build(Mp4Movie movie, double targetDuration) {
+        List<Mp4Track> tracks = new ArrayList<>(2);
+        for (String handlerType : new String[] { VIDEO_HANDLER, AUDIO_HANDLER }) {
+            Mp4Track track = movie.findTrack(handlerType);
+            if (track != null && track.getTimescale() > 0) {
+                tracks.add(track);
+            }
+        }
+        if (tracks.isEmpty()) {
+            throw new Mp4FormatException("Movie has neither a video nor an audio track.");
+        }
+        Mp4Track primary = tracks.get(0);
+        long target = (long) (targetDuration * primary.getTimescale());
+        SampleTableIterator[] primaryStarts = new SampleTableIterator[INITIAL_CAPACITY];
+        long[] startTimes = new long[INITIAL_CAPACITY];
+        int[] primaryCounts = new int[INITIAL_CAPACITY];
+        int segmentCount = 0;
+        long endTime = 0;
+        SampleTableIterator samples = movie.samples(primary);
+        while (samples.next()) {
+            if (segmentCount == 0 || samples.isSync() && samples.getDecodeTime() - startTimes[segmentCount - 1]
+                    >= target) {
+                if (segmentCount == startTimes.length) {
+                    primaryStarts = Arrays.copyOf(primaryStarts, segmentCount * 2);
+                    startTimes = Arrays.copyOf(startTimes, segmentCount * 2);
+                    primaryCounts = Arrays.copyOf(primaryCounts, segmentCount * 2);
+                }
+                primaryStarts[segmentCount] = samples.copy();
+                startTimes[segmentCount] = samples.getDecodeTime();
+                segmentCount++;
+            }
+            primaryCounts[segmentCount - 1]++;
+            endTime = samples.getDecodeTime() + Integer.toUnsignedLong(samples.getDuration());
+        }
+        if (segmentCount == 0) {
+            throw new Mp4FormatException("Track " + primary.getTrackId() + " has no samples.");
+        }
+        SampleTableIterator[][] segmentStarts = new SampleTableIterator[tracks.size()][];
+        int[][] sampleCounts = new int[tracks.size()][];
+        segmentStarts[0] = Arrays.copyOf(primaryStarts, segmentCount);
+        sampleCounts[0] = Arrays.copyOf(primaryCounts, segmentCount);
+        for (int i = 1; i < tracks.size(); i++) {
+            segmentStarts[i] = new SampleTableIterator[segmentCount];
+            sampleCounts[i] = new int[segmentCount];
+            splitTrack(movie, tracks.get(i), primary.getTimescale(), startTimes, segmentStarts[i], sampleCounts[i]);
+        }
+        double[] durations = new double[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            long segmentEnd = segment + 1 < segmentCount ? startTimes[segment + 1] : endTime;
+            durations[segment] = (double) (segmentEnd - startTimes[segment]) / primary.getTimescale();
+        }
+        return new HlsSegmentIndex(tracks, segmentStarts, sampleCounts, durations,
+                FragmentedMp4Writer.initSegment(movie, tracks), playlist(durations), movie.getMoov().capacity());
+    }
+
+    private static void splitTrack(Mp4Movie movie, Mp4Track track, long primaryTimescale, long[] startTimes,
+            SampleTableIterator[] segmentStarts, int[] sampleCounts) {
+        int segment = 0;
+        long nextStart = nextStart(startTimes, segmentStarts.length, 1, primaryTimescale, track.getTimescale());
+        SampleTableIterator samples = movie.samples(track);
+        while (samples.next()) {
+            while (samples.getDecodeTime() >= nextStart) {
+                segment++;
+                nextStart = nextStart(startTimes, segmentStarts.length, segment + 1, primaryTimescale,
+                        track.getTimescale());
+            }
+            if (sampleCounts[segment]++ == 0) {
+                segmentStarts[segment] = samples.copy();
+            }
+        }
+    }
+
+    private static long nextStart(long[] startTimes, int segmentCount, int segment, long primaryTimescale,
+            long timescale) {
+        if (segment >= segmentCount) {
+            return Long.MAX_VALUE;
+        }
+        return startTimes[segment] * timescale / primaryTimescale;
+    }
+
+    private static byte[] playlist(double[] durations) {
+        double maxDuration = Arrays.stream(durations).max().orElse(0);
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:").append((long) Math.ceil(maxDuration)).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-MAP:URI=\"").append(INIT_SEGMENT_URI).append("\"\n");
+        for (int segment = 0; segment < durations.length; segment++) {
+            playlist.append("#EXTINF:").append(String.format(Locale.ROOT, "%.3f", durations[segment])).append(",\n")
+                    .append(segment).append(SEGMENT_URI_SUFFIX).append('\n');
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isEmpty() {
+        return durations.length == 0;
+    }
+
+    public int getSegmentCount() {
+        return durations.length;
+    }
+
+    public double getDuration(int segment) {
+        return durations[segment];
+    }
+
+    public ContentBody getPlaylist() {
+        return new ByteArrayRegion(playlist, 0, playlist.length);
+    }
+
+    public ContentBody getInitSegment() {
+        return new ByteArrayRegion(initSegment, 0, initSegment.length);
+    }
+
+    /**
+     * Returns the {@code moof} box and {@code mdat} of the segment, the
+     * samples of which are read from the file when the body is written.
+     */
+    public ContentBody getSegment(int segment, FileMetadata file, Mp4Layout layout, FileRegionWriter writer) {
+        int[] counts = new int[tracks.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = sampleCounts[i][segment];
+        }
+        int moofSize = FragmentedMp4Writer.moofSize(counts);
+        ByteBuffer header = ByteBuffer.allocate(moofSize + FragmentedMp4Writer.MDAT_HEADER_SIZE);
+        FragmentedMp4Writer.putMoofHeader(header, moofSize, segment + 1);
+        List<ContentBody> parts = new ArrayList<>();
+        parts.add(new ByteArrayRegion(header.array(), 0, header.capacity()));
+        long payloadSize = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            SampleTableIterator samples = segmentStarts[i][segment].copy();
+            FragmentedMp4Writer.putTrafHeader(header, tracks.get(i).getTrackId(), counts[i],
+                    samples.getDecodeTime(), Math.toIntExact(header.capacity() + payloadSize));
+            long runStart = samples.getOffset();
+            long runEnd = runStart;
+            for (int sample = 0; sample < counts[i]; sample++) {
+                if (sample > 0 && !samples.next()) {
+                    throw new Mp4FormatException("Track " + tracks.get(i).getTrackId() + " ended early.");
+                }
+                FragmentedMp4Writer.putTrunEntry(header, samples);
+                if (samples.getOffset() != runEnd) {
+                    if (runEnd > runStart) {
+                        parts.add(layout.slice(file, runStart, runEnd - runStart, writer));
+                    }
+                    runStart = samples.getOffset();
+                }
+                runEnd = samples.getOffset() + samples.getSize();
+                payloadSize += samples.getSize();
+            }
+            if (runEnd > runStart) {
+                parts.add(layout.slice(file, runStart, runEnd - runStart, writer));
+            }
+        }
+        FragmentedMp4Writer.putMdatHeader(header, payloadSize);
+        return new CompositeContentBody(parts);
+    }
+
+    int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,72 @@
+package video.stream.application.mp4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Builds the {@link HlsSegmentIndex} of a file version on its first HLS
+ * request and keeps it, together with the parsed {@code moov} it refers to,
+ * bounded by {@code maxMemory}.
+ */
+@Component
+@Slf4j
+public class HlsSegmentIndexCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final double segmentDuration;
+    private final FileChannelPool fileChannelPool;
+    private final Cache<FileMetadata, HlsSegmentIndex> indexes;
+
+    @Autowired
+    public HlsSegmentIndexCache(
+            @Value("${video-stream.hls.segment-duration:6s}") Duration segmentDuration,
+            @Value("${video-stream.hls.index-cache.max-memory:134217728}") long maxMemory,
+            FileChannelPool fileChannelPool) {
+        this.segmentDuration = segmentDuration.toMillis() / 1000.0;
+        this.fileChannelPool = fileChannelPool;
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxMemory)
+                .<FileMetadata, HlsSegmentIndex>weigher((file, index) -> ENTRY_OVERHEAD + index.getWeight())
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+
+    /**
+     * Returns the index of the file served in {@code layout}, empty when the
+     * file cannot be remuxed into HLS segments.
+     */
+    public HlsSegmentIndex get(FileMetadata file, Mp4Layout layout) throws IOException {
+        if (!layout.hasMoov()) {
+            return HlsSegmentIndex.EMPTY;
+        }
+        try {
+            return indexes.get(file, key -> load(key, layout));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private HlsSegmentIndex load(FileMetadata file, Mp4Layout layout) {
+        try (FileChannelPool.Lease lease = fileChannelPool.acquire(file)) {
+            return HlsSegmentIndex.build(Mp4Movie.parse(layout.readMoov(lease.getChannel())), segmentDuration);
+        } catch (Mp4FormatException | IndexOutOfBoundsException e) {
+            log.debug("No HLS segments for " + file.getPath() + ": " + e.getMessage());
+            return HlsSegmentIndex.EMPTY;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package video.stream.application.mp4;
+
+import java.util.Arrays;
+
+/**
+ * Presentation times and layout positions of the keyframes of the video track
+ * of a file, kept in two primitive arrays sorted by time.
+ */
+public class KeyframeIndex {
+
+    static final KeyframeIndex EMPTY = new KeyframeIndex(1, new long[0], new long[0]);
+
+    private static final String VIDEO_HANDLER = "vide";
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long timescale;
+    private final long[] times;
+    private final long[] offsets;
+
+    private KeyframeIndex(long timescale, long[] times, long[] offsets) {
+        this.timescale = timescale;
+        this.times = times;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Builds the index of the video track of the movie, or of its first track
+     * when it has no video track. Every sample is a keyframe when the track
+     * has no {@code stss} box. Edit lists are not applied.
+     *
+     * @throws Mp4FormatException when the sample tables are not valid
+     */
+    static KeyframeIndex build(Mp4Movie movie) {
+        Mp4Track track = movie.findTrack(VIDEO_HANDLER);
+        if (track == null && !movie.getTracks().isEmpty()) {
+            track = movie.getTracks().get(0);
+        }
+        if (track == null || track.getTimescale() == 0) {
+            return EMPTY;
+        }
+        long[] times = new long[INITIAL_CAPACITY];
+        long[] offsets = new long[INITIAL_CAPACITY];
+        int size = 0;
+        SampleTableIterator samples = movie.samples(track);
+        while (samples.next()) {
+            if (!samples.isSync()) {
+                continue;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            times[size] = samples.getPresentationTime();
+            offsets[size] = samples.getOffset();
+            size++;
+        }
+        return new KeyframeIndex(track.getTimescale(), Arrays.copyOf(times, size), Arrays.copyOf(offsets, size));
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    /**
+     * Returns the index of the last keyframe presented at or before
+     * {@code seconds}, or of the first keyframe when there is none.
+     */
+    public int findKeyframe(double seconds) {
+        long time = (long) (seconds * timescale);
+        int low = 0;
+        int high = times.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (times[middle] <= time) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public double getTime(int keyframe) {
+        return (double) times[keyframe] / timescale;
+    }
+
+    public long getOffset(int keyframe) {
+        return offsets[keyframe];
+    }
+
+    int getWeight() {
+        return 16 * times.length;
+    }
+}
@@ -0,0 +1,69 @@
+package video.stream.application.mp4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Builds the {@link KeyframeIndex} of a file version on its first seek and
+ * keeps it, bounded by {@code maxMemory}. Offsets in the index are positions
+ * in the {@link Mp4Layout} the file is served in.
+ */
+@Component
+@Slf4j
+public class KeyframeIndexCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final FileChannelPool fileChannelPool;
+    private final Cache<FileMetadata, KeyframeIndex> indexes;
+
+    @Autowired
+    public KeyframeIndexCache(
+            @Value("${video-stream.mp4.keyframe-index.max-memory:67108864}") long maxMemory,
+            FileChannelPool fileChannelPool) {
+        this.fileChannelPool = fileChannelPool;
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxMemory)
+                .<FileMetadata, KeyframeIndex>weigher((file, index) -> ENTRY_OVERHEAD + index.getWeight())
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+
+    /**
+     * Returns the index of the file served in {@code layout}, empty when the
+     * file is not a seekable MP4 file.
+     */
+    public KeyframeIndex get(FileMetadata file, Mp4Layout layout) throws IOException {
+        if (!layout.hasMoov()) {
+            return KeyframeIndex.EMPTY;
+        }
+        try {
+            return indexes.get(file, key -> load(key, layout));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private KeyframeIndex load(FileMetadata file, Mp4Layout layout) {
+        try (FileChannelPool.Lease lease = fileChannelPool.acquire(file)) {
+            return KeyframeIndex.build(Mp4Movie.parse(layout.readMoov(lease.getChannel())));
+        } catch (Mp4FormatException | IndexOutOfBoundsException e) {
+            log.debug("No keyframe index for " + file.getPath() + ": " + e.getMessage());
+            return KeyframeIndex.EMPTY;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package video.stream.application.mp4;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * ISO base media file format box. Positions are relative to the file for top
+ * level boxes and to the enclosing buffer for boxes parsed from memory.
+ * Children are only parsed for container boxes.
+ */
+@AllArgsConstructor
+@Getter
+@ToString(exclude = "children")
+public class Mp4Box {
+
+    private final String type;
+    private final long position;
+    private final long size;
+    private final int headerSize;
+    private final List<Mp4Box> children;
+
+    public long getEnd() {
+        return position + size;
+    }
+
+    public long getPayloadPosition() {
+        return position + headerSize;
+    }
+
+    public Mp4Box findChild(String childType) {
+        for (Mp4Box child : children) {
+            if (child.getType().equals(childType)) {
+                return child;
+            }
+        }
+        return null;
+    }
+}
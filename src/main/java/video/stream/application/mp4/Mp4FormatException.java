@@ -0,0 +1,14 @@
+package video.stream.application.mp4;
+
+/**
+ * Thrown when a file is not a well-formed MP4 file. Callers fall back to
+ * serving the file as it is.
+ */
+public class Mp4FormatException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public Mp4FormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,132 @@
+package video.stream.application.mp4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import video.stream.application.content.ByteArrayRegion;
+import video.stream.application.content.CompositeContentBody;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegion;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Layout in which a file is served. For MP4 files with the {@code moov} box
+ * behind the media data it is a virtual faststart layout: the rewritten
+ * {@code moov} is served from memory right before the first {@code mdat} box
+ * and the rest of the file is served in its original order around it. For all
+ * other files it is the file as it is.
+ */
+public class Mp4Layout {
+
+    private static final long NOT_IN_FILE = -1L;
+
+    @Getter
+    private final long size;
+    @Getter
+    private final long headerSize;
+    @Getter
+    private final long moovPosition;
+    @Getter
+    private final long moovSize;
+    private final byte[] moov;
+    private final long[] virtualPositions;
+    private final long[] filePositions;
+    private final long[] lengths;
+
+    private Mp4Layout(long size, long headerSize, long moovPosition, long moovSize, byte[] moov,
+            long[] virtualPositions, long[] filePositions, long[] lengths) {
+        this.size = size;
+        this.headerSize = headerSize;
+        this.moovPosition = moovPosition;
+        this.moovSize = moovSize;
+        this.moov = moov;
+        this.virtualPositions = virtualPositions;
+        this.filePositions = filePositions;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Layout of a file served as it is, {@code headerSize} being the number of
+     * leading bytes a player needs to start playback, or {@code 0} when it is
+     * unknown. {@code moovPosition} is {@code -1} when the file has no usable
+     * {@code moov} box.
+     */
+    static Mp4Layout original(long fileSize, long headerSize, long moovPosition, long moovSize) {
+        return new Mp4Layout(fileSize, headerSize, moovPosition, moovSize, null, new long[] { 0 },
+                new long[] { 0 }, new long[] { fileSize });
+    }
+
+    static Mp4Layout original(long fileSize) {
+        return original(fileSize, 0, NOT_IN_FILE, 0);
+    }
+
+    /**
+     * Layout serving {@code relocatedMoov} at {@code insertPosition} in place
+     * of the {@code moov} box found at {@code moovPosition}.
+     */
+    static Mp4Layout faststart(long fileSize, long insertPosition, long moovPosition, long moovSize,
+            byte[] relocatedMoov) {
+        long moovEnd = moovPosition + moovSize;
+        long[] filePositions = { 0, NOT_IN_FILE, insertPosition, moovEnd };
+        long[] lengths = { insertPosition, relocatedMoov.length, moovPosition - insertPosition, fileSize - moovEnd };
+        long[] virtualPositions = new long[lengths.length];
+        for (int i = 1; i < lengths.length; i++) {
+            virtualPositions[i] = virtualPositions[i - 1] + lengths[i - 1];
+        }
+        long size = fileSize - moovSize + relocatedMoov.length;
+        return new Mp4Layout(size, insertPosition + relocatedMoov.length, insertPosition, relocatedMoov.length,
+                relocatedMoov, virtualPositions, filePositions, lengths);
+    }
+
+    public boolean isRelocated() {
+        return moov != null;
+    }
+
+    public boolean hasMoov() {
+        return moovPosition != NOT_IN_FILE;
+    }
+
+    /**
+     * Returns the {@code moov} box as served, its chunk offsets being
+     * positions in the layout rather than in the file.
+     */
+    byte[] readMoov(FileChannel channel) throws IOException {
+        if (moov != null) {
+            return moov;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) moovSize);
+        Mp4Parser.readFully(channel, buffer, moovPosition);
+        return buffer.array();
+    }
+
+    int getWeight() {
+        return moov != null ? moov.length : 0;
+    }
+
+    /**
+     * Returns the body of {@code count} bytes at {@code position} of the
+     * layout, a plain {@link FileRegion} whenever the bytes are stored
+     * contiguously in the file.
+     */
+    public ContentBody slice(FileMetadata file, long position, long count, FileRegionWriter writer) {
+        long end = position + count;
+        List<ContentBody> parts = new ArrayList<>(2);
+        for (int i = 0; i < lengths.length; i++) {
+            long segmentEnd = virtualPositions[i] + lengths[i];
+            if (lengths[i] == 0 || segmentEnd <= position || virtualPositions[i] >= end) {
+                continue;
+            }
+            long offset = Math.max(position, virtualPositions[i]) - virtualPositions[i];
+            long length = Math.min(end, segmentEnd) - virtualPositions[i] - offset;
+            parts.add(filePositions[i] == NOT_IN_FILE
+                    ? new ByteArrayRegion(moov, (int) offset, (int) length)
+                    : new FileRegion(file, filePositions[i] + offset, length, writer));
+        }
+        return parts.size() == 1 ? parts.get(0) : new CompositeContentBody(parts);
+    }
+}
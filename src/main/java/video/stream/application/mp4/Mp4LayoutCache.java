@@ -0,0 +1,94 @@
+package video.stream.application.mp4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+
+/**
+ * Locates the {@code moov} box of served files once per file version and
+ * keeps the resulting {@link Mp4Layout}. Files with {@code moov} behind the
+ * media data get a virtual faststart layout, whose rewritten {@code moov} is
+ * held in memory bounded by {@code maxMemory}. Files that are not MP4, or
+ * whose {@code moov} exceeds {@code maxMoovSize}, are served as they are.
+ */
+@Component
+@Slf4j
+public class Mp4LayoutCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final boolean faststartEnabled;
+    private final int maxMoovSize;
+    private final FileChannelPool fileChannelPool;
+    private final Cache<FileMetadata, Mp4Layout> layouts;
+
+    @Autowired
+    public Mp4LayoutCache(
+            @Value("${video-stream.mp4.faststart.enabled:true}") boolean faststartEnabled,
+            @Value("${video-stream.mp4.max-moov-size:33554432}") int maxMoovSize,
+            @Value("${video-stream.mp4.layout-cache.max-memory:134217728}") long maxMemory,
+            FileChannelPool fileChannelPool) {
+        this.faststartEnabled = faststartEnabled;
+        this.maxMoovSize = maxMoovSize;
+        this.fileChannelPool = fileChannelPool;
+        this.layouts = Caffeine.newBuilder()
+                .maximumWeight(maxMemory)
+                .<FileMetadata, Mp4Layout>weigher((file, layout) -> ENTRY_OVERHEAD + layout.getWeight())
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+
+    public Mp4Layout get(FileMetadata file) throws IOException {
+        try {
+            return layouts.get(file, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Mp4Layout load(FileMetadata file) {
+        try (FileChannelPool.Lease lease = fileChannelPool.acquire(file)) {
+            return load(file, lease.getChannel());
+        } catch (Mp4FormatException e) {
+            log.debug("Serving " + file.getPath() + " as it is: " + e.getMessage());
+            return Mp4Layout.original(file.getSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Mp4Layout load(FileMetadata file, FileChannel channel) throws IOException {
+        List<Mp4Box> boxes = Mp4Parser.readTopLevelBoxes(channel, file.getSize());
+        Mp4Box moov = Mp4Parser.findBox(boxes, Mp4Parser.MOOV);
+        Mp4Box mdat = Mp4Parser.findBox(boxes, Mp4Parser.MDAT);
+        if (moov == null || moov.getSize() > maxMoovSize) {
+            return Mp4Layout.original(file.getSize());
+        }
+        if (mdat == null || moov.getPosition() < mdat.getPosition()) {
+            return Mp4Layout.original(file.getSize(), moov.getEnd() <= maxMoovSize ? moov.getEnd() : 0,
+                    moov.getPosition(), moov.getSize());
+        }
+        if (!faststartEnabled) {
+            return Mp4Layout.original(file.getSize(), 0, moov.getPosition(), moov.getSize());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) moov.getSize());
+        Mp4Parser.readFully(channel, buffer, moov.getPosition());
+        byte[] relocatedMoov = FaststartRelocator.relocate(buffer.array(), moov.getPosition(), mdat.getPosition());
+        return Mp4Layout.faststart(file.getSize(), mdat.getPosition(), moov.getPosition(), moov.getSize(),
+                relocatedMoov);
+    }
+}
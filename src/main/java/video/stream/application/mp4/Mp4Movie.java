@@ -0,0 +1,92 @@
+package video.stream.application.mp4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Parsed {@code moov} box. Only box headers and the few fields identifying a
+ * track are parsed up front, sample tables are walked on demand with a
+ * {@link SampleTableIterator}.
+ */
+@Getter
+public class Mp4Movie {
+
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+
+    private final ByteBuffer moov;
+    private final Mp4Box moovBox;
+    private final List<Mp4Track> tracks;
+
+    private Mp4Movie(ByteBuffer moov, Mp4Box moovBox, List<Mp4Track> tracks) {
+        this.moov = moov;
+        this.moovBox = moovBox;
+        this.tracks = tracks;
+    }
+
+    /**
+     * @throws Mp4FormatException when the buffer does not hold a valid
+     *                            {@code moov} box
+     */
+    public static Mp4Movie parse(byte[] moov) {
+        ByteBuffer buffer = ByteBuffer.wrap(moov).asReadOnlyBuffer();
+        Mp4Box moovBox = Mp4Parser.findBox(Mp4Parser.readBoxes(buffer, 0, moov.length), Mp4Parser.MOOV);
+        if (moovBox == null) {
+            throw new Mp4FormatException("Buffer does not hold a moov box.");
+        }
+        List<Mp4Track> tracks = new ArrayList<>();
+        for (Mp4Box trak : moovBox.getChildren()) {
+            if ("trak".equals(trak.getType())) {
+                Mp4Track track = parseTrack(buffer, trak);
+                if (track != null) {
+                    tracks.add(track);
+                }
+            }
+        }
+        return new Mp4Movie(buffer, moovBox, tracks);
+    }
+
+    public Mp4Track findTrack(String handlerType) {
+        for (Mp4Track track : tracks) {
+            if (track.getHandlerType().equals(handlerType)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public SampleTableIterator samples(Mp4Track track) {
+        return new SampleTableIterator(moov, track.getStbl());
+    }
+
+    private static Mp4Track parseTrack(ByteBuffer buffer, Mp4Box trak) {
+        Mp4Box tkhd = trak.findChild("tkhd");
+        Mp4Box mdia = trak.findChild("mdia");
+        Mp4Box mdhd = mdia != null ? mdia.findChild("mdhd") : null;
+        Mp4Box hdlr = mdia != null ? mdia.findChild("hdlr") : null;
+        Mp4Box minf = mdia != null ? mdia.findChild("minf") : null;
+        Mp4Box stbl = minf != null ? minf.findChild("stbl") : null;
+        if (tkhd == null || mdhd == null || hdlr == null || stbl == null) {
+            return null;
+        }
+        int tkhdPayload = (int) tkhd.getPayloadPosition();
+        int trackId = buffer.getInt(tkhdPayload + (buffer.get(tkhdPayload) == 1 ? 20 : 12));
+        int mdhdPayload = (int) mdhd.getPayloadPosition();
+        long timescale;
+        long duration;
+        if (buffer.get(mdhdPayload) == 1) {
+            timescale = Integer.toUnsignedLong(buffer.getInt(mdhdPayload + 20));
+            duration = buffer.getLong(mdhdPayload + 24);
+        } else {
+            timescale = Integer.toUnsignedLong(buffer.getInt(mdhdPayload + 12));
+            duration = Integer.toUnsignedLong(buffer.getInt(mdhdPayload + 16));
+        }
+        byte[] handlerType = new byte[4];
+        buffer.duplicate().position((int) hdlr.getPayloadPosition() + FULL_BOX_HEADER_SIZE + 4).get(handlerType);
+        return new Mp4Track(trackId, new String(handlerType, StandardCharsets.ISO_8859_1), timescale, duration,
+                trak, stbl);
+    }
+}
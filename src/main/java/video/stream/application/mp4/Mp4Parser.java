@@ -0,0 +1,122 @@
+package video.stream.application.mp4;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Minimal ISO base media file format parser. Reads box headers only, the
+ * payloads of the few boxes the service needs are read by their users.
+ */
+final class Mp4Parser {
+
+    static final String FTYP = "ftyp";
+    static final String MOOV = "moov";
+    static final String MDAT = "mdat";
+    static final String STCO = "stco";
+    static final String CO64 = "co64";
+
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl", "edts", "dinf",
+            "mvex");
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_HEADER_SIZE = 16;
+
+    private Mp4Parser() {
+    }
+
+    /**
+     * Reads the headers of the top level boxes of the file.
+     *
+     * @throws Mp4FormatException when the file does not start with a
+     *                            {@code ftyp} box or a box header is invalid
+     */
+    static List<Mp4Box> readTopLevelBoxes(FileChannel channel, long fileSize) throws IOException {
+        List<Mp4Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(LARGE_HEADER_SIZE);
+        long position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear().limit(HEADER_SIZE);
+            readFully(channel, header, position);
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            String type = getType(header, 4);
+            int headerSize = HEADER_SIZE;
+            if (size == 1) {
+                header.limit(LARGE_HEADER_SIZE);
+                readFully(channel, header, position);
+                size = header.getLong(HEADER_SIZE);
+                headerSize = LARGE_HEADER_SIZE;
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            if (boxes.isEmpty() && !FTYP.equals(type)) {
+                throw new Mp4FormatException("File does not start with a ftyp box.");
+            }
+            if (size < headerSize || position + size > fileSize) {
+                throw new Mp4FormatException("Invalid size of " + type + " box at " + position + ".");
+            }
+            boxes.add(new Mp4Box(type, position, size, headerSize, Collections.emptyList()));
+            position += size;
+        }
+        return boxes;
+    }
+
+    /**
+     * Parses the box tree of a buffer holding complete boxes, descending into
+     * container boxes.
+     */
+    static List<Mp4Box> readBoxes(ByteBuffer buffer, int start, int end) {
+        List<Mp4Box> boxes = new ArrayList<>();
+        int position = start;
+        while (position + HEADER_SIZE <= end) {
+            long size = Integer.toUnsignedLong(buffer.getInt(position));
+            String type = getType(buffer, position + 4);
+            int headerSize = HEADER_SIZE;
+            if (size == 1) {
+                size = buffer.getLong(position + HEADER_SIZE);
+                headerSize = LARGE_HEADER_SIZE;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                throw new Mp4FormatException("Invalid size of " + type + " box at " + position + ".");
+            }
+            List<Mp4Box> children = CONTAINERS.contains(type)
+                    ? readBoxes(buffer, position + headerSize, (int) (position + size))
+                    : Collections.emptyList();
+            boxes.add(new Mp4Box(type, position, size, headerSize, children));
+            position += size;
+        }
+        return boxes;
+    }
+
+    static Mp4Box findBox(List<Mp4Box> boxes, String type) {
+        for (Mp4Box box : boxes) {
+            if (box.getType().equals(type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at position " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static String getType(ByteBuffer buffer, int position) {
+        byte[] type = new byte[4];
+        for (int i = 0; i < type.length; i++) {
+            type[i] = buffer.get(position + i);
+        }
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+}
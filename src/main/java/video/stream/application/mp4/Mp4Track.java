@@ -0,0 +1,23 @@
+package video.stream.application.mp4;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Track of a parsed {@code moov} box with the boxes needed to walk its
+ * samples. Box positions are relative to the buffer of the {@link Mp4Movie}.
+ */
+@AllArgsConstructor
+@Getter
+@ToString(of = { "trackId", "handlerType", "timescale", "duration" })
+public class Mp4Track {
+
+    private final int trackId;
+    private final String handlerType;
+    private final long timescale;
+    private final long duration;
+    private final Mp4Box trak;
+    private final Mp4Box stbl;
+
+}
@@ -0,0 +1,206 @@
+package video.stream.application.mp4;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the samples of a track in decoding order, combining the
+ * {@code stts}, {@code ctts}, {@code stss}, {@code stsc}, {@code stsz} and
+ * {@code stco}/{@code co64} tables without materialising any of them.
+ */
+public class SampleTableIterator implements Cloneable {
+
+    private final ByteBuffer buffer;
+    private final int stts;
+    private final int ctts;
+    private final boolean signedCompositionOffsets;
+    private final int stss;
+    private final int stsc;
+    private final int stsz;
+    private final int chunkOffsets;
+    private final boolean wideChunkOffsets;
+    private final int sampleCount;
+    private final int constantSampleSize;
+    private final int chunkCount;
+
+    private int sample;
+    private int chunk;
+    private int sampleInChunk;
+    private int samplesPerChunk;
+    private int stscIndex = -1;
+    private int sttsIndex = -1;
+    private int sttsRemaining;
+    private int cttsIndex = -1;
+    private int cttsRemaining;
+    private int stssIndex;
+    private long nextDecodeTime;
+
+    private long offset;
+    private int size;
+    private long decodeTime;
+    private int duration;
+    private int compositionOffset;
+    private boolean sync;
+
+    SampleTableIterator(ByteBuffer buffer, Mp4Box stbl) {
+        this.buffer = buffer;
+        this.stts = getTable(stbl, "stts", true);
+        this.ctts = getTable(stbl, "ctts", false);
+        this.signedCompositionOffsets = ctts >= 0 && buffer.get(ctts) == 1;
+        this.stss = getTable(stbl, "stss", false);
+        this.stsc = getTable(stbl, "stsc", true);
+        this.stsz = getTable(stbl, "stsz", true);
+        int stco = getTable(stbl, Mp4Parser.STCO, false);
+        this.wideChunkOffsets = stco < 0;
+        this.chunkOffsets = wideChunkOffsets ? getTable(stbl, Mp4Parser.CO64, true) : stco;
+        this.constantSampleSize = buffer.getInt(stsz + 4);
+        this.sampleCount = buffer.getInt(stsz + 8);
+        this.chunkCount = buffer.getInt(chunkOffsets + 4);
+    }
+
+    /**
+     * Returns an independent iterator positioned at the same sample.
+     */
+    public SampleTableIterator copy() {
+        try {
+            return (SampleTableIterator) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Moves to the next sample, returning {@code false} after the last one.
+     *
+     * @throws Mp4FormatException when the tables are inconsistent
+     */
+    public boolean next() {
+        if (sample == sampleCount) {
+            return false;
+        }
+        if (sample > 0) {
+            offset += size;
+        }
+        sample++;
+        if (sample == 1 || sampleInChunk == samplesPerChunk) {
+            nextChunk();
+        }
+        sampleInChunk++;
+        size = constantSampleSize != 0 ? constantSampleSize : buffer.getInt(stsz + 12 + 4 * (sample - 1));
+        nextTimeToSample();
+        nextCompositionOffset();
+        nextSyncSample();
+        return true;
+    }
+
+    /**
+     * Number of the current sample, counted from 1 like in the sample tables.
+     */
+    public int getSampleNumber() {
+        return sample;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getCompositionOffset() {
+        return compositionOffset;
+    }
+
+    public long getPresentationTime() {
+        return decodeTime + compositionOffset;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    private void nextChunk() {
+        chunk++;
+        sampleInChunk = 0;
+        if (chunk > chunkCount) {
+            throw new Mp4FormatException("Sample " + sample + " is beyond the last chunk.");
+        }
+        offset = wideChunkOffsets
+                ? buffer.getLong(chunkOffsets + 8 + 8 * (chunk - 1))
+                : Integer.toUnsignedLong(buffer.getInt(chunkOffsets + 8 + 4 * (chunk - 1)));
+        int stscCount = buffer.getInt(stsc + 4);
+        while (stscIndex + 1 < stscCount && buffer.getInt(stsc + 8 + 12 * (stscIndex + 1)) <= chunk) {
+            stscIndex++;
+            samplesPerChunk = buffer.getInt(stsc + 8 + 12 * stscIndex + 4);
+        }
+        if (samplesPerChunk <= 0) {
+            throw new Mp4FormatException("Chunk " + chunk + " has no samples.");
+        }
+    }
+
+    private void nextTimeToSample() {
+        while (sttsRemaining == 0) {
+            sttsIndex++;
+            if (sttsIndex >= buffer.getInt(stts + 4)) {
+                throw new Mp4FormatException("Sample " + sample + " has no duration.");
+            }
+            sttsRemaining = buffer.getInt(stts + 8 + 8 * sttsIndex);
+        }
+        sttsRemaining--;
+        duration = buffer.getInt(stts + 8 + 8 * sttsIndex + 4);
+        decodeTime = nextDecodeTime;
+        nextDecodeTime += Integer.toUnsignedLong(duration);
+    }
+
+    private void nextCompositionOffset() {
+        if (ctts < 0) {
+            return;
+        }
+        while (cttsRemaining == 0 && cttsIndex + 1 < buffer.getInt(ctts + 4)) {
+            cttsIndex++;
+            cttsRemaining = buffer.getInt(ctts + 8 + 8 * cttsIndex);
+        }
+        if (cttsRemaining > 0) {
+            cttsRemaining--;
+            int value = buffer.getInt(ctts + 8 + 8 * cttsIndex + 4);
+            compositionOffset = signedCompositionOffsets || value >= 0 ? value : 0;
+        } else {
+            compositionOffset = 0;
+        }
+    }
+
+    private void nextSyncSample() {
+        if (stss < 0) {
+            sync = true;
+            return;
+        }
+        int stssCount = buffer.getInt(stss + 4);
+        while (stssIndex < stssCount && buffer.getInt(stss + 8 + 4 * stssIndex) < sample) {
+            stssIndex++;
+        }
+        sync = stssIndex < stssCount && buffer.getInt(stss + 8 + 4 * stssIndex) == sample;
+    }
+
+    private static int getTable(Mp4Box stbl, String type, boolean required) {
+        Mp4Box table = stbl.findChild(type);
+        if (table == null) {
+            if (required) {
+                throw new Mp4FormatException("Sample table has no " + type + " box.");
+            }
+            return -1;
+        }
+        return (int) table.getPayloadPosition();
+    }
+}
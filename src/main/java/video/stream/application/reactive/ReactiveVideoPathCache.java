@@ -0,0 +1,83 @@
+package video.stream.application.reactive;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import reactor.core.publisher.Mono;
+import video.stream.application.feign.dto.VideoPath;
+
+/**
+ * Non-blocking counterpart of the Feign based path lookup used by the reactive
+ * stack. Concurrent misses for the same video share one upstream call and
+ * resolved paths are kept for {@code expireAfter}.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveVideoPathCache {
+
+    private static final String VIDEO_SERVICE_URL = "http://video-service";
+    private static final String VIDEO_PATH_URI = "/video/path?videoId={videoId}";
+
+    private final WebClient webClient;
+    private final AsyncCache<Long, String> cache;
+
+    @Autowired
+    public ReactiveVideoPathCache(@LoadBalanced WebClient.Builder loadBalancedWebClientBuilder,
+            @Value("${video-stream.video-path.maximum-size:10000}") long maximumSize,
+            @Value("${video-stream.video-path.expire-after:10m}") Duration expireAfter) {
+        this.webClient = loadBalancedWebClientBuilder
+                .baseUrl(VIDEO_SERVICE_URL)
+                .filter((request, next) -> withBearerToken(request).flatMap(next::exchange))
+                .build();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfter)
+                .buildAsync();
+    }
+
+    /**
+     * A failed lookup is dropped from the cache before the error reaches the
+     * caller, so a retry calls the upstream again instead of finding the failed
+     * future still in place.
+     */
+    public Mono<String> getPath(Long videoId) {
+        return Mono.deferContextual(context -> {
+            CompletableFuture<String> path = cache.get(videoId,
+                    (id, executor) -> fetchPath(id).contextWrite(context).toFuture());
+            return Mono.fromFuture(path)
+                    .doOnError(e -> cache.asMap().remove(videoId, path));
+        });
+    }
+
+    private Mono<String> fetchPath(Long videoId) {
+        return webClient.get()
+                .uri(VIDEO_PATH_URI, videoId)
+                .retrieve()
+                .bodyToMono(VideoPath.class)
+                .map(VideoPath::getPath);
+    }
+
+    private Mono<ClientRequest> withBearerToken(ClientRequest request) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(context -> context.getAuthentication().getPrincipal())
+                .filter(Jwt.class::isInstance)
+                .map(jwt -> ClientRequest.from(request)
+                        .headers(headers -> headers.setBearerAuth(((Jwt) jwt).getTokenValue()))
+                        .build())
+                .defaultIfEmpty(request);
+    }
+}
@@ -0,0 +1,170 @@
+package video.stream.application.routing;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Consistent-hash ring assigning videos to instances of the service, so that
+ * every instance and every client routing by the same instance list agrees on
+ * the owner of a video. Each instance is placed on the ring at
+ * {@code virtualNodes} points, and a video is owned by the instance of the
+ * first point at or after the hash of its id.
+ * <p>
+ * {@link #route(long, double)} applies bounded loads: an instance takes a new
+ * stream only while its load stays within {@code loadFactor} times the
+ * average, otherwise the stream goes to the next instance clockwise. Streams
+ * of a hot video therefore spill over to a few further instances, always the
+ * same ones for the same video, instead of overloading its owner.
+ */
+public final class ConsistentHashRing {
+
+    public static final ConsistentHashRing EMPTY = new ConsistentHashRing(new RingNode[0], new long[0],
+            new int[0]);
+
+    private final RingNode[] nodes;
+    private final long[] points;
+    private final int[] pointNodes;
+    private final long totalLoad;
+
+    private ConsistentHashRing(RingNode[] nodes, long[] points, int[] pointNodes) {
+        this.nodes = nodes;
+        this.points = points;
+        this.pointNodes = pointNodes;
+        this.totalLoad = Arrays.stream(nodes).mapToLong(RingNode::getLoad).sum();
+    }
+
+    public static ConsistentHashRing build(List<RingNode> nodes) {
+        RingNode[] sortedNodes = nodes.stream()
+                .filter(node -> node.getVirtualNodes() > 0)
+                .collect(Collectors.toMap(RingNode::getUri, node -> node, (first, second) -> first))
+                .values().stream()
+                .sorted(Comparator.comparing(node -> node.getUri().toString()))
+                .toArray(RingNode[]::new);
+        int pointCount = Arrays.stream(sortedNodes).mapToInt(RingNode::getVirtualNodes).sum();
+        long[][] entries = new long[pointCount][];
+        int index = 0;
+        for (int node = 0; node < sortedNodes.length; node++) {
+            String id = sortedNodes[node].getUri().toString();
+            for (int virtualNode = 0; virtualNode < sortedNodes[node].getVirtualNodes(); virtualNode++) {
+                entries[index++] = new long[] {hashPoint(id + "#" + virtualNode), node};
+            }
+        }
+        Arrays.sort(entries, Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+        long[] points = new long[pointCount];
+        int[] pointNodes = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            points[i] = entries[i][0];
+            pointNodes[i] = (int) entries[i][1];
+        }
+        return new ConsistentHashRing(sortedNodes, points, pointNodes);
+    }
+
+    public static ConsistentHashRing build(List<ServiceInstance> instances, int defaultVirtualNodes) {
+        return build(instances.stream()
+                .map(instance -> RingNode.of(instance, defaultVirtualNodes))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the ring with the load of the instance at {@code uri} replaced,
+     * for an instance that knows its own load better than its published one.
+     */
+    public ConsistentHashRing withLoad(URI uri, long load) {
+        RingNode[] updated = nodes.clone();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i].getUri().equals(uri)) {
+                updated[i] = updated[i].withLoad(load);
+                return new ConsistentHashRing(updated, points, pointNodes);
+            }
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return nodes.length == 0;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public boolean contains(URI uri) {
+        return Arrays.stream(nodes).anyMatch(node -> node.getUri().equals(uri));
+    }
+
+    /**
+     * Returns the instance owning the video regardless of load, or
+     * {@code null} when the ring is empty.
+     */
+    public RingNode getOwner(long videoId) {
+        return isEmpty() ? null : nodes[pointNodes[findPoint(hashKey(videoId))]];
+    }
+
+    /**
+     * Returns the first instance clockwise from the video that can take
+     * another stream without exceeding {@code loadFactor} times the average
+     * load, or the owner when all of them are loaded.
+     */
+    public RingNode route(long videoId, double loadFactor) {
+        if (isEmpty()) {
+            return null;
+        }
+        long capacity = (long) Math.ceil(loadFactor * (totalLoad + 1) / nodes.length);
+        int start = findPoint(hashKey(videoId));
+        boolean[] visited = new boolean[nodes.length];
+        int remaining = nodes.length;
+        for (int i = 0; i < points.length && remaining > 0; i++) {
+            int node = pointNodes[(start + i) % points.length];
+            if (!visited[node]) {
+                if (nodes[node].getLoad() + 1 <= capacity) {
+                    return nodes[node];
+                }
+                visited[node] = true;
+                remaining--;
+            }
+        }
+        return nodes[pointNodes[start]];
+    }
+
+    private int findPoint(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    /**
+     * Spreads sequential video ids over the ring with the finalizer of
+     * MurmurHash3.
+     */
+    static long hashKey(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static long hashPoint(String point) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(point.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package video.stream.application.routing;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides which instance serves a video, so that each video is read by as few
+ * instances as possible and their page caches and in-process caches keep
+ * hitting as the service scales out. The {@link ConsistentHashRing} is rebuilt
+ * from the discovery client every {@code refreshInterval}, with the live count
+ * of streams served by this instance as its own load.
+ * <p>
+ * Only requests starting a playback are routed, the requests continuing it
+ * are pinned to the instance that took it. Pinned requests are always served
+ * locally, so stale loads or instance lists can cost at most one redirect and
+ * a playback stays on one instance while the loads change.
+ */
+@Component
+@Slf4j
+public class ContentRouter {
+
+    @Getter
+    private final boolean enabled;
+    private final String serviceId;
+    private final String configuredSelfUri;
+    private final int virtualNodes;
+    private final double loadFactor;
+    private final Duration refreshInterval;
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<Registration> registration;
+    private final AtomicLong activeStreams = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile ConsistentHashRing ring = ConsistentHashRing.EMPTY;
+    private volatile URI selfUri;
+
+    @Autowired
+    public ContentRouter(
+            @Value("${video-stream.routing.enabled:false}") boolean enabled,
+            @Value("${video-stream.routing.service-id:${spring.application.name}}") String serviceId,
+            @Value("${video-stream.routing.self-uri:}") String selfUri,
+            @Value("${video-stream.routing.virtual-nodes:160}") int virtualNodes,
+            @Value("${video-stream.routing.load-factor:1.25}") double loadFactor,
+            @Value("${video-stream.routing.refresh-interval:10s}") Duration refreshInterval,
+            DiscoveryClient discoveryClient, ObjectProvider<Registration> registration) {
+        this.enabled = enabled;
+        this.serviceId = serviceId;
+        this.configuredSelfUri = selfUri;
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
+        this.refreshInterval = refreshInterval;
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "content-router-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            long interval = refreshInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the base URI of the instance that should serve the video, or
+     * {@code null} when this instance should serve it, which it always does
+     * when routing is disabled, the request is pinned to this instance or this
+     * instance is not on the ring yet.
+     */
+    public URI getRemoteOwner(long videoId, boolean pinned) {
+        URI self = selfUri;
+        ConsistentHashRing current = ring;
+        if (!enabled || pinned || self == null || !current.contains(self)) {
+            return null;
+        }
+        RingNode owner = current.withLoad(self, activeStreams.get()).route(videoId, loadFactor);
+        return owner.getUri().equals(self) ? null : owner.getUri();
+    }
+
+    public void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamFinished() {
+        activeStreams.decrementAndGet();
+    }
+
+    public long getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    public int getRingSize() {
+        return ring.size();
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    void refresh() {
+        try {
+            if (selfUri == null) {
+                selfUri = resolveSelfUri();
+            }
+            ring = ConsistentHashRing.build(discoveryClient.getInstances(serviceId), virtualNodes);
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh instances of " + serviceId + ", keeping the previous ring", e);
+        }
+    }
+
+    private URI resolveSelfUri() {
+        if (!configuredSelfUri.isEmpty()) {
+            return RingNode.normalize(URI.create(configuredSelfUri));
+        }
+        Registration self = registration.getIfAvailable();
+        return self != null ? RingNode.normalize(self.getUri()) : null;
+    }
+}
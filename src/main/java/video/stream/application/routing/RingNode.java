@@ -0,0 +1,58 @@
+package video.stream.application.routing;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Instance of the service on the {@link ConsistentHashRing}, identified by its
+ * base URI. The number of virtual nodes and the current load are published by
+ * every instance in its discovery metadata.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class RingNode {
+
+    public static final String VIRTUAL_NODES_METADATA = "ring-virtual-nodes";
+    public static final String LOAD_METADATA = "ring-load";
+
+    private final URI uri;
+    private final int virtualNodes;
+    private final long load;
+
+    public static RingNode of(ServiceInstance instance, int defaultVirtualNodes) {
+        Map<String, String> metadata = instance.getMetadata();
+        return new RingNode(normalize(instance.getUri()),
+                (int) parseMetadata(metadata, VIRTUAL_NODES_METADATA, defaultVirtualNodes),
+                parseMetadata(metadata, LOAD_METADATA, 0));
+    }
+
+    /**
+     * Reduces the URI to scheme, host and port, the part identifying the
+     * instance.
+     */
+    public static URI normalize(URI uri) {
+        return URI.create(uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort()));
+    }
+
+    RingNode withLoad(long load) {
+        return new RingNode(uri, virtualNodes, load);
+    }
+
+    private static long parseMetadata(Map<String, String> metadata, String key, long defaultValue) {
+        String value = metadata != null ? metadata.get(key) : null;
+        try {
+            return value != null ? Math.max(0, Long.parseLong(value.trim())) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package video.stream.application.routing;
+
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+/**
+ * Client-side routing for callers of the service. Resolves the instance that
+ * serves a video from the same discovery data and ring the instances route
+ * by, so requests go to that instance directly instead of through a redirect.
+ */
+public class VideoStreamRoutingClient {
+
+    private static final String STREAM_PATH = "/video-stream?videoId=";
+    private static final String NO_INSTANCES_ERROR_MSG = "No instances of the service are available.";
+
+    private final DiscoveryClient discoveryClient;
+    private final String serviceId;
+    private final int defaultVirtualNodes;
+    private final double loadFactor;
+    private volatile List<RingNode> nodes = List.of();
+    private volatile ConsistentHashRing ring = ConsistentHashRing.EMPTY;
+
+    public VideoStreamRoutingClient(DiscoveryClient discoveryClient, String serviceId, int defaultVirtualNodes,
+            double loadFactor) {
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+        this.defaultVirtualNodes = defaultVirtualNodes;
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * Returns the base URI of the instance that should serve the video.
+     */
+    public URI getInstanceUri(long videoId) {
+        RingNode node = getRing().route(videoId, loadFactor);
+        if (node == null) {
+            throw new IllegalStateException(NO_INSTANCES_ERROR_MSG);
+        }
+        return node.getUri();
+    }
+
+    /**
+     * Returns the URI streaming the video from the instance that should serve
+     * it.
+     */
+    public URI getStreamUri(long videoId) {
+        return URI.create(getInstanceUri(videoId) + STREAM_PATH + videoId);
+    }
+
+    /**
+     * Rebuilds the ring only when the instances or their metadata changed
+     * since the last call.
+     */
+    private ConsistentHashRing getRing() {
+        List<RingNode> current = discoveryClient.getInstances(serviceId).stream()
+                .map(instance -> RingNode.of(instance, defaultVirtualNodes))
+                .collect(Collectors.toList());
+        if (!current.equals(nodes)) {
+            synchronized (this) {
+                if (!current.equals(nodes)) {
+                    ring = ConsistentHashRing.build(current);
+                    nodes = current;
+                }
+            }
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,53 @@
+package video.stream.infrastructure;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import video.stream.application.content.ContentBody;
+import video.stream.application.metrics.StreamMetrics;
+
+public class ContentBodyHttpMessageConverter extends AbstractHttpMessageConverter<ContentBody> {
+
+    private final StreamMetrics streamMetrics;
+
+    public ContentBodyHttpMessageConverter(StreamMetrics streamMetrics) {
+        super(MediaType.ALL);
+        this.streamMetrics = streamMetrics;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ContentBody.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ContentBody readInternal(Class<? extends ContentBody> clazz, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Reading content body is not supported.", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(ContentBody contentBody, MediaType contentType) {
+        return contentBody.getContentLength();
+    }
+
+    @Override
+    protected void writeInternal(ContentBody contentBody, HttpOutputMessage outputMessage) throws IOException {
+        streamMetrics.streamStarted();
+        try {
+            contentBody.writeTo(outputMessage.getBody());
+        } finally {
+            streamMetrics.streamFinished();
+        }
+    }
+}
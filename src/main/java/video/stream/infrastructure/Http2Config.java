@@ -0,0 +1,95 @@
+package video.stream.infrastructure;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tunes HTTP/2, enabled with {@code server.http2.enabled}, for many
+ * concurrent range requests with large bodies. Over TLS it is negotiated with
+ * ALPN, over clear text with an h2c upgrade or prior knowledge. Players
+ * multiplex their requests over one connection, so the streams allowed per
+ * connection are raised, and a player whose flow-control window stays closed
+ * gives up its worker after the stream write timeout instead of holding it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "server.http2.enabled", havingValue = "true")
+public class Http2Config {
+
+    @Configuration
+    @ConditionalOnWebApplication(type = Type.SERVLET)
+    static class TomcatHttp2Config {
+
+        /**
+         * Tomcat writes every stream through its own 8 KB buffer and reserves
+         * window for each frame before writing it, so the writes of the range
+         * reader block, per frame, only while the client's window is closed.
+         * The window updates that reopen it are read by a worker as well, so
+         * the streams executed per connection are kept well below the worker
+         * count, further streams wait for a free slot instead of every worker
+         * blocking on a closed window.
+         */
+        @Bean
+        public TomcatConnectorCustomizer http2ConnectorCustomizer(
+                @Value("${video-stream.http2.initial-window-size:1048576}") int initialWindowSize,
+                @Value("${video-stream.http2.max-concurrent-streams:128}") long maxConcurrentStreams,
+                @Value("${video-stream.http2.max-concurrent-stream-execution:8}") int maxConcurrentStreamExecution,
+                @Value("${video-stream.http2.write-timeout:20s}") Duration writeTimeout,
+                @Value("${video-stream.http2.stream-write-timeout:20s}") Duration streamWriteTimeout,
+                @Value("${video-stream.http2.keep-alive-timeout:60s}") Duration keepAliveTimeout) {
+            return connector -> {
+                Http2Protocol http2Protocol = findHttp2Protocol(connector);
+                http2Protocol.setInitialWindowSize(initialWindowSize);
+                http2Protocol.setMaxConcurrentStreams(maxConcurrentStreams);
+                http2Protocol.setMaxConcurrentStreamExecution(maxConcurrentStreamExecution);
+                http2Protocol.setWriteTimeout(writeTimeout.toMillis());
+                http2Protocol.setStreamWriteTimeout(streamWriteTimeout.toMillis());
+                http2Protocol.setKeepAliveTimeout(keepAliveTimeout.toMillis());
+            };
+        }
+
+        private static Http2Protocol findHttp2Protocol(Connector connector) {
+            UpgradeProtocol[] upgradeProtocols = connector.findUpgradeProtocols();
+            return Arrays.stream(upgradeProtocols)
+                    .filter(Http2Protocol.class::isInstance)
+                    .map(Http2Protocol.class::cast)
+                    .findFirst()
+                    .orElseGet(() -> {
+                        Http2Protocol http2Protocol = new Http2Protocol();
+                        connector.addUpgradeProtocol(http2Protocol);
+                        return http2Protocol;
+                    });
+        }
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    static class NettyHttp2Config {
+
+        /**
+         * Bigger frames cut the per-frame overhead of large bodies, and the
+         * {@link ReactiveContentBodyWriter} writes in quanta of whole frames.
+         */
+        @Bean
+        public NettyServerCustomizer http2ServerCustomizer(
+                @Value("${video-stream.http2.initial-window-size:1048576}") int initialWindowSize,
+                @Value("${video-stream.http2.max-concurrent-streams:128}") long maxConcurrentStreams,
+                @Value("${video-stream.http2.max-frame-size:65536}") int maxFrameSize) {
+            return httpServer -> httpServer.http2Settings(settings -> settings
+                    .initialWindowSize(initialWindowSize)
+                    .maxConcurrentStreams(maxConcurrentStreams)
+                    .maxFrameSize(maxFrameSize));
+        }
+    }
+}
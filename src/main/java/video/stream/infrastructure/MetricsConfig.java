@@ -0,0 +1,83 @@
+package video.stream.infrastructure;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.limit.AdaptiveConcurrencyLimiter;
+import video.stream.application.routing.ContentRouter;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder fileChannelPoolMetrics(FileChannelPool fileChannelPool) {
+        return registry -> Gauge.builder("video.stream.file-channels.open", fileChannelPool,
+                FileChannelPool::getOpenChannels)
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder localDiskTierMetrics(LocalDiskTier localDiskTier) {
+        return registry -> {
+            Gauge.builder("video.stream.local-tier.disk.used", localDiskTier, LocalDiskTier::getUsedBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("video.stream.local-tier.files", localDiskTier, LocalDiskTier::getCachedFiles)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder contentRouterMetrics(ContentRouter contentRouter) {
+        return registry -> {
+            Gauge.builder("video.stream.routing.active-streams", contentRouter, ContentRouter::getActiveStreams)
+                    .register(registry);
+            Gauge.builder("video.stream.routing.ring.size", contentRouter, ContentRouter::getRingSize)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder chunkCacheMetrics(ChunkCache chunkCache) {
+        return registry -> {
+            FunctionCounter.builder("video.stream.chunk-cache.requests", chunkCache,
+                    cache -> cache.getStats().hitCount())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("video.stream.chunk-cache.requests", chunkCache,
+                    cache -> cache.getStats().missCount())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("video.stream.chunk-cache.evictions", chunkCache,
+                    cache -> cache.getStats().evictionCount())
+                    .register(registry);
+            Gauge.builder("video.stream.chunk-cache.memory.used", chunkCache, ChunkCache::getUsedMemory)
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder concurrencyLimiterMetrics(AdaptiveConcurrencyLimiter limiter) {
+        return registry -> {
+            Gauge.builder("video.stream.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .register(registry);
+            Gauge.builder("video.stream.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .register(registry);
+            FunctionCounter.builder("video.stream.concurrency.rejected", limiter,
+                    AdaptiveConcurrencyLimiter::getRejectedStarts)
+                    .tag("request", "start")
+                    .register(registry);
+            FunctionCounter.builder("video.stream.concurrency.rejected", limiter,
+                    AdaptiveConcurrencyLimiter::getRejectedContinuations)
+                    .tag("request", "continuation")
+                    .register(registry);
+        };
+    }
+}
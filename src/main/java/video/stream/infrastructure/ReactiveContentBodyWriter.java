@@ -0,0 +1,201 @@
+package video.stream.infrastructure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.HttpServerResponse;
+import video.stream.application.content.BandwidthLimiter;
+import video.stream.application.content.ByteArrayRegion;
+import video.stream.application.content.CompositeContentBody;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegion;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.content.MultipartFileRegions;
+import video.stream.application.content.ObservedContentBody;
+import video.stream.application.content.ShapedContentBody;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+
+/**
+ * Reactive counterpart of {@link ContentBodyHttpMessageConverter}. Single file
+ * regions are handed to the server as zero-copy file transfers, other bodies
+ * are streamed as {@link DataBuffer}s wrapping in-memory parts or read from
+ * the file on the bounded elastic scheduler, through the same chunk cache,
+ * local disk tier and pooled channels as the servlet writer. When either copy
+ * is enabled, single file regions are read the same way, as a zero-copy
+ * transfer of the origin file would bypass them.
+ *
+ * <p>
+ * HTTP/2 responses cannot be sent as file transfers through the stream's
+ * frames, so their file regions are read in buffers of whole frames instead.
+ * The stream is only writable while the client's flow-control window is
+ * open, so the next buffer is read once the previous one fits the window and
+ * a stalled player holds no more than one buffer.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveContentBodyWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileRegionWriter fileRegionWriter;
+    private final StreamMetrics streamMetrics;
+    private final int http2WriteQuantum;
+
+    @Autowired
+    public ReactiveContentBodyWriter(FileRegionWriter fileRegionWriter, StreamMetrics streamMetrics,
+            @Value("${video-stream.http2.write-quantum:131072}") int http2WriteQuantum) {
+        this.fileRegionWriter = fileRegionWriter;
+        this.streamMetrics = streamMetrics;
+        this.http2WriteQuantum = http2WriteQuantum;
+    }
+
+    public Mono<Void> write(ContentBody contentBody, ServerHttpResponse response) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            streamMetrics.streamStarted();
+            return writeBody(contentBody, response)
+                    .doOnSuccess(result -> {
+                        streamMetrics.recordStage(Stage.WRITE, System.nanoTime() - startTime);
+                        streamMetrics.recordBytesServed(getFileBytes(contentBody));
+                    })
+                    .doFinally(signal -> streamMetrics.streamFinished());
+        });
+    }
+
+    private Mono<Void> writeBody(ContentBody contentBody, ServerHttpResponse response) {
+        if (contentBody instanceof ObservedContentBody) {
+            return writeObserved((ObservedContentBody) contentBody, response);
+        }
+        if (contentBody instanceof ShapedContentBody) {
+            return writeShaped((ShapedContentBody) contentBody, response);
+        }
+        if (isHttp2(response)) {
+            return response.writeWith(toDataBuffers(contentBody, response.bufferFactory(), http2WriteQuantum));
+        }
+        if (contentBody instanceof FileRegion && response instanceof ZeroCopyHttpOutputMessage
+                && !fileRegionWriter.isCaching()) {
+            FileRegion region = (FileRegion) contentBody;
+            return ((ZeroCopyHttpOutputMessage) response)
+                    .writeWith(region.getFile().getPath(), region.getPosition(), region.getCount());
+        }
+        return response.writeWith(toDataBuffers(contentBody, response.bufferFactory(), BUFFER_SIZE));
+    }
+
+    private static boolean isHttp2(ServerHttpResponse response) {
+        Object nativeResponse = ServerHttpResponseDecorator.getNativeResponse(response);
+        return nativeResponse instanceof HttpServerResponse
+                && ((HttpServerResponse) nativeResponse).version().majorVersion() == 2;
+    }
+
+    private Mono<Void> writeObserved(ObservedContentBody contentBody, ServerHttpResponse response) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return writeBody(contentBody.getDelegate(), response)
+                    .doOnSuccess(result -> contentBody.getListener()
+                            .onTransferred(contentBody.getContentLength(), System.nanoTime() - startTime));
+        });
+    }
+
+    /**
+     * Delays every buffer of the body by the wait its reservation from the
+     * bandwidth limits requires, without blocking the event loop.
+     */
+    private Mono<Void> writeShaped(ShapedContentBody contentBody, ServerHttpResponse response) {
+        BandwidthLimiter.Pacer pacer = contentBody.getPacer();
+        int bufferSize = isHttp2(response) ? http2WriteQuantum : BUFFER_SIZE;
+        return response.writeWith(toDataBuffers(contentBody.getDelegate(), response.bufferFactory(), bufferSize)
+                .concatMap(buffer -> {
+                    long wait = pacer.reserve(buffer.readableByteCount());
+                    return wait > 0
+                            ? Mono.delay(Duration.ofNanos(wait)).thenReturn(buffer)
+                            : Mono.just(buffer);
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release));
+    }
+
+    private long getFileBytes(ContentBody contentBody) {
+        if (contentBody instanceof ObservedContentBody) {
+            return getFileBytes(((ObservedContentBody) contentBody).getDelegate());
+        }
+        if (contentBody instanceof ShapedContentBody) {
+            return getFileBytes(((ShapedContentBody) contentBody).getDelegate());
+        }
+        if (contentBody instanceof MultipartFileRegions) {
+            return ((MultipartFileRegions) contentBody).getRegions().stream()
+                    .mapToLong(FileRegion::getCount)
+                    .sum();
+        }
+        return contentBody.getContentLength();
+    }
+
+    private Flux<DataBuffer> toDataBuffers(ContentBody contentBody, DataBufferFactory bufferFactory,
+            int bufferSize) {
+        if (contentBody instanceof FileRegion) {
+            return read((FileRegion) contentBody, bufferFactory, bufferSize);
+        }
+        if (contentBody instanceof ByteArrayRegion) {
+            ByteArrayRegion bytes = (ByteArrayRegion) contentBody;
+            return Flux.just(bufferFactory.wrap(
+                    ByteBuffer.wrap(bytes.getData(), bytes.getOffset(), bytes.getLength())));
+        }
+        if (contentBody instanceof CompositeContentBody) {
+            return Flux.fromIterable(((CompositeContentBody) contentBody).getParts())
+                    .concatMap(part -> toDataBuffers(part, bufferFactory, bufferSize));
+        }
+        if (contentBody instanceof MultipartFileRegions) {
+            MultipartFileRegions multipart = (MultipartFileRegions) contentBody;
+            return Flux.fromIterable(multipart.getRegions())
+                    .concatMap(region -> Flux.concat(
+                            Mono.fromSupplier(() -> bufferFactory.wrap(multipart.getPartHeader(region))),
+                            read(region, bufferFactory, bufferSize),
+                            Mono.fromSupplier(() -> bufferFactory.wrap(multipart.getPartEnd()))))
+                    .concatWith(Mono.fromSupplier(() -> bufferFactory.wrap(multipart.getClosingDelimiter())));
+        }
+        return Flux.error(new IllegalArgumentException(
+                "Unsupported content body " + contentBody.getClass().getSimpleName()));
+    }
+
+    /**
+     * Reads the region a buffer per request of the server, so a client that
+     * does not keep up holds no more than the buffers in flight.
+     */
+    private Flux<DataBuffer> read(FileRegion region, DataBufferFactory bufferFactory, int bufferSize) {
+        long end = region.getPosition() + region.getCount();
+        return Flux.using(() -> fileRegionWriter.openReader(region.getFile()),
+                reader -> Flux.<DataBuffer, Long>generate(region::getPosition, (position, sink) -> {
+                    int length = (int) Math.min(bufferSize, end - position);
+                    DataBuffer buffer = bufferFactory.allocateBuffer(length);
+                    try {
+                        reader.read(buffer.asByteBuffer(0, length), position);
+                        sink.next(buffer.writePosition(length));
+                    } catch (IOException | RuntimeException e) {
+                        DataBufferUtils.release(buffer);
+                        sink.error(e);
+                        return position;
+                    }
+                    if (position + length >= end) {
+                        sink.complete();
+                    }
+                    return position + length;
+                }),
+                FileRegionWriter.Reader::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
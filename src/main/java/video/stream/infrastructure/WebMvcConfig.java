@@ -0,0 +1,29 @@
+package video.stream.infrastructure;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import video.stream.application.metrics.StreamMetrics;
+
+@Configuration
+@ConditionalOnWebApplication(type = Type.SERVLET)
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final StreamMetrics streamMetrics;
+
+    @Autowired
+    public WebMvcConfig(StreamMetrics streamMetrics) {
+        this.streamMetrics = streamMetrics;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ContentBodyHttpMessageConverter(streamMetrics));
+    }
+}
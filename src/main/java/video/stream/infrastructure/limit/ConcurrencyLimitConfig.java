@@ -0,0 +1,42 @@
+package video.stream.infrastructure.limit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import video.stream.application.limit.AdaptiveConcurrencyLimiter;
+
+/**
+ * Registers the concurrency limit filters behind the security filters, so
+ * unauthenticated requests are turned away without taking a slot.
+ */
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    private static final int SECURITY_FILTER_ORDER_OFFSET = 10;
+    /**
+     * Order of the reactive security filter chain, not exposed by Spring
+     * Security.
+     */
+    private static final int REACTIVE_SECURITY_FILTER_ORDER = -100;
+
+    @Bean
+    @ConditionalOnWebApplication(type = Type.SERVLET)
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(limiter));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + SECURITY_FILTER_ORDER_OFFSET);
+        registration.setEnabled(limiter.isEnabled());
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    public ReactiveConcurrencyLimitFilter reactiveConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter) {
+        return new ReactiveConcurrencyLimitFilter(limiter,
+                REACTIVE_SECURITY_FILTER_ORDER + SECURITY_FILTER_ORDER_OFFSET);
+    }
+}
@@ -0,0 +1,182 @@
+package video.stream.infrastructure.limit;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import video.stream.application.RangeHeaderParser;
+import video.stream.application.limit.AdaptiveConcurrencyLimiter;
+
+/**
+ * Admits stream requests through the {@link AdaptiveConcurrencyLimiter} and
+ * answers those over the limit with {@code 503 Service Unavailable} and a
+ * {@code Retry-After} before they take a worker for the path lookup and the
+ * file reads. The slot is held until the body has been written, so slow disks
+ * and slow clients both count against the limit, but the latency is sampled
+ * when the body starts. A failure writing to the client releases the slot
+ * without a sample, any other failure shrinks the limit.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    static final String STREAM_PATH = "/video-stream";
+    static final String SEEK_PATH = "/video-stream/seek";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.equals(STREAM_PATH) && !path.equals(SEEK_PATH)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(
+                isPlaybackStart(path, request.getHeader(HttpHeaders.RANGE)));
+        if (permit == null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, getRetryAfterSeconds(limiter));
+            return;
+        }
+        PermitResponse permitResponse = new PermitResponse(response, permit);
+        try {
+            chain.doFilter(request, permitResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            if (permitResponse.isClientAborted()) {
+                permit.ignored();
+            } else {
+                permit.dropped();
+            }
+            throw e;
+        }
+        if (response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            permit.dropped();
+        } else {
+            permit.succeeded();
+        }
+    }
+
+    /**
+     * Tells whether a request starts playback: the probe for the first bytes
+     * of a video, as opposed to the chunks and seeks of a stream in progress.
+     */
+    static boolean isPlaybackStart(String path, String range) {
+        return path.equals(STREAM_PATH) && (range == null || RangeHeaderParser.isSingleRangeFromStart(range));
+    }
+
+    static String getRetryAfterSeconds(AdaptiveConcurrencyLimiter limiter) {
+        return String.valueOf(Math.max(1L, limiter.getRetryAfter().toSeconds()));
+    }
+
+    /**
+     * Reports the start of the body to the permit and remembers whether
+     * writing it to the client failed.
+     */
+    private static class PermitResponse extends HttpServletResponseWrapper {
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+        private ServletOutputStream outputStream;
+        private boolean clientAborted;
+
+        PermitResponse(HttpServletResponse response, AdaptiveConcurrencyLimiter.Permit permit) {
+            super(response);
+            this.permit = permit;
+        }
+
+        boolean isClientAborted() {
+            return clientAborted;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                permit.bodyStarted();
+                outputStream = new ClientOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            try {
+                super.flushBuffer();
+            } catch (IOException e) {
+                clientAborted = true;
+                throw e;
+            }
+        }
+
+        private class ClientOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            ClientOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    delegate.write(b);
+                } catch (IOException e) {
+                    clientAborted = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                try {
+                    delegate.write(bytes, offset, length);
+                } catch (IOException e) {
+                    clientAborted = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                try {
+                    delegate.flush();
+                } catch (IOException e) {
+                    clientAborted = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    delegate.close();
+                } catch (IOException e) {
+                    clientAborted = true;
+                    throw e;
+                }
+            }
+        }
+    }
+}
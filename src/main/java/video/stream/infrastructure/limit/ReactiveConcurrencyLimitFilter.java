@@ -0,0 +1,115 @@
+package video.stream.infrastructure.limit;
+
+import java.nio.file.Path;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import video.stream.application.limit.AdaptiveConcurrencyLimiter;
+
+/**
+ * Reactive counterpart of {@link ConcurrencyLimitFilter}. A cancelled
+ * response, the client having gone away, releases its slot without a latency
+ * sample. The response is decorated to report the start of its body, keeping
+ * zero-copy file transfers available to the writer.
+ */
+public class ReactiveConcurrencyLimitFilter implements WebFilter, Ordered {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final int order;
+
+    public ReactiveConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter, int order) {
+        this.limiter = limiter;
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        if (!limiter.isEnabled()
+                || !path.equals(ConcurrencyLimitFilter.STREAM_PATH) && !path.equals(ConcurrencyLimitFilter.SEEK_PATH)) {
+            return chain.filter(exchange);
+        }
+        return Mono.defer(() -> {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(ConcurrencyLimitFilter.isPlaybackStart(
+                    path, request.getHeaders().getFirst(HttpHeaders.RANGE)));
+            ServerHttpResponse response = exchange.getResponse();
+            if (permit == null) {
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                        ConcurrencyLimitFilter.getRetryAfterSeconds(limiter));
+                return response.setComplete();
+            }
+            ServerHttpResponse permitResponse = response instanceof ZeroCopyHttpOutputMessage
+                    ? new ZeroCopyPermitResponse(response, permit)
+                    : new PermitResponse(response, permit);
+            return chain.filter(exchange.mutate().response(permitResponse).build()).doFinally(signal -> {
+                HttpStatus status = response.getStatusCode();
+                if (signal == SignalType.CANCEL) {
+                    permit.ignored();
+                } else if (signal == SignalType.ON_ERROR || status != null && status.is5xxServerError()) {
+                    permit.dropped();
+                } else {
+                    permit.succeeded();
+                }
+            });
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    private static class PermitResponse extends ServerHttpResponseDecorator {
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        PermitResponse(ServerHttpResponse delegate, AdaptiveConcurrencyLimiter.Permit permit) {
+            super(delegate);
+            this.permit = permit;
+        }
+
+        void bodyStarted() {
+            permit.bodyStarted();
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            bodyStarted();
+            return super.writeWith(body);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            bodyStarted();
+            return super.writeAndFlushWith(body);
+        }
+    }
+
+    private static class ZeroCopyPermitResponse extends PermitResponse implements ZeroCopyHttpOutputMessage {
+
+        ZeroCopyPermitResponse(ServerHttpResponse delegate, AdaptiveConcurrencyLimiter.Permit permit) {
+            super(delegate, permit);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Path file, long position, long count) {
+            bodyStarted();
+            return ((ZeroCopyHttpOutputMessage) getDelegate()).writeWith(file, position, count);
+        }
+    }
+}
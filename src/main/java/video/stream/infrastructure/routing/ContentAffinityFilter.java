@@ -0,0 +1,111 @@
+package video.stream.infrastructure.routing;
+
+import java.io.IOException;
+import java.net.URI;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import video.stream.application.RangeHeaderParser;
+import video.stream.application.routing.ContentRouter;
+
+/**
+ * Redirects stream requests for videos owned by another instance to that
+ * instance. Runs behind the security filters, so unauthenticated callers
+ * can neither learn the instance URIs nor inflate the load of an instance. A
+ * redirected request is authenticated again by the instance serving it.
+ * <p>
+ * Only the request starting a playback, the first range of a video or its
+ * HLS playlists, is routed. The redirect pins the rest of the playback to the
+ * chosen instance, and continuation requests reaching an instance without the
+ * pin are served where they land, so a playback never moves between instances
+ * because the loads changed in the middle of it.
+ */
+public class ContentAffinityFilter extends OncePerRequestFilter {
+
+    static final String ROUTED_PARAMETER = "routed";
+    static final String VIDEO_ID_PARAMETER = "videoId";
+    private static final String STREAM_PATH = "/video-stream";
+    private static final String SEEK_PATH = "/video-stream/seek";
+    private static final String HLS_PATH_PREFIX = "/video-stream/hls/";
+    private static final String HLS_PLAYLIST_SUFFIX = ".m3u8";
+
+    private final ContentRouter contentRouter;
+
+    public ContentAffinityFilter(ContentRouter contentRouter) {
+        this.contentRouter = contentRouter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Long videoId = parseVideoId(path, request.getParameter(VIDEO_ID_PARAMETER));
+        if (videoId == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean pinned = request.getParameter(ROUTED_PARAMETER) != null
+                || !isPlaybackStart(path, request.getHeader(HttpHeaders.RANGE));
+        URI owner = contentRouter.getRemoteOwner(videoId, pinned);
+        if (owner != null) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, createLocation(owner, request.getRequestURI(),
+                    request.getQueryString()));
+            return;
+        }
+        contentRouter.streamStarted();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            contentRouter.streamFinished();
+        }
+    }
+
+    /**
+     * Returns the id of the video requested by a stream endpoint, or
+     * {@code null} for other endpoints and malformed ids.
+     */
+    static Long parseVideoId(String path, String videoIdParameter) {
+        String videoId = null;
+        if (path.equals(STREAM_PATH) || path.equals(SEEK_PATH)) {
+            videoId = videoIdParameter;
+        } else if (path.startsWith(HLS_PATH_PREFIX)) {
+            int end = path.indexOf('/', HLS_PATH_PREFIX.length());
+            videoId = path.substring(HLS_PATH_PREFIX.length(), end < 0 ? path.length() : end);
+        }
+        try {
+            return videoId != null ? Long.valueOf(videoId) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether a request starts a playback, as opposed to the chunks,
+     * seeks and segments of a playback in progress.
+     */
+    static boolean isPlaybackStart(String path, String range) {
+        if (path.startsWith(HLS_PATH_PREFIX)) {
+            return path.endsWith(HLS_PLAYLIST_SUFFIX);
+        }
+        return path.equals(STREAM_PATH) && (range == null || RangeHeaderParser.isSingleRangeFromStart(range));
+    }
+
+    static String createLocation(URI owner, String requestUri, String query) {
+        return new StringBuilder()
+                .append(owner)
+                .append(requestUri)
+                .append('?')
+                .append(query != null && !query.isEmpty() ? query + "&" : "")
+                .append(ROUTED_PARAMETER)
+                .append("=true")
+                .toString();
+    }
+}
@@ -0,0 +1,77 @@
+package video.stream.infrastructure.routing;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+
+import lombok.extern.slf4j.Slf4j;
+import video.stream.application.routing.ContentRouter;
+import video.stream.application.routing.RingNode;
+
+/**
+ * Publishes the virtual nodes and the current load of this instance in its
+ * Eureka metadata, where the other instances and routing clients pick them up
+ * to build the ring. Eureka replicates changed metadata with the next
+ * instance info update.
+ */
+@Component
+@ConditionalOnClass(ApplicationInfoManager.class)
+@Slf4j
+public class EurekaRingMetadataPublisher {
+
+    private final ContentRouter contentRouter;
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+    private final Duration publishInterval;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public EurekaRingMetadataPublisher(ContentRouter contentRouter,
+            ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+            @Value("${video-stream.routing.refresh-interval:10s}") Duration publishInterval) {
+        this.contentRouter = contentRouter;
+        this.applicationInfoManager = applicationInfoManager;
+        this.publishInterval = publishInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ring-metadata-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        ApplicationInfoManager manager = applicationInfoManager.getIfAvailable();
+        if (contentRouter.isEnabled() && manager != null) {
+            long interval = publishInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(() -> publish(manager), 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void publish(ApplicationInfoManager manager) {
+        try {
+            manager.registerAppMetadata(Map.of(
+                    RingNode.VIRTUAL_NODES_METADATA, String.valueOf(contentRouter.getVirtualNodes()),
+                    RingNode.LOAD_METADATA, String.valueOf(contentRouter.getActiveStreams())));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish ring metadata", e);
+        }
+    }
+}
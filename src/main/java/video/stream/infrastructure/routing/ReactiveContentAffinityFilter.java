@@ -0,0 +1,59 @@
+package video.stream.infrastructure.routing;
+
+import java.net.URI;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+import video.stream.application.routing.ContentRouter;
+
+/**
+ * Reactive counterpart of {@link ContentAffinityFilter}.
+ */
+public class ReactiveContentAffinityFilter implements WebFilter, Ordered {
+
+    private final ContentRouter contentRouter;
+    private final int order;
+
+    public ReactiveContentAffinityFilter(ContentRouter contentRouter, int order) {
+        this.contentRouter = contentRouter;
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        Long videoId = ContentAffinityFilter.parseVideoId(path,
+                request.getQueryParams().getFirst(ContentAffinityFilter.VIDEO_ID_PARAMETER));
+        if (videoId == null) {
+            return chain.filter(exchange);
+        }
+        boolean pinned = request.getQueryParams().containsKey(ContentAffinityFilter.ROUTED_PARAMETER)
+                || !ContentAffinityFilter.isPlaybackStart(path, request.getHeaders().getFirst(HttpHeaders.RANGE));
+        URI owner = contentRouter.getRemoteOwner(videoId, pinned);
+        if (owner != null) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+            response.getHeaders().setLocation(URI.create(ContentAffinityFilter.createLocation(owner,
+                    request.getPath().value(), request.getURI().getRawQuery())));
+            return response.setComplete();
+        }
+        return Mono.defer(() -> {
+            contentRouter.streamStarted();
+            return chain.filter(exchange).doFinally(signal -> contentRouter.streamFinished());
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+}
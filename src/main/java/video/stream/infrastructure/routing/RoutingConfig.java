@@ -0,0 +1,44 @@
+package video.stream.infrastructure.routing;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import video.stream.application.routing.ContentRouter;
+
+/**
+ * Registers the content affinity filters behind the security filters and ahead
+ * of the concurrency limit filters, so only authenticated requests are
+ * redirected or count towards the load of this instance, and redirected ones
+ * take no concurrency slot.
+ */
+@Configuration
+public class RoutingConfig {
+
+    private static final int SECURITY_FILTER_ORDER_OFFSET = 5;
+    /**
+     * Order of the reactive security filter chain, not exposed by Spring
+     * Security.
+     */
+    private static final int REACTIVE_SECURITY_FILTER_ORDER = -100;
+
+    @Bean
+    @ConditionalOnWebApplication(type = Type.SERVLET)
+    public FilterRegistrationBean<ContentAffinityFilter> contentAffinityFilter(ContentRouter contentRouter) {
+        FilterRegistrationBean<ContentAffinityFilter> registration = new FilterRegistrationBean<>(
+                new ContentAffinityFilter(contentRouter));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + SECURITY_FILTER_ORDER_OFFSET);
+        registration.setEnabled(contentRouter.isEnabled());
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    public ReactiveContentAffinityFilter reactiveContentAffinityFilter(ContentRouter contentRouter) {
+        return new ReactiveContentAffinityFilter(contentRouter,
+                REACTIVE_SECURITY_FILTER_ORDER + SECURITY_FILTER_ORDER_OFFSET);
+    }
+}
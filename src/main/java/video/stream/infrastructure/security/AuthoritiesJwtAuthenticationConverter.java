@@ -0,0 +1,25 @@
+package video.stream.infrastructure.security;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import com.nimbusds.jose.shaded.json.JSONArray;
+
+public class AuthoritiesJwtAuthenticationConverter extends JwtAuthenticationConverter {
+
+    private static final String CLAIM_AUTHORITIES = "authorities";
+
+    @Override
+    protected Collection<GrantedAuthority> extractAuthorities(final Jwt jwt) {
+        JSONArray authoritiesArr = jwt.getClaim(CLAIM_AUTHORITIES);
+        return authoritiesArr.stream()
+                .map(authority -> new SimpleGrantedAuthority(authority.toString()))
+                .collect(Collectors.toSet());
+    }
+
+}
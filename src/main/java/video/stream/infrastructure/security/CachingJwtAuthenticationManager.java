@@ -0,0 +1,35 @@
+package video.stream.infrastructure.security;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+
+/**
+ * Authenticates bearer tokens through the {@link JwtAuthenticationCache},
+ * verifying only tokens not seen before with the delegate provider.
+ */
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+
+    private final AuthenticationProvider delegate;
+    private final JwtAuthenticationCache authenticationCache;
+
+    public CachingJwtAuthenticationManager(AuthenticationProvider delegate,
+            JwtAuthenticationCache authenticationCache) {
+        this.delegate = delegate;
+        this.authenticationCache = authenticationCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String token = ((BearerTokenAuthenticationToken) authentication).getToken();
+        Authentication cached = authenticationCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        Authentication result = delegate.authenticate(authentication);
+        authenticationCache.put(token, result);
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package video.stream.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Keeps the authentications of verified bearer tokens, so the repeated range
+ * requests of one playback skip signature verification, claim validation and
+ * authority conversion. Entries are keyed by the SHA-256 hash of the token,
+ * never by the token itself, and expire when the token does, or after
+ * {@code maxTimeToLive} when that comes first.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final Duration maxTimeToLive;
+    private final Clock clock;
+    private final Cache<String, Authentication> authentications;
+
+    @Autowired
+    public JwtAuthenticationCache(
+            @Value("${video-stream.security.authentication-cache.maximum-size:100000}") long maximumSize,
+            @Value("${video-stream.security.authentication-cache.max-time-to-live:10m}") Duration maxTimeToLive) {
+        this(maximumSize, maxTimeToLive, Ticker.systemTicker(), Clock.systemUTC());
+    }
+
+    JwtAuthenticationCache(long maximumSize, Duration maxTimeToLive, Ticker ticker, Clock clock) {
+        this.maxTimeToLive = maxTimeToLive;
+        this.clock = clock;
+        this.authentications = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry())
+                .ticker(ticker)
+                .build();
+    }
+
+    public Authentication get(String token) {
+        return authentications.getIfPresent(hash(token));
+    }
+
+    /**
+     * Caches the authentication of the token, unless the token has already
+     * expired.
+     */
+    public void put(String token, Authentication authentication) {
+        if (getTimeToLive(authentication) > 0) {
+            authentications.put(hash(token), authentication);
+        }
+    }
+
+    public long size() {
+        return authentications.estimatedSize();
+    }
+
+    private long getTimeToLive(Authentication authentication) {
+        Instant expiresAt = authentication.getCredentials() instanceof Jwt
+                ? ((Jwt) authentication.getCredentials()).getExpiresAt()
+                : null;
+        if (expiresAt == null) {
+            return maxTimeToLive.toNanos();
+        }
+        return Math.min(maxTimeToLive.toNanos(), Duration.between(clock.instant(), expiresAt).toNanos());
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class TokenExpiry implements Expiry<String, Authentication> {
+
+        @Override
+        public long expireAfterCreate(String key, Authentication authentication, long currentTime) {
+            return Math.max(0, getTimeToLive(authentication));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Authentication authentication, long currentTime,
+                long currentDuration) {
+            return expireAfterCreate(key, authentication, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Authentication authentication, long currentTime,
+                long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package video.stream.infrastructure.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * JWT decoders verifying signatures against the {@link RefreshingJwkSource}
+ * instead of the on-demand JWK set fetching of the auto-configured ones.
+ */
+@Configuration
+public class JwtDecoderConfig {
+
+    @Bean
+    @ConditionalOnWebApplication(type = Type.SERVLET)
+    public JwtDecoder jwtDecoder(RefreshingJwkSource jwkSource) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // claims are validated by the Spring validators of the decoder
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return new NimbusJwtDecoder(processor);
+    }
+
+    /**
+     * A key missing from the current set makes the source wait for a JWKS
+     * fetch, so keys are looked up off the event loop.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    public ReactiveJwtDecoder reactiveJwtDecoder(RefreshingJwkSource jwkSource) {
+        return NimbusReactiveJwtDecoder
+                .withJwkSource(jwt -> Flux.defer(() -> selectKeys(jwkSource, jwt.getHeader()))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .build();
+    }
+
+    private static Flux<JWK> selectKeys(RefreshingJwkSource jwkSource, JWSHeader header) {
+        try {
+            return Flux.fromIterable(jwkSource.get(new JWKSelector(JWKMatcher.forJWSHeader(header)), null));
+        } catch (KeySourceException e) {
+            return Flux.error(e);
+        }
+    }
+}
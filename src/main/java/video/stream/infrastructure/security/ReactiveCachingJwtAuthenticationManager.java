@@ -0,0 +1,30 @@
+package video.stream.infrastructure.security;
+
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link CachingJwtAuthenticationManager}.
+ */
+public class ReactiveCachingJwtAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final ReactiveAuthenticationManager delegate;
+    private final JwtAuthenticationCache authenticationCache;
+
+    public ReactiveCachingJwtAuthenticationManager(ReactiveAuthenticationManager delegate,
+            JwtAuthenticationCache authenticationCache) {
+        this.delegate = delegate;
+        this.authenticationCache = authenticationCache;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        String token = ((BearerTokenAuthenticationToken) authentication).getToken();
+        return Mono.defer(() -> Mono.justOrEmpty(authenticationCache.get(token)))
+                .switchIfEmpty(Mono.defer(() -> delegate.authenticate(authentication)
+                        .doOnNext(result -> authenticationCache.put(token, result))));
+    }
+}
@@ -0,0 +1,223 @@
+package video.stream.infrastructure.security;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JWK set prefetched at startup and refreshed in the background, so that no
+ * request waits for the authorization server. A token signed with a key not in
+ * the current set triggers a refresh to pick up rotated keys, at most once per
+ * {@code minRefreshInterval}, so a flood of tokens with unknown key ids cannot
+ * be turned into a flood of JWKS fetches.
+ * <p>
+ * Fetches run one at a time on the refresh thread, and every request missing
+ * a key joins the fetch in flight for at most {@code timeout}, also the
+ * connect and read timeout of the fetch, so an authorization server that
+ * hangs delays requests with unknown keys by that much instead of blocking
+ * them and the background refresh for good.
+ */
+@Slf4j
+@Component
+public class RefreshingJwkSource implements JWKSource<SecurityContext> {
+
+    private final Callable<String> retriever;
+    private final Duration refreshInterval;
+    private final long minRefreshIntervalNanos;
+    private final Duration timeout;
+    private final Ticker ticker;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile JWKSet jwkSet;
+    private CompletableFuture<JWKSet> refreshInFlight;
+    private long lastRefreshNanos;
+    private boolean refreshed;
+
+    @Autowired
+    public RefreshingJwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${video-stream.security.jwks.refresh-interval:5m}") Duration refreshInterval,
+            @Value("${video-stream.security.jwks.min-refresh-interval:30s}") Duration minRefreshInterval,
+            @Value("${video-stream.security.jwks.timeout:5s}") Duration timeout) {
+        this(httpRetriever(URI.create(jwkSetUri), timeout), refreshInterval, minRefreshInterval, timeout,
+                Ticker.systemTicker());
+    }
+
+    RefreshingJwkSource(Callable<String> retriever, Duration refreshInterval, Duration minRefreshInterval,
+            Duration timeout, Ticker ticker) {
+        this.retriever = retriever;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.timeout = timeout;
+        this.ticker = ticker;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        CompletableFuture<JWKSet> refresh;
+        synchronized (this) {
+            refresh = startRefresh();
+        }
+        try {
+            await(refresh);
+        } catch (KeySourceException e) {
+            log.warn("Could not prefetch JWK set", e);
+        }
+        long interval = refreshInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshInBackground, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet current = jwkSet;
+        List<JWK> keys = current != null ? jwkSelector.select(current) : Collections.emptyList();
+        if (keys.isEmpty()) {
+            JWKSet refreshedSet = refreshOnMiss(current);
+            if (refreshedSet != null) {
+                keys = jwkSelector.select(refreshedSet);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the set to look a missing key up again in: the one another
+     * thread has already replaced the missed set with, or the result of a
+     * refresh, joined if one is in flight. Returns {@code null} when the last
+     * refresh is too recent to try again.
+     */
+    private JWKSet refreshOnMiss(JWKSet missed) throws KeySourceException {
+        CompletableFuture<JWKSet> refresh;
+        synchronized (this) {
+            if (jwkSet != missed) {
+                return jwkSet;
+            }
+            refresh = refreshInFlight;
+            if (refresh == null) {
+                if (refreshed && ticker.read() - lastRefreshNanos < minRefreshIntervalNanos) {
+                    return null;
+                }
+                refresh = startRefresh();
+            }
+        }
+        return await(refresh);
+    }
+
+    private void refreshInBackground() {
+        CompletableFuture<JWKSet> refresh;
+        synchronized (this) {
+            refresh = refreshInFlight != null ? refreshInFlight : startRefresh();
+        }
+        refresh.whenComplete((set, error) -> {
+            if (error != null) {
+                log.warn("Could not refresh JWK set, keeping the previous one", error.getCause());
+            }
+        });
+    }
+
+    /**
+     * Schedules a fetch on the refresh thread. Called while holding the
+     * monitor, which is never held during the fetch itself.
+     */
+    private CompletableFuture<JWKSet> startRefresh() {
+        lastRefreshNanos = ticker.read();
+        refreshed = true;
+        CompletableFuture<JWKSet> refresh = CompletableFuture.supplyAsync(this::fetch, scheduler);
+        refreshInFlight = refresh;
+        refresh.whenComplete((set, error) -> {
+            synchronized (this) {
+                if (refreshInFlight == refresh) {
+                    refreshInFlight = null;
+                }
+            }
+        });
+        return refresh;
+    }
+
+    private JWKSet fetch() {
+        try {
+            JWKSet set = JWKSet.parse(retriever.call());
+            jwkSet = set;
+            return set;
+        } catch (ParseException e) {
+            throw new CompletionException(new KeySourceException("Could not parse JWK set", e));
+        } catch (Exception e) {
+            throw new CompletionException(new KeySourceException("Could not retrieve JWK set", e));
+        }
+    }
+
+    private JWKSet await(CompletableFuture<JWKSet> refresh) throws KeySourceException {
+        try {
+            return refresh.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof KeySourceException
+                    ? (KeySourceException) e.getCause()
+                    : new KeySourceException("Could not retrieve JWK set", e.getCause());
+        } catch (TimeoutException e) {
+            throw new KeySourceException("Timed out retrieving JWK set", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted retrieving JWK set", e);
+        }
+    }
+
+    private static Callable<String> httpRetriever(URI jwkSetUri, Duration timeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) timeout.toMillis());
+        requestFactory.setReadTimeout((int) timeout.toMillis());
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        HttpHeaders headers = new HttpHeaders();
+        String userInfo = jwkSetUri.getUserInfo();
+        if (userInfo != null) {
+            String[] credentials = userInfo.split(":", 2);
+            headers.setBasicAuth(credentials[0], credentials.length > 1 ? credentials[1] : "",
+                    StandardCharsets.UTF_8);
+        }
+        URI uri = UriComponentsBuilder.fromUri(jwkSetUri).userInfo(null).build(true).toUri();
+        RequestEntity<Void> request = RequestEntity.get(uri).headers(headers).build();
+        return () -> restTemplate.exchange(request, String.class).getBody();
+    }
+}
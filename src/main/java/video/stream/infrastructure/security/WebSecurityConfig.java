@@ -1,24 +1,31 @@
 package video.stream.infrastructure.security;
 
-import java.util.Collection;
-import java.util.stream.Collectors;
-
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
 import org.springframework.stereotype.Component;
 
-import com.nimbusds.jose.shaded.json.JSONArray;
-
 @Component
+@EnableWebSecurity
+@ConditionalOnWebApplication(type = Type.SERVLET)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
-    private static final String CLAIM_AUTHORITIES = "authorities";
+    private final JwtDecoder jwtDecoder;
+    private final JwtAuthenticationCache authenticationCache;
+
+    @Autowired
+    public WebSecurityConfig(JwtDecoder jwtDecoder, JwtAuthenticationCache authenticationCache) {
+        this.jwtDecoder = jwtDecoder;
+        this.authenticationCache = authenticationCache;
+    }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
@@ -34,7 +41,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .authenticated()
                 .and()
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt()
-                        .jwtAuthenticationConverter(jwtAuthenticationConverter()));
+                        .authenticationManager(jwtAuthenticationManager()));
     }
 
     @Override
@@ -48,19 +55,14 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                         "/configuration/security",
                         "/swagger-ui.html",
                         "/webjars/**",
-                        "/swagger-ui/**");
+                        "/swagger-ui/**",
+                        "/actuator/health");
     }
 
-    private JwtAuthenticationConverter jwtAuthenticationConverter() {
-        return new JwtAuthenticationConverter() {
-            @Override
-            protected Collection<GrantedAuthority> extractAuthorities(final Jwt jwt) {
-                JSONArray authoritiesArr = jwt.getClaim(CLAIM_AUTHORITIES);
-                return authoritiesArr.stream()
-                        .map(authority -> new SimpleGrantedAuthority(authority.toString()))
-                        .collect(Collectors.toSet());
-            }
-        };
+    private AuthenticationManager jwtAuthenticationManager() {
+        JwtAuthenticationProvider provider = new JwtAuthenticationProvider(jwtDecoder);
+        provider.setJwtAuthenticationConverter(new AuthoritiesJwtAuthenticationConverter());
+        return new CachingJwtAuthenticationManager(provider, authenticationCache);
     }
 
 }
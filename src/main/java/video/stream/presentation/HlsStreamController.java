@@ -0,0 +1,50 @@
+package video.stream.presentation;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import video.stream.application.HlsStreamService;
+import video.stream.application.RequestConditions;
+import video.stream.application.content.ContentBody;
+
+@RestController
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@RequestMapping("/video-stream/hls/{videoId}")
+public class HlsStreamController {
+
+    private final HlsStreamService hlsStreamService;
+
+    @Autowired
+    public HlsStreamController(HlsStreamService hlsStreamService) {
+        this.hlsStreamService = hlsStreamService;
+    }
+
+    @GetMapping("/playlist.m3u8")
+    public ResponseEntity<ContentBody> getPlaylist(@PathVariable Long videoId, @RequestHeader HttpHeaders headers)
+            throws IOException {
+        return hlsStreamService.preparePlaylist(RequestConditions.of(headers), videoId);
+    }
+
+    @GetMapping("/init.mp4")
+    public ResponseEntity<ContentBody> getInitSegment(@PathVariable Long videoId,
+            @RequestHeader HttpHeaders headers) throws IOException {
+        return hlsStreamService.prepareInitSegment(RequestConditions.of(headers), videoId);
+    }
+
+    @GetMapping("/{segment:\\d+}.m4s")
+    public ResponseEntity<ContentBody> getSegment(@PathVariable Long videoId, @PathVariable int segment,
+            @RequestHeader HttpHeaders headers) throws IOException {
+        return hlsStreamService.prepareSegment(segment, RequestConditions.of(headers), videoId);
+    }
+
+}
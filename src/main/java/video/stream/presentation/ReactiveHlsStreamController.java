@@ -0,0 +1,98 @@
+package video.stream.presentation;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import video.stream.application.HlsStreamService;
+import video.stream.application.RequestConditions;
+import video.stream.application.content.ContentBody;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+import video.stream.application.reactive.ReactiveVideoPathCache;
+import video.stream.infrastructure.ReactiveContentBodyWriter;
+
+@RestController
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+@RequestMapping("/video-stream/hls/{videoId}")
+public class ReactiveHlsStreamController {
+
+    private final HlsStreamService hlsStreamService;
+    private final ReactiveVideoPathCache videoPathCache;
+    private final ReactiveContentBodyWriter contentBodyWriter;
+    private final StreamMetrics streamMetrics;
+
+    @Autowired
+    public ReactiveHlsStreamController(HlsStreamService hlsStreamService, ReactiveVideoPathCache videoPathCache,
+            ReactiveContentBodyWriter contentBodyWriter, StreamMetrics streamMetrics) {
+        this.hlsStreamService = hlsStreamService;
+        this.videoPathCache = videoPathCache;
+        this.contentBodyWriter = contentBodyWriter;
+        this.streamMetrics = streamMetrics;
+    }
+
+    @GetMapping("/playlist.m3u8")
+    public Mono<Void> getPlaylist(@PathVariable Long videoId, @RequestHeader HttpHeaders headers,
+            ServerHttpResponse response) {
+        RequestConditions conditions = RequestConditions.of(headers);
+        return serve(videoId, path -> () -> hlsStreamService.preparePlaylist(conditions, path), response);
+    }
+
+    @GetMapping("/init.mp4")
+    public Mono<Void> getInitSegment(@PathVariable Long videoId, @RequestHeader HttpHeaders headers,
+            ServerHttpResponse response) {
+        RequestConditions conditions = RequestConditions.of(headers);
+        return serve(videoId, path -> () -> hlsStreamService.prepareInitSegment(conditions, path), response);
+    }
+
+    @GetMapping("/{segment:\\d+}.m4s")
+    public Mono<Void> getSegment(@PathVariable Long videoId, @PathVariable int segment,
+            @RequestHeader HttpHeaders headers, ServerHttpResponse response) {
+        RequestConditions conditions = RequestConditions.of(headers);
+        return serve(videoId, path -> () -> hlsStreamService.prepareSegment(segment, conditions, path), response);
+    }
+
+    private Mono<Void> serve(Long videoId, Function<Path, Callable<ResponseEntity<ContentBody>>> content,
+            ServerHttpResponse response) {
+        return getPath(videoId)
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(path -> Mono.fromCallable(content.apply(Paths.get(path))))
+                .flatMap(entity -> write(entity, response));
+    }
+
+    private Mono<String> getPath(Long videoId) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return videoPathCache.getPath(videoId)
+                    .doOnSuccess(path -> {
+                        streamMetrics.recordStage(Stage.PATH_RESOLUTION, System.nanoTime() - startTime);
+                        streamMetrics.recordRequest(videoId);
+                    });
+        });
+    }
+
+    private Mono<Void> write(ResponseEntity<ContentBody> content, ServerHttpResponse response) {
+        response.setStatusCode(content.getStatusCode());
+        response.getHeaders().putAll(content.getHeaders());
+        if (content.getBody() == null) {
+            return response.setComplete();
+        }
+        return contentBodyWriter.write(content.getBody(), response);
+    }
+
+}
@@ -0,0 +1,96 @@
+package video.stream.presentation;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import video.stream.application.RequestConditions;
+import video.stream.application.VideoStreamService;
+import video.stream.application.content.ContentBody;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.metrics.StreamMetrics.Stage;
+import video.stream.application.reactive.ReactiveVideoPathCache;
+import video.stream.infrastructure.ReactiveContentBodyWriter;
+
+@RestController
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+@RequestMapping("/video-stream")
+public class ReactiveVideoStreamController {
+
+    private static final String ANONYMOUS_CLIENT_ID = "anonymous";
+
+    private final VideoStreamService videoStreamService;
+    private final ReactiveVideoPathCache videoPathCache;
+    private final ReactiveContentBodyWriter contentBodyWriter;
+    private final StreamMetrics streamMetrics;
+
+    @Autowired
+    public ReactiveVideoStreamController(VideoStreamService videoStreamService,
+            ReactiveVideoPathCache videoPathCache, ReactiveContentBodyWriter contentBodyWriter,
+            StreamMetrics streamMetrics) {
+        this.videoStreamService = videoStreamService;
+        this.videoPathCache = videoPathCache;
+        this.contentBodyWriter = contentBodyWriter;
+        this.streamMetrics = streamMetrics;
+    }
+
+    @GetMapping
+    public Mono<Void> get(@RequestHeader(HttpHeaders.RANGE) String range, @RequestParam Long videoId,
+            @RequestHeader HttpHeaders headers, ServerHttpResponse response) {
+        RequestConditions conditions = RequestConditions.of(headers);
+        return Mono.zip(getPath(videoId), getClientId())
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(pathAndClient -> Mono.fromCallable(() -> videoStreamService
+                        .prepareContent(range, conditions, Paths.get(pathAndClient.getT1()), pathAndClient.getT2())))
+                .flatMap(content -> write(content, response));
+    }
+
+    @GetMapping("/seek")
+    public Mono<Void> seek(@RequestParam Long videoId, @RequestParam double time, ServerHttpResponse response) {
+        return Mono.zip(getPath(videoId), getClientId())
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(pathAndClient -> Mono.fromCallable(() -> videoStreamService
+                        .prepareSeekContent(time, Paths.get(pathAndClient.getT1()), pathAndClient.getT2())))
+                .flatMap(content -> write(content, response));
+    }
+
+    private Mono<String> getPath(Long videoId) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return videoPathCache.getPath(videoId)
+                    .doOnSuccess(path -> {
+                        streamMetrics.recordStage(Stage.PATH_RESOLUTION, System.nanoTime() - startTime);
+                        streamMetrics.recordRequest(videoId);
+                    });
+        });
+    }
+
+    private Mono<String> getClientId() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(context -> context.getAuthentication().getName())
+                .defaultIfEmpty(ANONYMOUS_CLIENT_ID);
+    }
+
+    private Mono<Void> write(ResponseEntity<ContentBody> content, ServerHttpResponse response) {
+        response.setStatusCode(content.getStatusCode());
+        response.getHeaders().putAll(content.getHeaders());
+        if (content.getBody() == null) {
+            return response.setComplete();
+        }
+        return contentBodyWriter.write(content.getBody(), response);
+    }
+
+}
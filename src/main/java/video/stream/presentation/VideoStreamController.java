@@ -3,6 +3,8 @@ package video.stream.presentation;
 import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,9 +13,12 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import video.stream.application.RequestConditions;
 import video.stream.application.VideoStreamService;
+import video.stream.application.content.ContentBody;
 
 @RestController
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @RequestMapping("/video-stream")
 public class VideoStreamController {
 
@@ -25,9 +30,15 @@ public class VideoStreamController {
     }
 
     @GetMapping
-    public ResponseEntity<byte[]> get(@RequestHeader(HttpHeaders.RANGE) String range, @RequestParam Long videoId)
+    public ResponseEntity<ContentBody> get(@RequestHeader(HttpHeaders.RANGE) String range, @RequestParam Long videoId,
+            @RequestHeader HttpHeaders headers) throws IOException {
+        return videoStreamService.prepareContent(range, RequestConditions.of(headers), videoId);
+    }
+
+    @GetMapping("/seek")
+    public ResponseEntity<ContentBody> seek(@RequestParam Long videoId, @RequestParam double time)
             throws IOException {
-        return videoStreamService.prepareContent(range, videoId);
+        return videoStreamService.prepareSeekContent(time, videoId);
     }
 
 }
\ No newline at end of file
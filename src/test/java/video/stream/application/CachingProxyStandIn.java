@@ -0,0 +1,61 @@
+package video.stream.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import video.stream.application.content.ContentBody;
+
+/**
+ * Stand-in for a caching reverse proxy in front of the service. It stores
+ * responses that carry an entity tag and a public {@code Cache-Control} per
+ * request key, and revalidates them with {@code If-None-Match} on every
+ * request, as a CDN does once a response is stale.
+ */
+class CachingProxyStandIn {
+
+    interface Origin {
+
+        ResponseEntity<ContentBody> fetch(RequestConditions conditions) throws IOException;
+
+    }
+
+    private final Map<String, byte[]> bodies = new HashMap<>();
+    private final Map<String, String> entityTags = new HashMap<>();
+    private long originBytes;
+    private int revalidations;
+
+    byte[] get(String key, Origin origin) throws IOException {
+        String entityTag = entityTags.get(key);
+        ResponseEntity<ContentBody> response = origin.fetch(entityTag != null
+                ? new RequestConditions(entityTag, -1, null)
+                : RequestConditions.NONE);
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            revalidations++;
+            return bodies.get(key);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        byte[] body = outputStream.toByteArray();
+        originBytes += body.length;
+        String cacheControl = response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL);
+        if (response.getHeaders().getETag() != null && cacheControl != null && cacheControl.contains("public")) {
+            bodies.put(key, body);
+            entityTags.put(key, response.getHeaders().getETag());
+        }
+        return body;
+    }
+
+    long getOriginBytes() {
+        return originBytes;
+    }
+
+    int getRevalidations() {
+        return revalidations;
+    }
+}
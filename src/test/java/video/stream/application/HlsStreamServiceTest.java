@@ -0,0 +1,141 @@
+package video.stream.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.feign.VideoPathCache;
+import video.stream.application.feign.VideoServiceFeign;
+import video.stream.application.feign.dto.VideoPath;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileFixtures;
+import video.stream.application.file.FileMetadataCache;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.mp4.HlsSegmentIndexCache;
+import video.stream.application.mp4.Mp4FileBuilder;
+import video.stream.application.mp4.Mp4LayoutCache;
+
+@ExtendWith(MockitoExtension.class)
+public class HlsStreamServiceTest {
+
+    private final static Long FILE_ID = 1L;
+    private final static Long MP4_FILE_ID = 3L;
+
+    private HlsStreamService hlsStreamService;
+
+    @Mock
+    private VideoServiceFeign videoServiceFeign;
+
+    @TempDir
+    Path tempDir;
+
+    private void mockMp4FilePath() throws IOException {
+        Path mp4File = new Mp4FileBuilder().write(tempDir.resolve("video.mp4"));
+        when(videoServiceFeign.getVideoFilePath(MP4_FILE_ID))
+                .thenReturn(new VideoPath(mp4File.toString()));
+    }
+
+    private byte[] readBody(ResponseEntity<ContentBody> response) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        StreamMetrics streamMetrics = new StreamMetrics(new SimpleMeterRegistry(), 100);
+        FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+        hlsStreamService = new HlsStreamService(
+                new VideoPathCache(videoServiceFeign, 100, Duration.ofMinutes(10), Duration.ofMinutes(8)),
+                new FileMetadataCache(100, Duration.ofSeconds(5)),
+                new Mp4LayoutCache(true, 32 * 1024 * 1024, 128 * 1024 * 1024, fileChannelPool),
+                new HlsSegmentIndexCache(Duration.ofMillis(100), 16 * 1024 * 1024, fileChannelPool),
+                new FileRegionWriter(new ChunkCache(true, 1024 * 1024, 64 * 1024, 1), fileChannelPool,
+                        new LocalDiskTier(false, "", 0, 1024, 0, 1, 1, fileChannelPool), streamMetrics),
+                new HttpCachePolicy("public, max-age=3600"),
+                streamMetrics);
+    }
+
+    @Test
+    void shouldPreparePlaylist() throws IOException {
+        mockMp4FilePath();
+
+        ResponseEntity<ContentBody> response = hlsStreamService.preparePlaylist(RequestConditions.NONE, MP4_FILE_ID);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE))
+                .isEqualTo(HlsStreamService.PLAYLIST_CONTENT_TYPE_PROPERTY);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH))
+                .isEqualTo(String.valueOf(readBody(response).length));
+    }
+
+    @Test
+    void shouldPrepareSegment() throws IOException {
+        mockMp4FilePath();
+
+        ResponseEntity<ContentBody> response = hlsStreamService.prepareSegment(0, RequestConditions.NONE, MP4_FILE_ID);
+        byte[] body = readBody(response);
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE))
+                .isEqualTo(HlsStreamService.SEGMENT_CONTENT_TYPE_PROPERTY);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH))
+                .isEqualTo(String.valueOf(body.length));
+        assertThat(new String(body, 4, 4)).isEqualTo("moof");
+        assertThat(new String(body, ByteBuffer.wrap(body).getInt(0) + 4, 4)).isEqualTo("mdat");
+    }
+
+    @Test
+    void shouldRespondNotModifiedIfSegmentIsUnchanged() throws IOException {
+        mockMp4FilePath();
+        String entityTag = hlsStreamService.prepareSegment(0, RequestConditions.NONE, MP4_FILE_ID).getHeaders()
+                .getETag();
+
+        ResponseEntity<ContentBody> response = hlsStreamService.prepareSegment(0,
+                new RequestConditions(entityTag, -1, null), MP4_FILE_ID);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    void shouldThrowExceptionIfSegmentDoesNotExist() throws IOException {
+        mockMp4FilePath();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> hlsStreamService.prepareSegment(2, RequestConditions.NONE, MP4_FILE_ID),
+                HlsStreamService.WRONG_SEGMENT_ARG_ERROR_MSG);
+    }
+
+    @Test
+    void shouldThrowExceptionIfVideoCannotBeSegmented() throws IOException {
+        Path file = Files.write(tempDir.resolve("random.mp4"), new byte[4096]);
+        when(videoServiceFeign.getVideoFilePath(FILE_ID))
+                .thenReturn(new VideoPath(file.toString()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> hlsStreamService.preparePlaylist(RequestConditions.NONE, FILE_ID),
+                HlsStreamService.NOT_SEGMENTABLE_ERROR_MSG);
+    }
+}
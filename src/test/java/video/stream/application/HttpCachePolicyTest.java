@@ -0,0 +1,71 @@
+package video.stream.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+import video.stream.application.file.FileMetadata;
+
+public class HttpCachePolicyTest {
+
+    private final static long LAST_MODIFIED = 1_600_000_000_123L;
+    private final static String LAST_MODIFIED_DATE = "Sun, 13 Sep 2020 12:26:40 GMT";
+
+    private final HttpCachePolicy httpCachePolicy = new HttpCachePolicy("public, max-age=3600");
+    private final String entityTag = new FileMetadata(Paths.get("video.mp4"), 1024, LAST_MODIFIED, 42)
+            .getEntityTag();
+
+    @Test
+    void shouldDeriveStrongEntityTagFromFileMetadata() {
+        FileMetadata modified = new FileMetadata(Paths.get("video.mp4"), 1024, LAST_MODIFIED + 1000, 42);
+
+        assertThat(entityTag).isEqualTo("\"400-174876e807b-4f61eefe\"");
+        assertThat(modified.getEntityTag()).isNotEqualTo(entityTag);
+    }
+
+    @Test
+    void shouldDeriveSameEntityTagOnEveryInstance() {
+        FileMetadata otherInstance = new FileMetadata(Paths.get("video.mp4"), 1024, LAST_MODIFIED, 43);
+        FileMetadata otherFile = new FileMetadata(Paths.get("other.mp4"), 1024, LAST_MODIFIED, 42);
+
+        assertThat(otherInstance.getEntityTag()).isEqualTo(entityTag);
+        assertThat(otherFile.getEntityTag()).isNotEqualTo(entityTag);
+    }
+
+    @Test
+    void shouldMatchIfNoneMatchWithWeakComparison() {
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions(entityTag, -1, null), entityTag,
+                LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions("\"a\", W/" + entityTag, -1, null),
+                entityTag, LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions("*", -1, null), entityTag,
+                LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions("\"a\", \"b\"", -1, null), entityTag,
+                LAST_MODIFIED)).isFalse();
+    }
+
+    @Test
+    void shouldIgnoreIfModifiedSinceWhenIfNoneMatchIsPresent() {
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions("\"a\"", LAST_MODIFIED, null), entityTag,
+                LAST_MODIFIED)).isFalse();
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions(null, LAST_MODIFIED - 123, null),
+                entityTag, LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isNotModified(new RequestConditions(null, LAST_MODIFIED - 1000, null),
+                entityTag, LAST_MODIFIED)).isFalse();
+    }
+
+    @Test
+    void shouldApplyRangeOnlyIfIfRangeValidatorIsCurrent() {
+        assertThat(httpCachePolicy.isRangeApplicable(RequestConditions.NONE, entityTag, LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isRangeApplicable(new RequestConditions(null, -1, entityTag), entityTag,
+                LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isRangeApplicable(new RequestConditions(null, -1, "W/" + entityTag),
+                entityTag, LAST_MODIFIED)).isFalse();
+        assertThat(httpCachePolicy.isRangeApplicable(new RequestConditions(null, -1, LAST_MODIFIED_DATE),
+                entityTag, LAST_MODIFIED)).isTrue();
+        assertThat(httpCachePolicy.isRangeApplicable(new RequestConditions(null, -1, "yesterday"), entityTag,
+                LAST_MODIFIED)).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+package video.stream.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import video.stream.application.content.RangeSet;
+
+public class RangeHeaderParserTest {
+
+    private final static int MAX_SPECS = 8;
+
+    private final RangeSet rangeSet = new RangeSet();
+
+    @Test
+    void shouldParseClosedOpenEndedAndSuffixRanges() {
+        RangeHeaderParser.parse("bytes=0-99, 500- ,\t-300", rangeSet, MAX_SPECS);
+
+        assertThat(rangeSet.size())
+                .isEqualTo(3);
+        assertThat(new long[] { rangeSet.getFirst(0), rangeSet.getLast(0) })
+                .containsExactly(0L, 99L);
+        assertThat(rangeSet.isOpenEnded(1))
+                .isTrue();
+        assertThat(rangeSet.getFirst(1))
+                .isEqualTo(500L);
+        assertThat(rangeSet.isSuffix(2))
+                .isTrue();
+        assertThat(rangeSet.getLast(2))
+                .isEqualTo(300L);
+    }
+
+    @Test
+    void shouldReuseRangeSet() {
+        for (int i = 0; i < 10; i++) {
+            RangeHeaderParser.parse("bytes=0-1,2-3,4-5,6-7,8-9", rangeSet, MAX_SPECS);
+        }
+        RangeHeaderParser.parse("bytes=" + Long.MAX_VALUE + "-", rangeSet, MAX_SPECS);
+
+        assertThat(rangeSet.size())
+                .isEqualTo(1);
+        assertThat(rangeSet.getFirst(0))
+                .isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldRejectValueOverflowingLong() {
+        assertThatThrownBy(() -> RangeHeaderParser.parse("bytes=9223372036854775808-", rangeSet, MAX_SPECS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+    }
+
+    @Test
+    void shouldRejectMalformedRanges() {
+        for (String range : new String[] { "bytes=", "bytes=-", "bytes=1-2,", "bytes=1 2-3", "bytes=1-2-3",
+                "bytes=+1-2", "bytes=1-2;3-4", "bytes=١-2", "Bytes=1-2" }) {
+            assertThatThrownBy(() -> RangeHeaderParser.parse(range, rangeSet, MAX_SPECS))
+                    .as(range)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+        }
+    }
+
+    @Test
+    void shouldAcceptUpToMaxSpecs() {
+        RangeHeaderParser.parse("bytes=0-1,2-3,4-5,6-7,8-9,10-11,12-13,14-15", rangeSet, MAX_SPECS);
+
+        assertThat(rangeSet.size())
+                .isEqualTo(MAX_SPECS);
+    }
+
+    @Test
+    void shouldRejectMoreThanMaxSpecs() {
+        StringBuilder range = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 10_000; i++) {
+            range.append(',').append(i).append('-').append(i);
+        }
+
+        assertThatThrownBy(() -> RangeHeaderParser.parse(range, rangeSet, MAX_SPECS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(VideoStreamService.TOO_MANY_RANGES_ERROR_MSG);
+        assertThat(rangeSet.size())
+                .isEqualTo(MAX_SPECS);
+    }
+}
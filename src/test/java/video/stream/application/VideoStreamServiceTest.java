@@ -4,10 +4,21 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -15,39 +26,154 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import video.stream.application.exception.FileOperationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import video.stream.application.content.BandwidthLimiter;
+import video.stream.application.content.ChunkSizePolicy;
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.content.ReadAheadPrefetcher;
+import video.stream.application.feign.VideoPathCache;
 import video.stream.application.feign.VideoServiceFeign;
 import video.stream.application.feign.dto.VideoPath;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileFixtures;
+import video.stream.application.file.FileMetadataCache;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+import video.stream.application.mp4.Mp4FileBuilder;
+import video.stream.application.mp4.KeyframeIndexCache;
+import video.stream.application.mp4.Mp4LayoutCache;
 
 @ExtendWith(MockitoExtension.class)
 public class VideoStreamServiceTest {
 
-    @InjectMocks
     private VideoStreamService videoStreamService;
+    private SimpleMeterRegistry meterRegistry;
+    private FileMetadataCache fileMetadataCache;
 
     @Mock
     private VideoServiceFeign videoServiceFeign;
 
-    private final static String FILE_PATH = "src/test/resources/testVideoFile.mp4";
     private final static Long FILE_SIZE = 56733888L;
+    private final static int FILE_CONTENT_SIZE = 4 * 1024 * 1024;
+    private final static int MAX_RANGE_SPECS = 100;
+    private final static int MAX_RANGE_PARTS = 16;
+    private final static Long LARGE_FILE_ID = 2L;
+    private final static Long MP4_FILE_ID = 3L;
+    private final static Long CHANGING_FILE_ID = 4L;
+    private final static Long UNKNOWN_FILE_ID = 5L;
+    private final static long LARGE_FILE_SIZE = 5L * 1024 * 1024 * 1024 + 123;
+    private final static byte[] MARKER = "moov".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path tempDir;
+    private Path filePath;
 
-    private void mockFilePath() {
+    private void mockFilePath() throws IOException {
+        filePath = tempDir.resolve("testVideoFile.mp4");
+        Random random = new Random(FILE_SIZE);
+        byte[] content = new byte[FILE_CONTENT_SIZE];
+        try (RandomAccessFile file = new RandomAccessFile(filePath.toFile(), "rw")) {
+            file.setLength(FILE_SIZE);
+            random.nextBytes(content);
+            file.write(content);
+            file.seek(FILE_SIZE - FILE_CONTENT_SIZE);
+            random.nextBytes(content);
+            file.write(content);
+        }
         when(videoServiceFeign.getVideoFilePath(Mockito.anyLong()))
-                .thenReturn(new VideoPath(FILE_PATH));
+                .thenReturn(new VideoPath(filePath.toString()));
+    }
+
+    private void mockLargeFilePath(long markerPosition) throws IOException {
+        Path largeFile = tempDir.resolve("largeVideoFile.mp4");
+        try (RandomAccessFile file = new RandomAccessFile(largeFile.toFile(), "rw")) {
+            file.setLength(LARGE_FILE_SIZE);
+            file.seek(markerPosition);
+            file.write(MARKER);
+        }
+        when(videoServiceFeign.getVideoFilePath(LARGE_FILE_ID))
+                .thenReturn(new VideoPath(largeFile.toString()));
+    }
+
+    private Mp4FileBuilder mockMp4FilePath() throws IOException {
+        return mockMp4FilePath(true);
+    }
+
+    private Mp4FileBuilder mockMp4FilePath(boolean moovAtEnd) throws IOException {
+        int[] sampleSizes = new int[5000];
+        Arrays.fill(sampleSizes, 10);
+        Mp4FileBuilder builder = new Mp4FileBuilder().sampleSizes(sampleSizes).moovAtEnd(moovAtEnd);
+        Path mp4File = builder.write(tempDir.resolve(moovAtEnd ? "moovAtEnd.mp4" : "faststart.mp4"));
+        when(videoServiceFeign.getVideoFilePath(MP4_FILE_ID))
+                .thenReturn(new VideoPath(mp4File.toString()));
+        return builder;
+    }
+
+    private byte[] readBody(ResponseEntity<ContentBody> response) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private byte[] readFile(long position, int length) throws IOException {
+        byte[] data = new byte[length];
+        try (RandomAccessFile file = new RandomAccessFile(filePath.toFile(), "r")) {
+            file.seek(position);
+            file.readFully(data);
+        }
+        return data;
+    }
+
+    private byte[] prepareMultipartBody(String boundary, long... ranges) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < ranges.length; i += 2) {
+            outputStream.write(("--" + boundary + "\r\n"
+                    + "Content-Type: " + VideoStreamService.CONTENT_TYPE_PROPERTY + "\r\n"
+                    + "Content-Range: bytes " + ranges[i] + "-" + ranges[i + 1] + "/" + FILE_SIZE + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(readFile(ranges[i], (int) (ranges[i + 1] - ranges[i] + 1)));
+            outputStream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        outputStream.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return outputStream.toByteArray();
     }
 
     @BeforeEach
-    public void setUp() {
+    public void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        StreamMetrics streamMetrics = new StreamMetrics(meterRegistry, 100);
+        ChunkCache chunkCache = new ChunkCache(true, 16 * 1024 * 1024, 64 * 1024, 1);
+        FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+        LocalDiskTier localDiskTier = new LocalDiskTier(false, "", 0, 64 * 1024, 0, 1, 1, fileChannelPool);
+        fileMetadataCache = new FileMetadataCache(100, Duration.ofSeconds(5));
+        videoStreamService = new VideoStreamService(
+                new VideoPathCache(videoServiceFeign, 100, Duration.ofMinutes(10), Duration.ofMinutes(8)),
+                fileMetadataCache,
+                new ChunkSizePolicy(VideoStreamService.BYTE_RANGE, 10 * VideoStreamService.BYTE_RANGE,
+                        Duration.ofSeconds(2)),
+                new FileRegionWriter(chunkCache, fileChannelPool, localDiskTier, streamMetrics),
+                new ReadAheadPrefetcher(false, 2, 1024 * 1024, 1, 1, chunkCache, fileChannelPool, localDiskTier,
+                        streamMetrics),
+                new Mp4LayoutCache(true, 32 * 1024 * 1024, 128 * 1024 * 1024, fileChannelPool),
+                new KeyframeIndexCache(64 * 1024 * 1024, fileChannelPool),
+                new HttpCachePolicy("public, max-age=3600"),
+                new BandwidthLimiter(0, 0, 1024 * 1024, 64 * 1024, streamMetrics),
+                streamMetrics,
+                MAX_RANGE_SPECS,
+                MAX_RANGE_PARTS);
         mockFilePath();
     }
 
     @Test
-    void shouldPrepareContentForInitRange() throws FileOperationException {
-        ResponseEntity<byte[]> response = videoStreamService.prepareContent("bytes=0-", 1L);
+    void shouldPrepareContentForInitRange() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=0-", 1L);
 
         assertThat(response.getStatusCode())
                 .isEqualTo(HttpStatus.PARTIAL_CONTENT);
-        assertThat(response.getBody().length)
+        assertThat(readBody(response).length)
                 .isEqualTo(VideoStreamService.INIT_BYTE_RANGE + 1);
         assertThat(response.getHeaders().getContentType().toString())
                 .isEqualTo(VideoStreamService.CONTENT_TYPE_PROPERTY);
@@ -60,12 +186,43 @@ public class VideoStreamServiceTest {
     }
 
     @Test
-    void shouldPrepareContentForMiddleRange() throws FileOperationException {
-        ResponseEntity<byte[]> response = videoStreamService.prepareContent("bytes=178000-", 1L);
+    void shouldPrepareFaststartHeaderForInitRangeOfMp4WithMoovAtEnd() throws IOException {
+        Mp4FileBuilder builder = mockMp4FilePath();
+        long headerSize = builder.getSampleOffset(0) - 8 + builder.getMoovSize();
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=0-", MP4_FILE_ID);
+        byte[] body = readBody(response);
+
+        assertThat(builder.getMoovSize())
+                .isGreaterThan((int) VideoStreamService.INIT_BYTE_RANGE);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-" + (headerSize - 1) + "/" + (builder.getMoovPosition() + builder.getMoovSize()));
+        assertThat(new String(body, (int) headerSize - builder.getMoovSize() + 4, 4, StandardCharsets.US_ASCII))
+                .isEqualTo("moov");
+    }
+
+    @Test
+    void shouldPrepareInitRangeForMp4WithMoovInFront() throws IOException {
+        Mp4FileBuilder builder = mockMp4FilePath(false);
+        long fileSize = builder.getSampleOffset(4999) + 10;
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=0-", MP4_FILE_ID);
+
+        assertThat(builder.getMoovSize())
+                .isGreaterThan((int) VideoStreamService.INIT_BYTE_RANGE);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-" + VideoStreamService.INIT_BYTE_RANGE + "/" + fileSize);
+        assertThat(readBody(response).length)
+                .isEqualTo(VideoStreamService.INIT_BYTE_RANGE + 1);
+    }
+
+    @Test
+    void shouldPrepareContentForMiddleRange() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=178000-", 1L);
 
         assertThat(response.getStatusCode())
                 .isEqualTo(HttpStatus.PARTIAL_CONTENT);
-        assertThat(response.getBody().length)
+        assertThat(readBody(response).length)
                 .isEqualTo(VideoStreamService.BYTE_RANGE + 1);
         assertThat(response.getHeaders().getContentType().toString())
                 .isEqualTo(VideoStreamService.CONTENT_TYPE_PROPERTY);
@@ -78,14 +235,14 @@ public class VideoStreamServiceTest {
     }
 
     @Test
-    void shouldPrepareContentForLastRange() throws FileOperationException {
+    void shouldPrepareContentForLastRange() throws IOException {
         final long lastRange = FILE_SIZE - VideoStreamService.BYTE_RANGE + 1000;
 
-        ResponseEntity<byte[]> response = videoStreamService.prepareContent("bytes=" + lastRange + "-", 1L);
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=" + lastRange + "-", 1L);
 
         assertThat(response.getStatusCode())
                 .isEqualTo(HttpStatus.PARTIAL_CONTENT);
-        assertThat(response.getBody().length)
+        assertThat(readBody(response).length)
                 .isEqualTo(FILE_SIZE - lastRange);
         assertThat(response.getHeaders().getContentType().toString())
                 .isEqualTo(VideoStreamService.CONTENT_TYPE_PROPERTY);
@@ -97,6 +254,197 @@ public class VideoStreamServiceTest {
                 .isEqualTo("bytes " + lastRange + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE);
     }
 
+    @Test
+    void shouldStreamRequestedBytesOfFile() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=178000-", 1L);
+
+        assertThat(response.getBody().getContentLength())
+                .isEqualTo(VideoStreamService.BYTE_RANGE + 1);
+        assertThat(readBody(response))
+                .isEqualTo(readFile(178000, (int) VideoStreamService.BYTE_RANGE + 1));
+    }
+
+    @Test
+    void shouldPrepareContentForRangeOfFileLargerThan4GB() throws IOException {
+        final long rangeStart = 4L * 1024 * 1024 * 1024 + 500_000_000L;
+        mockLargeFilePath(rangeStart);
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=" + rangeStart + "-",
+                LARGE_FILE_ID);
+        byte[] body = readBody(response);
+
+        assertThat(body.length)
+                .isEqualTo(VideoStreamService.BYTE_RANGE + 1);
+        assertThat(body)
+                .startsWith(MARKER);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_LENGTH).get(0).toString())
+                .isEqualTo(String.valueOf(VideoStreamService.BYTE_RANGE + 1));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes " + rangeStart + "-" + (rangeStart + VideoStreamService.BYTE_RANGE) + "/"
+                        + LARGE_FILE_SIZE);
+    }
+
+    @Test
+    void shouldPrepareContentForLastRangeOfFileLargerThan4GB() throws IOException {
+        final long rangeStart = LARGE_FILE_SIZE - MARKER.length;
+        mockLargeFilePath(rangeStart);
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=" + rangeStart + "-",
+                LARGE_FILE_ID);
+
+        assertThat(readBody(response))
+                .isEqualTo(MARKER);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes " + rangeStart + "-" + (LARGE_FILE_SIZE - 1) + "/" + LARGE_FILE_SIZE);
+    }
+
+    @Test
+    void shouldPrepareContentForClosedRange() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=1000-2999999", 1L);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(readBody(response))
+                .isEqualTo(readFile(1000, 2999000));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_LENGTH).get(0).toString())
+                .isEqualTo("2999000");
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 1000-2999999/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldPrepareContentForClosedRangeEndingBeyondEndOfFile() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent(
+                "bytes=" + (FILE_SIZE - 10) + "-" + (FILE_SIZE + 1000), 1L);
+
+        assertThat(readBody(response).length)
+                .isEqualTo(10);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes " + (FILE_SIZE - 10) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldPrepareContentForSuffixRange() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=-500", 1L);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(readBody(response))
+                .isEqualTo(readFile(FILE_SIZE - 500, 500));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes " + (FILE_SIZE - 500) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldPrepareWholeFileForSuffixRangeLongerThanFile() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=-" + (FILE_SIZE + 1), 1L);
+
+        assertThat(response.getBody().getContentLength())
+                .isEqualTo(FILE_SIZE);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-" + (FILE_SIZE - 1) + "/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldRespondWithRangeNotSatisfiableIfRangeStartsBeyondEndOfFile() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=" + FILE_SIZE + "-", 1L);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes */" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldRespondWithRangeNotSatisfiableForEmptySuffixRange() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=-0", 1L);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    @Test
+    void shouldPrepareMultipartContentForSeveralRanges() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=5000-5999, 0-99", 1L);
+        String contentType = response.getHeaders().getContentType().toString();
+        String boundary = response.getHeaders().getContentType().getParameter("boundary");
+        byte[] body = readBody(response);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(contentType)
+                .startsWith("multipart/byteranges");
+        assertThat(body)
+                .isEqualTo(prepareMultipartBody(boundary, 0, 99, 5000, 5999));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_LENGTH).get(0).toString())
+                .isEqualTo(String.valueOf(body.length));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE))
+                .isNull();
+    }
+
+    @Test
+    void shouldCoalesceOverlappingAndAdjacentRanges() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=0-99,50-199,200-299",
+                1L);
+
+        assertThat(response.getHeaders().getContentType().toString())
+                .isEqualTo(VideoStreamService.CONTENT_TYPE_PROPERTY);
+        assertThat(readBody(response))
+                .isEqualTo(readFile(0, 300));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-299/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldSkipUnsatisfiableRangesOfSeveralRanges() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent(
+                "bytes=0-9," + (FILE_SIZE + 5) + "-", 1L);
+
+        assertThat(response.getStatusCode())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-9/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldMergeRangesIntoOneIfPartLimitIsExceeded() throws IOException {
+        StringBuilder range = new StringBuilder("bytes=");
+        for (int i = 0; i <= MAX_RANGE_PARTS; i++) {
+            range.append(i == 0 ? "" : ",").append(i * 100).append("-").append(i * 100 + 9);
+        }
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent(range.toString(), 1L);
+
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_RANGE).get(0).toString())
+                .isEqualTo("bytes 0-" + (MAX_RANGE_PARTS * 100 + 9) + "/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldThrowExceptionIfRangeHasTooManySpecs() {
+        StringBuilder range = new StringBuilder("bytes=");
+        for (int i = 0; i <= MAX_RANGE_SPECS; i++) {
+            range.append(i == 0 ? "" : ",").append(i).append("-").append(i);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> videoStreamService.prepareContent(range.toString(), 1L),
+                VideoStreamService.TOO_MANY_RANGES_ERROR_MSG);
+    }
+
+    @Test
+    void shouldThrowExceptionIfOneOfSeveralRangesIsInvalid() {
+        assertThrows(IllegalArgumentException.class,
+                () -> videoStreamService.prepareContent("bytes=0-99,abc-", 1L),
+                VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+    }
+
+    @Test
+    void shouldThrowExceptionIfRangeEndIsBeforeRangeStart() {
+        assertThrows(IllegalArgumentException.class,
+                () -> videoStreamService.prepareContent("bytes=500-100", 1L),
+                VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
+    }
+
     @Test
     void shouldThrowExceptionIfRangeHasInvalidPrefix() {
         assertThrows(IllegalArgumentException.class,
@@ -131,4 +479,144 @@ public class VideoStreamServiceTest {
                 () -> videoStreamService.prepareContent("bytes=123-123-123", 1L),
                 VideoStreamService.WRONG_RANGE_ARG_ERROR_MSG);
     }
+
+    @Test
+    void shouldStreamFromKeyframeBeforeSeekTime() throws IOException {
+        Mp4FileBuilder builder = mockMp4FilePath();
+        long keyframeOffset = builder.getSampleOffset(4) + builder.getMoovSize();
+        long fileSize = builder.getMoovPosition() + builder.getMoovSize();
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareSeekContent(1.0, MP4_FILE_ID);
+        byte[] body = readBody(response);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(206);
+        assertThat(response.getHeaders().getFirst(VideoStreamService.KEYFRAME_TIME_HEADER)).isEqualTo("0.16");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes " + keyframeOffset + "-" + (fileSize - 1) + "/" + fileSize);
+        assertThat(body[0]).isEqualTo(Mp4FileBuilder.sampleByte(4));
+    }
+
+    @Test
+    void shouldThrowExceptionIfSeekTimeIsNegative() {
+        assertThrows(IllegalArgumentException.class,
+                () -> videoStreamService.prepareSeekContent(-1.0, 1L),
+                VideoStreamService.WRONG_TIME_ARG_ERROR_MSG);
+    }
+
+    @Test
+    void shouldThrowExceptionIfVideoIsNotSeekable() {
+        assertThrows(IllegalArgumentException.class,
+                () -> videoStreamService.prepareSeekContent(1.0, 1L),
+                VideoStreamService.NOT_SEEKABLE_ERROR_MSG);
+    }
+
+    @Test
+    void shouldAddValidatorsAndCacheDirectivesToRanges() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=1000-1999", 1L);
+
+        assertThat(response.getHeaders().getETag()).startsWith("\"").endsWith("\"");
+        assertThat(response.getHeaders().getLastModified()).isPositive();
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("public, max-age=3600");
+    }
+
+    @Test
+    void shouldServeRepeatedRangesFromProxyAfterRevalidation() throws IOException {
+        CachingProxyStandIn proxy = new CachingProxyStandIn();
+
+        byte[] first = proxy.get("bytes=1000-1999",
+                conditions -> videoStreamService.prepareContent("bytes=1000-1999", conditions, 1L));
+        byte[] second = proxy.get("bytes=1000-1999",
+                conditions -> videoStreamService.prepareContent("bytes=1000-1999", conditions, 1L));
+
+        assertThat(second).isEqualTo(first).isEqualTo(readFile(1000, 1000));
+        assertThat(proxy.getOriginBytes()).isEqualTo(1000L);
+        assertThat(proxy.getRevalidations()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRefetchRangeThroughProxyWhenFileChanges() throws IOException {
+        Path file = Files.write(tempDir.resolve("changing.mp4"), new byte[] { 1, 2, 3, 4 });
+        CachingProxyStandIn proxy = new CachingProxyStandIn();
+        when(videoServiceFeign.getVideoFilePath(CHANGING_FILE_ID))
+                .thenReturn(new VideoPath(file.toString()));
+        CachingProxyStandIn.Origin origin = conditions -> videoStreamService.prepareContent("bytes=0-3",
+                conditions, CHANGING_FILE_ID);
+
+        proxy.get("bytes=0-3", origin);
+        Files.write(file, new byte[] { 5, 6, 7, 8 });
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+        fileMetadataCache.invalidate(file);
+
+        assertThat(proxy.get("bytes=0-3", origin)).containsExactly(5, 6, 7, 8);
+        assertThat(proxy.getRevalidations()).isZero();
+    }
+
+    @Test
+    void shouldRespondNotModifiedIfModifiedSinceLastModification() throws IOException {
+        long lastModified = videoStreamService.prepareContent("bytes=0-", 1L).getHeaders().getLastModified();
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=0-",
+                new RequestConditions(null, lastModified, null), 1L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isNotNull();
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    void shouldServeRangeIfIfRangeMatchesCurrentVersion() throws IOException {
+        String entityTag = videoStreamService.prepareContent("bytes=0-", 1L).getHeaders().getETag();
+
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=1000-1999",
+                new RequestConditions(null, -1, entityTag), 1L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 1000-1999/" + FILE_SIZE);
+    }
+
+    @Test
+    void shouldServeWholeFileIfIfRangeValidatorIsStale() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=1000-1999",
+                new RequestConditions(null, -1, "\"stale\""), 1L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH)).isEqualTo(String.valueOf(FILE_SIZE));
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getBody().getContentLength()).isEqualTo(FILE_SIZE);
+    }
+
+    @Test
+    void shouldRecordStreamMetrics() throws IOException {
+        ResponseEntity<ContentBody> response = videoStreamService.prepareContent("bytes=1000-1999", 1L);
+        readBody(response);
+
+        assertThat(meterRegistry.get(StreamMetrics.REQUESTS_COUNTER).tag("video", "1").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get(StreamMetrics.RANGE_SIZE_SUMMARY).summary().totalAmount())
+                .isEqualTo(1000.0);
+        assertThat(meterRegistry.get(StreamMetrics.BYTES_SERVED_COUNTER).counter().count())
+                .isEqualTo(1000.0);
+        for (StreamMetrics.Stage stage : new StreamMetrics.Stage[] { StreamMetrics.Stage.PATH_RESOLUTION,
+                StreamMetrics.Stage.FILE_METADATA, StreamMetrics.Stage.FILE_OPEN, StreamMetrics.Stage.WRITE }) {
+            assertThat(meterRegistry.get(StreamMetrics.STAGE_TIMER).tag("stage", stage.getTagValue()).timer().count())
+                    .as(stage.name())
+                    .isEqualTo(1L);
+        }
+    }
+
+    @Test
+    void shouldNotRecordRequestForVideoWithoutPath() throws IOException {
+        when(videoServiceFeign.getVideoFilePath(UNKNOWN_FILE_ID))
+                .thenThrow(new IllegalStateException("Unknown video"));
+
+        assertThrows(IllegalStateException.class,
+                () -> videoStreamService.prepareContent("bytes=0-", UNKNOWN_FILE_ID));
+        readBody(videoStreamService.prepareContent("bytes=0-", 1L));
+
+        assertThat(meterRegistry.find(StreamMetrics.REQUESTS_COUNTER).tag("video", "5").counter())
+                .isNull();
+        assertThat(meterRegistry.get(StreamMetrics.REQUESTS_COUNTER).tag("video", "1").counter().count())
+                .isEqualTo(1.0);
+    }
 }
@@ -0,0 +1,118 @@
+package video.stream.application.content;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.stream.application.metrics.StreamMetrics;
+
+public class BandwidthLimiterTest {
+
+    private final static long RATE = 1024 * 1024;
+    private final static int QUANTUM = 64 * 1024;
+    private final static long QUANTUM_NANOS = TimeUnit.SECONDS.toNanos(1) * QUANTUM / RATE;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private StreamMetrics streamMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        streamMetrics = new StreamMetrics(meterRegistry, 10);
+    }
+
+    private BandwidthLimiter.Pacer pacer(BandwidthLimiter bandwidthLimiter, String clientId) {
+        return ((ShapedContentBody) bandwidthLimiter.shape(new ByteArrayRegion(new byte[0], 0, 0), clientId))
+                .getPacer();
+    }
+
+    @Test
+    void shouldNotShapeBodiesIfNoLimitIsSet() {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(0, 0, QUANTUM, QUANTUM, streamMetrics, nanos::get);
+        ContentBody body = new ByteArrayRegion(new byte[10], 0, 10);
+
+        assertThat(bandwidthLimiter.isEnabled()).isFalse();
+        assertThat(bandwidthLimiter.shape(body, "client")).isSameAs(body);
+    }
+
+    @Test
+    void shouldLetBurstThroughAndPaceTheRest() {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(RATE, 0, 4 * QUANTUM, QUANTUM, streamMetrics,
+                nanos::get);
+        BandwidthLimiter.Pacer pacer = pacer(bandwidthLimiter, "client");
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(pacer.reserve(QUANTUM)).isZero();
+        }
+        assertThat(pacer.reserve(QUANTUM)).isEqualTo(QUANTUM_NANOS);
+        nanos.addAndGet(QUANTUM_NANOS);
+        assertThat(pacer.reserve(QUANTUM)).isEqualTo(QUANTUM_NANOS);
+    }
+
+    @Test
+    void shouldLimitEachClientSeparately() {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(RATE, 0, QUANTUM, QUANTUM, streamMetrics,
+                nanos::get);
+
+        pacer(bandwidthLimiter, "first").reserve(QUANTUM);
+
+        assertThat(pacer(bandwidthLimiter, "first").reserve(QUANTUM)).isEqualTo(QUANTUM_NANOS);
+        assertThat(pacer(bandwidthLimiter, "second").reserve(QUANTUM)).isZero();
+    }
+
+    @Test
+    void shouldShareGlobalRateBetweenStreamsInTurns() {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(0, RATE, 0, QUANTUM, streamMetrics, nanos::get);
+        BandwidthLimiter.Pacer first = pacer(bandwidthLimiter, "first");
+        BandwidthLimiter.Pacer second = pacer(bandwidthLimiter, "second");
+
+        long[] firstWaits = new long[3];
+        long[] secondWaits = new long[3];
+        for (int i = 0; i < 3; i++) {
+            firstWaits[i] = first.reserve(QUANTUM);
+            secondWaits[i] = second.reserve(QUANTUM);
+        }
+
+        assertThat(firstWaits).containsExactly(QUANTUM_NANOS, 3 * QUANTUM_NANOS, 5 * QUANTUM_NANOS);
+        assertThat(secondWaits).containsExactly(2 * QUANTUM_NANOS, 4 * QUANTUM_NANOS, 6 * QUANTUM_NANOS);
+    }
+
+    @Test
+    void shouldRecordThrottledBytesOfLimitThatDelayedThem() {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(RATE, 2 * RATE, 0, QUANTUM, streamMetrics,
+                nanos::get);
+
+        pacer(bandwidthLimiter, "client").reserve(QUANTUM);
+
+        assertThat(meterRegistry.get(StreamMetrics.THROTTLED_BYTES_COUNTER).tag("limit", "client").counter()
+                .count()).isEqualTo(QUANTUM);
+        assertThat(meterRegistry.get(StreamMetrics.THROTTLED_BYTES_COUNTER).tag("limit", "global").counter()
+                .count()).isZero();
+    }
+
+    @Test
+    void shouldPaceWritesOfShapedBody() throws IOException {
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(RATE, 0, QUANTUM, QUANTUM, streamMetrics,
+                Ticker.systemTicker());
+        byte[] data = new byte[4 * QUANTUM];
+        data[data.length - 1] = 1;
+        ContentBody body = bandwidthLimiter.shape(new ByteArrayRegion(data, 0, data.length), "client");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long startTime = System.nanoTime();
+        body.writeTo(outputStream);
+
+        assertThat(System.nanoTime() - startTime).isGreaterThanOrEqualTo(3 * QUANTUM_NANOS);
+        assertThat(outputStream.toByteArray()).isEqualTo(data);
+    }
+}
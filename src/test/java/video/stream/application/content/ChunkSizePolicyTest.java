@@ -0,0 +1,59 @@
+package video.stream.application.content;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ChunkSizePolicyTest {
+
+    private final static long MIN_CHUNK_SIZE = 280_000L;
+    private final static long MAX_CHUNK_SIZE = 4_000_000L;
+    private final static long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private ChunkSizePolicy chunkSizePolicy;
+
+    @BeforeEach
+    public void setUp() {
+        chunkSizePolicy = new ChunkSizePolicy(MIN_CHUNK_SIZE, MAX_CHUNK_SIZE, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void shouldUseMinChunkSizeForClientWithoutHistory() {
+        assertThat(chunkSizePolicy.getChunkSize("client"))
+                .isEqualTo(MIN_CHUNK_SIZE);
+    }
+
+    @Test
+    void shouldSizeChunkFromObservedThroughput() {
+        chunkSizePolicy.recordTransfer("client", 1_000_000L, ONE_SECOND);
+
+        assertThat(chunkSizePolicy.getChunkSize("client"))
+                .isEqualTo(2_000_000L);
+        assertThat(chunkSizePolicy.getChunkSize("other"))
+                .isEqualTo(MIN_CHUNK_SIZE);
+    }
+
+    @Test
+    void shouldSmoothThroughputSamples() {
+        chunkSizePolicy.recordTransfer("client", 1_000_000L, ONE_SECOND);
+        chunkSizePolicy.recordTransfer("client", 500_000L, ONE_SECOND);
+
+        assertThat(chunkSizePolicy.getChunkSize("client"))
+                .isEqualTo(1_700_000L);
+    }
+
+    @Test
+    void shouldKeepChunkSizeWithinBounds() {
+        chunkSizePolicy.recordTransfer("fast", 100_000_000L, ONE_SECOND);
+        chunkSizePolicy.recordTransfer("slow", 1_000L, ONE_SECOND);
+
+        assertThat(chunkSizePolicy.getChunkSize("fast"))
+                .isEqualTo(MAX_CHUNK_SIZE);
+        assertThat(chunkSizePolicy.getChunkSize("slow"))
+                .isEqualTo(MIN_CHUNK_SIZE);
+    }
+}
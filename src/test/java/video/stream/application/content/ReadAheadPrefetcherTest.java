@@ -0,0 +1,106 @@
+package video.stream.application.content;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.stream.application.file.ChunkCache;
+import video.stream.application.file.ChunkCache.BlockLoader;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileMetadata;
+import video.stream.application.file.LocalDiskTier;
+import video.stream.application.metrics.StreamMetrics;
+
+public class ReadAheadPrefetcherTest {
+
+    private final static int BLOCK_SIZE = 1024;
+    private final static long CHUNK_SIZE = 2 * BLOCK_SIZE;
+    private final static int FILE_SIZE = 20 * BLOCK_SIZE;
+    private final static BlockLoader FAILING_LOADER = (block, position) -> {
+        throw new IOException("Block " + position / BLOCK_SIZE + " was not prefetched.");
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChunkCache chunkCache;
+    private FileMetadata file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        chunkCache = new ChunkCache(true, FILE_SIZE, BLOCK_SIZE, Integer.MAX_VALUE);
+        Path path = Files.write(tempDir.resolve("video.mp4"), new byte[FILE_SIZE]);
+        file = new FileMetadata(path, FILE_SIZE, 1000L, null);
+    }
+
+    private ReadAheadPrefetcher createPrefetcher(int maxInFlightBytes) {
+        FileChannelPool fileChannelPool = new FileChannelPool(4, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        return new ReadAheadPrefetcher(true, 2, maxInFlightBytes, Runnable::run, chunkCache, fileChannelPool,
+                new LocalDiskTier(false, "", 0, BLOCK_SIZE, 0, 1, 1, fileChannelPool),
+                new StreamMetrics(meterRegistry, 10));
+    }
+
+    private boolean isCached(long blockIndex) {
+        try {
+            return chunkCache.getBlock(file, blockIndex, FAILING_LOADER) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Test
+    void shouldPrefetchNextChunkAfterFirstRequest() {
+        createPrefetcher(FILE_SIZE).onRangeRequested(file, "client", 0, BLOCK_SIZE - 1, CHUNK_SIZE);
+
+        assertThat(isCached(1) && isCached(2))
+                .isTrue();
+        assertThat(isCached(3))
+                .isFalse();
+    }
+
+    @Test
+    void shouldPrefetchSeveralChunksAheadOfSequentialRequests() {
+        ReadAheadPrefetcher prefetcher = createPrefetcher(FILE_SIZE);
+        prefetcher.onRangeRequested(file, "client", 0, BLOCK_SIZE - 1, CHUNK_SIZE);
+        prefetcher.onRangeRequested(file, "client", BLOCK_SIZE, 3 * BLOCK_SIZE - 1, CHUNK_SIZE);
+
+        assertThat(isCached(3) && isCached(4) && isCached(5) && isCached(6))
+                .isTrue();
+        assertThat(isCached(7))
+                .isFalse();
+        assertThat(meterRegistry.get(StreamMetrics.PREFETCHED_BYTES_COUNTER).counter().count())
+                .isEqualTo(6.0 * BLOCK_SIZE);
+    }
+
+    @Test
+    void shouldPrefetchOnlyNextChunkAfterSeek() {
+        ReadAheadPrefetcher prefetcher = createPrefetcher(FILE_SIZE);
+        prefetcher.onRangeRequested(file, "client", 0, BLOCK_SIZE - 1, CHUNK_SIZE);
+        prefetcher.onRangeRequested(file, "client", 10 * BLOCK_SIZE, 12 * BLOCK_SIZE - 1, CHUNK_SIZE);
+
+        assertThat(isCached(12) && isCached(13))
+                .isTrue();
+        assertThat(isCached(14))
+                .isFalse();
+    }
+
+    @Test
+    void shouldLimitPrefetchToInFlightCapacity() {
+        createPrefetcher(BLOCK_SIZE).onRangeRequested(file, "client", 0, BLOCK_SIZE - 1, CHUNK_SIZE);
+
+        assertThat(isCached(1))
+                .isTrue();
+        assertThat(isCached(2))
+                .isFalse();
+    }
+}
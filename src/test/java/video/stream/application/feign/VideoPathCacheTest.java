@@ -0,0 +1,130 @@
+package video.stream.application.feign;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import video.stream.application.feign.dto.VideoPath;
+
+public class VideoPathCacheTest {
+
+    private final static Duration EXPIRE_AFTER = Duration.ofMinutes(10);
+    private final static Duration REFRESH_AFTER = Duration.ofMinutes(8);
+    private final static int CONCURRENT_REQUESTS = 64;
+
+    private final Map<Long, AtomicInteger> upstreamCalls = new ConcurrentHashMap<>();
+    private final AtomicLong nanos = new AtomicLong();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(16);
+
+    private VideoPathCache videoPathCache;
+
+    private VideoPath getVideoFilePath(Long videoId) {
+        int call = upstreamCalls.computeIfAbsent(videoId, id -> new AtomicInteger()).incrementAndGet();
+        sleep(50);
+        return new VideoPath("/videos/" + videoId + "/" + call + ".mp4");
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int upstreamCalls(Long videoId) {
+        return upstreamCalls.getOrDefault(videoId, new AtomicInteger()).get();
+    }
+
+    private List<String> getPathsConcurrently(Long... videoIds) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            Long videoId = videoIds[i % videoIds.length];
+            Callable<String> request = () -> {
+                start.await();
+                return videoPathCache.getPath(videoId);
+            };
+            futures.add(executorService.submit(request));
+        }
+        start.countDown();
+        List<String> paths = new ArrayList<>();
+        for (Future<String> future : futures) {
+            paths.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return paths;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        videoPathCache = new VideoPathCache(this::getVideoFilePath, 100, EXPIRE_AFTER, REFRESH_AFTER,
+                nanos::get, Runnable::run);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void shouldCallUpstreamOncePerVideoUnderConcurrentLoad() throws Exception {
+        List<String> paths = getPathsConcurrently(1L, 2L);
+
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(1);
+        assertThat(upstreamCalls(2L))
+                .isEqualTo(1);
+        assertThat(paths)
+                .containsOnly("/videos/1/1.mp4", "/videos/2/1.mp4");
+    }
+
+    @Test
+    void shouldServeCachedPathWithinTtlWindow() throws Exception {
+        getPathsConcurrently(1L);
+        nanos.addAndGet(REFRESH_AFTER.toNanos() - 1);
+        getPathsConcurrently(1L);
+
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldRefreshPathAheadOfExpiration() throws Exception {
+        getPathsConcurrently(1L);
+        nanos.addAndGet(REFRESH_AFTER.toNanos() + 1);
+
+        assertThat(videoPathCache.getPath(1L))
+                .isEqualTo("/videos/1/1.mp4");
+        assertThat(getPathsConcurrently(1L))
+                .containsOnly("/videos/1/2.mp4");
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldCallUpstreamOnceAfterExpiration() throws Exception {
+        getPathsConcurrently(1L);
+        nanos.addAndGet(EXPIRE_AFTER.toNanos() + 1);
+
+        assertThat(getPathsConcurrently(1L))
+                .containsOnly("/videos/1/2.mp4");
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(2);
+    }
+}
@@ -0,0 +1,169 @@
+package video.stream.application.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import video.stream.application.file.ChunkCache.BlockLoader;
+
+public class ChunkCacheTest {
+
+    private final static int BLOCK_SIZE = 1024;
+    private final static long MAX_MEMORY = 4 * BLOCK_SIZE;
+    private final static FileMetadata FILE = new FileMetadata(Paths.get("video.mp4"), 10 * BLOCK_SIZE + 100,
+            1000L, "inode-1");
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    private ChunkCache chunkCache;
+
+    private final BlockLoader loader = (block, position) -> {
+        loads.incrementAndGet();
+        while (block.hasRemaining()) {
+            block.put((byte) (position / BLOCK_SIZE));
+        }
+    };
+
+    @BeforeEach
+    public void setUp() {
+        chunkCache = new ChunkCache(true, MAX_MEMORY, BLOCK_SIZE, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void shouldNotCacheBlockBeforeAdmissionThreshold() throws IOException {
+        assertThat(chunkCache.getBlock(FILE, 3, loader))
+                .isNull();
+        assertThat(loads.get())
+                .isEqualTo(0);
+    }
+
+    @Test
+    void shouldLoadBlockOnceAdmitted() throws IOException {
+        chunkCache.getBlock(FILE, 3, loader);
+        ByteBuffer block = chunkCache.getBlock(FILE, 3, loader);
+        chunkCache.getBlock(FILE, 3, loader);
+
+        assertThat(block.isDirect())
+                .isTrue();
+        assertThat(block.remaining())
+                .isEqualTo(BLOCK_SIZE);
+        assertThat(block.get(0))
+                .isEqualTo((byte) 3);
+        assertThat(loads.get())
+                .isEqualTo(1);
+        assertThat(chunkCache.getStats().hitCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldLoadLastBlockUpToEndOfFile() throws IOException {
+        chunkCache.getBlock(FILE, 10, loader);
+
+        assertThat(chunkCache.getBlock(FILE, 10, loader).remaining())
+                .isEqualTo(100);
+    }
+
+    @Test
+    void shouldReturnIndependentViewsOfBlock() throws IOException {
+        chunkCache.getBlock(FILE, 1, loader);
+        ByteBuffer first = chunkCache.getBlock(FILE, 1, loader);
+        first.position(500);
+
+        assertThat(chunkCache.getBlock(FILE, 1, loader).position())
+                .isEqualTo(0);
+    }
+
+    @Test
+    void shouldMissBlocksOfModifiedFile() throws IOException {
+        chunkCache.getBlock(FILE, 1, loader);
+        chunkCache.getBlock(FILE, 1, loader);
+        FileMetadata modifiedFile = new FileMetadata(FILE.getPath(), FILE.getSize(), 2000L, "inode-1");
+
+        assertThat(chunkCache.getBlock(modifiedFile, 1, loader))
+                .isNull();
+    }
+
+    @Test
+    void shouldKeepCachedBlocksWithinMemoryBudget() throws IOException {
+        for (int blockIndex = 0; blockIndex < 10; blockIndex++) {
+            chunkCache.getBlock(FILE, blockIndex, loader);
+            chunkCache.getBlock(FILE, blockIndex, loader);
+        }
+        chunkCache.cleanUp();
+
+        assertThat(chunkCache.getUsedMemory())
+                .isLessThanOrEqualTo(MAX_MEMORY);
+        assertThat(chunkCache.getStats().evictionCount())
+                .isGreaterThan(0);
+    }
+
+    @Test
+    void shouldShareReadOfBlockBetweenConcurrentRequests() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockLoader slowLoader = (block, position) -> {
+            reading.countDown();
+            awaitUninterruptibly(release);
+            loader.load(block, position);
+        };
+        chunkCache.getBlock(FILE, 2, slowLoader);
+
+        Future<ByteBuffer> first = executorService.submit(() -> chunkCache.getBlock(FILE, 2, slowLoader));
+        reading.await(5, TimeUnit.SECONDS);
+        Future<ByteBuffer> second = executorService.submit(() -> chunkCache.getBlock(FILE, 2, slowLoader));
+        chunkCache.prefetchBlock(FILE, 3, loader);
+        ByteBuffer otherBlock = chunkCache.getBlock(FILE, 3, loader);
+        release.countDown();
+
+        assertThat(otherBlock.get(0))
+                .isEqualTo((byte) 3);
+        assertThat(first.get(5, TimeUnit.SECONDS).get(0))
+                .isEqualTo((byte) 2);
+        assertThat(second.get(5, TimeUnit.SECONDS).get(0))
+                .isEqualTo((byte) 2);
+        assertThat(loads.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldReadBlockAgainAfterFailedRead() throws IOException {
+        chunkCache.getBlock(FILE, 4, loader);
+        BlockLoader failingLoader = (block, position) -> {
+            throw new IOException("Disk error");
+        };
+
+        assertThatThrownBy(() -> chunkCache.getBlock(FILE, 4, failingLoader))
+                .isInstanceOf(IOException.class);
+        chunkCache.prefetchBlock(FILE, 4, loader);
+
+        assertThat(chunkCache.getBlock(FILE, 4, loader).get(0))
+                .isEqualTo((byte) 4);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
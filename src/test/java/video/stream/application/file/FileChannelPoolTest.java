@@ -0,0 +1,138 @@
+package video.stream.application.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.stream.application.file.FileChannelPool.Lease;
+
+public class FileChannelPoolTest {
+
+    private final static Duration IDLE_TIMEOUT = Duration.ofSeconds(30);
+    private final static int MAX_OPEN_CHANNELS = 2;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private FileChannelPool fileChannelPool;
+
+    @BeforeEach
+    public void setUp() {
+        fileChannelPool = new FileChannelPool(MAX_OPEN_CHANNELS, IDLE_TIMEOUT, Duration.ofMillis(10), nanos::get);
+    }
+
+    private FileMetadata createFile(String name, long lastModified) throws IOException {
+        Path file = Files.write(tempDir.resolve(name), new byte[100]);
+        return new FileMetadata(file, 100, lastModified, null);
+    }
+
+    @Test
+    void shouldShareChannelBetweenLeases() throws IOException {
+        FileMetadata file = createFile("video.mp4", 1000L);
+
+        try (Lease first = fileChannelPool.acquire(file); Lease second = fileChannelPool.acquire(file)) {
+            assertThat(first.getChannel())
+                    .isSameAs(second.getChannel());
+        }
+        assertThat(fileChannelPool.getOpenChannels())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldCloseReplacedChannelOnceReleased() throws IOException {
+        FileMetadata file = createFile("video.mp4", 1000L);
+        FileMetadata replaced = new FileMetadata(file.getPath(), 100, 2000L, null);
+        Lease lease = fileChannelPool.acquire(file);
+        FileChannel channel = lease.getChannel();
+
+        try (Lease replacedLease = fileChannelPool.acquire(replaced)) {
+            assertThat(replacedLease.getChannel())
+                    .isNotSameAs(channel);
+            assertThat(channel.isOpen())
+                    .isTrue();
+            lease.close();
+            assertThat(channel.isOpen())
+                    .isFalse();
+        }
+    }
+
+    @Test
+    void shouldCloseIdleChannels() throws IOException {
+        FileMetadata file = createFile("video.mp4", 1000L);
+        FileChannel channel;
+        try (Lease lease = fileChannelPool.acquire(file)) {
+            channel = lease.getChannel();
+        }
+
+        nanos.addAndGet(IDLE_TIMEOUT.toNanos() + 1);
+        fileChannelPool.cleanUp();
+
+        assertThat(channel.isOpen())
+                .isFalse();
+        assertThat(fileChannelPool.getOpenChannels())
+                .isEqualTo(0);
+    }
+
+    @Test
+    void shouldEvictIdleChannelWhenDescriptorLimitIsReached() throws IOException {
+        FileMetadata first = createFile("first.mp4", 1000L);
+        FileMetadata second = createFile("second.mp4", 1000L);
+        FileMetadata third = createFile("third.mp4", 1000L);
+        FileChannel firstChannel;
+        try (Lease lease = fileChannelPool.acquire(first)) {
+            firstChannel = lease.getChannel();
+        }
+
+        try (Lease secondLease = fileChannelPool.acquire(second); Lease thirdLease = fileChannelPool.acquire(third)) {
+            assertThat(firstChannel.isOpen())
+                    .isFalse();
+            assertThat(fileChannelPool.getOpenChannels())
+                    .isEqualTo(MAX_OPEN_CHANNELS);
+        }
+    }
+
+    @Test
+    void shouldFailWhenAllChannelsAreInUse() throws IOException {
+        FileMetadata first = createFile("first.mp4", 1000L);
+        FileMetadata second = createFile("second.mp4", 1000L);
+        FileMetadata third = createFile("third.mp4", 1000L);
+
+        try (Lease firstLease = fileChannelPool.acquire(first); Lease secondLease = fileChannelPool.acquire(second)) {
+            assertThrows(IOException.class, () -> fileChannelPool.acquire(third));
+        }
+    }
+
+    @Test
+    void shouldOpenChannelOnceLeaseIsReleasedWhileWaiting() throws Exception {
+        FileChannelPool pool = new FileChannelPool(MAX_OPEN_CHANNELS, IDLE_TIMEOUT, Duration.ofSeconds(5), nanos::get);
+        FileMetadata first = createFile("first.mp4", 1000L);
+        FileMetadata second = createFile("second.mp4", 1000L);
+        FileMetadata third = createFile("third.mp4", 1000L);
+        Lease firstLease = pool.acquire(first);
+        FileChannel firstChannel = firstLease.getChannel();
+        CompletableFuture<Void> release = CompletableFuture.runAsync(firstLease::close,
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+
+        try (Lease secondLease = pool.acquire(second); Lease thirdLease = pool.acquire(third)) {
+            release.get();
+            assertThat(thirdLease.getChannel().isOpen())
+                    .isTrue();
+            assertThat(firstChannel.isOpen())
+                    .isFalse();
+        }
+    }
+}
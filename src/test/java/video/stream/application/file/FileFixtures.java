@@ -0,0 +1,37 @@
+package video.stream.application.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.metrics.StreamMetrics;
+
+/**
+ * File access set up the way the service does it, for tests of the classes
+ * reading the files.
+ */
+public final class FileFixtures {
+
+    private FileFixtures() {
+    }
+
+    public static FileChannelPool createFileChannelPool() {
+        return new FileChannelPool(16, Duration.ofSeconds(30), Duration.ofSeconds(1));
+    }
+
+    /**
+     * Writer reading straight from the file, with the chunk cache and the
+     * local disk tier disabled.
+     */
+    public static FileRegionWriter createFileRegionWriter(FileChannelPool fileChannelPool) {
+        return new FileRegionWriter(new ChunkCache(false, 1024, 1024, 1), fileChannelPool,
+                new LocalDiskTier(false, "", 0, 1024, 0, 1, 1, fileChannelPool),
+                new StreamMetrics(new SimpleMeterRegistry(), 10));
+    }
+
+    public static FileMetadata getMetadata(Path path) throws IOException {
+        return new FileMetadataCache(1, Duration.ofSeconds(5)).get(path);
+    }
+}
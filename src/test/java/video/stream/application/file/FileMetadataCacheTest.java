@@ -0,0 +1,103 @@
+package video.stream.application.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileMetadataCacheTest {
+
+    private final static Duration REVALIDATE_AFTER = Duration.ofSeconds(5);
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private FileMetadataCache fileMetadataCache;
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fileMetadataCache = new FileMetadataCache(10, REVALIDATE_AFTER, nanos::get, Runnable::run);
+        file = Files.write(tempDir.resolve("video.mp4"), new byte[100]);
+    }
+
+    private void replaceFile(int size) throws IOException {
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+    }
+
+    private void passRevalidationTime() {
+        nanos.addAndGet(REVALIDATE_AFTER.toNanos() + TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    void shouldReadFileAttributes() throws IOException {
+        FileMetadata metadata = fileMetadataCache.get(file);
+
+        assertThat(metadata.getPath())
+                .isEqualTo(file);
+        assertThat(metadata.getSize())
+                .isEqualTo(100);
+        assertThat(metadata.getLastModified())
+                .isEqualTo(Files.getLastModifiedTime(file).toMillis());
+    }
+
+    @Test
+    void shouldServeCachedMetadataBeforeRevalidation() throws IOException {
+        FileMetadata metadata = fileMetadataCache.get(file);
+        replaceFile(200);
+
+        assertThat(fileMetadataCache.get(file))
+                .isSameAs(metadata);
+    }
+
+    @Test
+    void shouldReplaceMetadataOfModifiedFileAfterRevalidation() throws IOException {
+        fileMetadataCache.get(file);
+        replaceFile(200);
+        passRevalidationTime();
+        fileMetadataCache.get(file);
+
+        assertThat(fileMetadataCache.get(file).getSize())
+                .isEqualTo(200);
+    }
+
+    @Test
+    void shouldKeepMetadataOfUnchangedFileAfterRevalidation() throws IOException {
+        FileMetadata metadata = fileMetadataCache.get(file);
+        passRevalidationTime();
+        fileMetadataCache.get(file);
+
+        assertThat(fileMetadataCache.get(file))
+                .isSameAs(metadata);
+    }
+
+    @Test
+    void shouldDropMetadataOfDeletedFileAfterRevalidation() throws IOException {
+        fileMetadataCache.get(file);
+        Files.delete(file);
+        passRevalidationTime();
+        fileMetadataCache.get(file);
+
+        assertThrows(NoSuchFileException.class, () -> fileMetadataCache.get(file));
+    }
+
+    @Test
+    void shouldThrowExceptionIfFileDoesNotExist() {
+        assertThrows(NoSuchFileException.class, () -> fileMetadataCache.get(tempDir.resolve("missing.mp4")));
+    }
+}
@@ -0,0 +1,248 @@
+package video.stream.application.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.stream.application.file.LocalDiskTier.ChannelSupplier;
+
+public class LocalDiskTierTest {
+
+    private final static int BLOCK_SIZE = 1024;
+    private final static int FILE_SIZE = 10 * BLOCK_SIZE + 100;
+    private final static ChannelSupplier UNAVAILABLE_ORIGIN = () -> {
+        throw new IOException("Origin is unavailable.");
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger originReads = new AtomicInteger();
+    private final FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+    private Path originDirectory;
+    private Path cacheDirectory;
+    private byte[] content;
+    private FileMetadata file;
+    private FileChannel originChannel;
+    private LocalDiskTier localDiskTier;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        originDirectory = Files.createDirectory(tempDir.resolve("origin"));
+        cacheDirectory = tempDir.resolve("cache");
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        file = writeOrigin("video.mp4", content);
+        originChannel = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+        localDiskTier = createTier(100 * BLOCK_SIZE, 1);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        localDiskTier.close();
+        originChannel.close();
+        fileChannelPool.close();
+    }
+
+    private LocalDiskTier createTier(long maxSize, int fillAheadBlocks) throws IOException {
+        LocalDiskTier tier = new LocalDiskTier(true, cacheDirectory, maxSize, BLOCK_SIZE, fillAheadBlocks,
+                Runnable::run, fileChannelPool, Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+        tier.start();
+        return tier;
+    }
+
+    private FileMetadata writeOrigin(String name, byte[] bytes) throws IOException {
+        Path path = Files.write(originDirectory.resolve(name), bytes);
+        return new FileMetadata(path, bytes.length, Files.getLastModifiedTime(path).toMillis(), null);
+    }
+
+    private FileChannel countingOrigin() {
+        originReads.incrementAndGet();
+        return originChannel;
+    }
+
+    private byte[] read(LocalDiskTier tier, FileMetadata file, ChannelSupplier origin, int position, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (LocalDiskTier.Lease lease = tier.open(file, origin)) {
+            lease.read(buffer, position);
+        }
+        return buffer.array();
+    }
+
+    private byte[] content(int position, int length) {
+        return Arrays.copyOfRange(content, position, position + length);
+    }
+
+    private long countCacheFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void shouldCopyBlocksReadFromOriginAndServeThemLocally() throws IOException {
+        assertThat(read(localDiskTier, file, this::countingOrigin, 100, 200))
+                .isEqualTo(content(100, 200));
+        assertThat(originReads.get())
+                .isEqualTo(1);
+
+        assertThat(read(localDiskTier, file, UNAVAILABLE_ORIGIN, 0, 2 * BLOCK_SIZE))
+                .isEqualTo(content(0, 2 * BLOCK_SIZE));
+        assertThat(localDiskTier.getUsedBytes())
+                .isEqualTo(2 * BLOCK_SIZE);
+        assertThatThrownBy(() -> read(localDiskTier, file, UNAVAILABLE_ORIGIN, 2 * BLOCK_SIZE, 1))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldTransferAcrossLocalAndOriginBlocks() throws IOException {
+        read(localDiskTier, file, this::countingOrigin, 0, 1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (LocalDiskTier.Lease lease = localDiskTier.open(file, this::countingOrigin)) {
+            lease.transferTo(BLOCK_SIZE / 2, FILE_SIZE - BLOCK_SIZE / 2, Channels.newChannel(outputStream));
+        }
+
+        assertThat(outputStream.toByteArray())
+                .isEqualTo(content(BLOCK_SIZE / 2, FILE_SIZE - BLOCK_SIZE / 2));
+        assertThat(localDiskTier.getUsedBytes())
+                .isEqualTo(FILE_SIZE);
+        assertThat(read(localDiskTier, file, UNAVAILABLE_ORIGIN, 0, FILE_SIZE))
+                .isEqualTo(content);
+    }
+
+    @Test
+    void shouldKeepCopiesAcrossRestarts() throws IOException {
+        read(localDiskTier, file, this::countingOrigin, 9 * BLOCK_SIZE, 1);
+        localDiskTier.close();
+
+        localDiskTier = createTier(100 * BLOCK_SIZE, 1);
+
+        assertThat(localDiskTier.getUsedBytes())
+                .isEqualTo(BLOCK_SIZE + 100);
+        assertThat(read(localDiskTier, file, UNAVAILABLE_ORIGIN, 9 * BLOCK_SIZE, BLOCK_SIZE + 100))
+                .isEqualTo(content(9 * BLOCK_SIZE, BLOCK_SIZE + 100));
+    }
+
+    @Test
+    void shouldDropCopyOfReplacedOrigin() throws IOException {
+        read(localDiskTier, file, this::countingOrigin, 0, 1);
+        FileMetadata replaced = new FileMetadata(file.getPath(), file.getSize(), file.getLastModified() + 1000,
+                null);
+
+        assertThat(read(localDiskTier, replaced, this::countingOrigin, 0, 1))
+                .isEqualTo(content(0, 1));
+        assertThat(originReads.get())
+                .isEqualTo(2);
+        assertThat(localDiskTier.getCachedFiles())
+                .isEqualTo(1);
+        assertThat(countCacheFiles())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepFilesOfNewCopyWhenRetiredCopyOfSameVersionIsReleased() throws IOException {
+        FileMetadata replaced = new FileMetadata(file.getPath(), FILE_SIZE, file.getLastModified() + 1000, null);
+        LocalDiskTier.Lease held = localDiskTier.open(file, this::countingOrigin);
+        held.read(ByteBuffer.allocate(BLOCK_SIZE), 0);
+        localDiskTier.open(replaced, this::countingOrigin).close();
+
+        assertThat(read(localDiskTier, file, this::countingOrigin, 0, BLOCK_SIZE))
+                .isEqualTo(content(0, BLOCK_SIZE));
+        held.close();
+
+        assertThat(countCacheFiles())
+                .isEqualTo(2);
+        assertThat(read(localDiskTier, file, UNAVAILABLE_ORIGIN, 0, BLOCK_SIZE))
+                .isEqualTo(content(0, BLOCK_SIZE));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedCopyWhenOverBudget() throws IOException {
+        localDiskTier.close();
+        localDiskTier = createTier(2 * BLOCK_SIZE, 0);
+        FileMetadata other = writeOrigin("other.mp4", content(0, BLOCK_SIZE));
+        read(localDiskTier, file, this::countingOrigin, 0, 2 * BLOCK_SIZE);
+
+        try (FileChannel otherChannel = FileChannel.open(other.getPath(), StandardOpenOption.READ)) {
+            read(localDiskTier, other, () -> otherChannel, 0, BLOCK_SIZE);
+        }
+
+        assertThat(localDiskTier.getUsedBytes())
+                .isEqualTo(BLOCK_SIZE);
+        assertThat(localDiskTier.getCachedFiles())
+                .isEqualTo(1);
+        assertThat(read(localDiskTier, other, UNAVAILABLE_ORIGIN, 0, BLOCK_SIZE))
+                .isEqualTo(content(0, BLOCK_SIZE));
+        assertThat(countCacheFiles())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldServeConcurrentReadsOfSeveralFilesWithinBudget() throws Exception {
+        localDiskTier.close();
+        ExecutorService fillExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        localDiskTier = new LocalDiskTier(true, cacheDirectory, 12 * BLOCK_SIZE, BLOCK_SIZE, 2, fillExecutor,
+                fileChannelPool, Clock.systemUTC());
+        localDiskTier.start();
+        FileMetadata[] files = new FileMetadata[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = writeOrigin("video-" + i + ".mp4", content);
+        }
+        try {
+            List<Future<?>> reads = new ArrayList<>();
+            for (int reader = 0; reader < 8; reader++) {
+                Random random = new Random(reader);
+                reads.add(readers.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        FileMetadata target = files[random.nextInt(files.length)];
+                        int position = random.nextInt(FILE_SIZE - BLOCK_SIZE);
+                        try (FileChannel channel = FileChannel.open(target.getPath(), StandardOpenOption.READ)) {
+                            assertThat(read(localDiskTier, target, () -> channel, position, BLOCK_SIZE))
+                                    .isEqualTo(content(position, BLOCK_SIZE));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> read : reads) {
+                read.get();
+            }
+        } finally {
+            readers.shutdown();
+            fillExecutor.shutdown();
+            fillExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(localDiskTier.getUsedBytes())
+                .isBetween(0L, 12L * BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,182 @@
+package video.stream.application.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private final static int INITIAL_LIMIT = 10;
+    private final static int MIN_LIMIT = 2;
+    private final static int MAX_LIMIT = 100;
+
+    private long now;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    public void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter(true, INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT, 1.5, 0.2, 0.5,
+                Duration.ofSeconds(1), () -> now);
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> acquire(int count, boolean playbackStart) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.tryAcquire(playbackStart));
+        }
+        return permits;
+    }
+
+    /**
+     * Serves a batch of requests filling the current limit, each taking
+     * {@code rttMillis}.
+     */
+    private void serveBatch(long rttMillis) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter.getLimit(), false);
+        now += TimeUnit.MILLISECONDS.toNanos(rttMillis);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::succeeded);
+    }
+
+    @Test
+    void shouldRejectRequestsOverLimit() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(INITIAL_LIMIT, false);
+
+        assertThat(permits)
+                .doesNotContainNull();
+        assertThat(limiter.tryAcquire(false))
+                .isNull();
+        assertThat(limiter.getInFlight())
+                .isEqualTo(INITIAL_LIMIT);
+        assertThat(limiter.getRejectedContinuations())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldReserveLimitForStreamsInProgress() {
+        List<AdaptiveConcurrencyLimiter.Permit> starts = acquire(INITIAL_LIMIT / 2, true);
+
+        assertThat(starts)
+                .doesNotContainNull();
+        assertThat(limiter.tryAcquire(true))
+                .isNull();
+        assertThat(acquire(INITIAL_LIMIT / 2, false))
+                .doesNotContainNull();
+        assertThat(limiter.getRejectedStarts())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectStartsWhenStreamsInProgressUseLimit() {
+        acquire(INITIAL_LIMIT, false);
+
+        assertThat(limiter.tryAcquire(true))
+                .isNull();
+        assertThat(limiter.getRejectedStarts())
+                .isEqualTo(1);
+        assertThat(limiter.getInFlight())
+                .isEqualTo(INITIAL_LIMIT);
+    }
+
+    @Test
+    void shouldReleaseSlotOnce() {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(true);
+
+        permit.ignored();
+        permit.succeeded();
+
+        assertThat(limiter.getInFlight())
+                .isZero();
+        assertThat(acquire(INITIAL_LIMIT / 2, true))
+                .doesNotContainNull();
+    }
+
+    @Test
+    void shouldRaiseLimitWhileLatencyIsSteady() {
+        for (int i = 0; i < 20; i++) {
+            serveBatch(10);
+        }
+
+        assertThat(limiter.getLimit())
+                .isGreaterThan(INITIAL_LIMIT);
+    }
+
+    @Test
+    void shouldNotRaiseLimitWhenLimitIsNotUsed() {
+        for (int i = 0; i < 20; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(false);
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            permit.succeeded();
+        }
+
+        assertThat(limiter.getLimit())
+                .isEqualTo(INITIAL_LIMIT);
+    }
+
+    @Test
+    void shouldLowerLimitWhenLatencyRises() {
+        for (int i = 0; i < 20; i++) {
+            serveBatch(10);
+        }
+        int steadyLimit = limiter.getLimit();
+
+        for (int i = 0; i < 5; i++) {
+            serveBatch(200);
+        }
+
+        assertThat(limiter.getLimit())
+                .isLessThan(steadyLimit)
+                .isGreaterThanOrEqualTo(MIN_LIMIT);
+    }
+
+    @Test
+    void shouldSampleLatencyUntilBodyStarts() {
+        for (int i = 0; i < 20; i++) {
+            serveBatch(10);
+        }
+        int steadyLimit = limiter.getLimit();
+
+        for (int i = 0; i < 5; i++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter.getLimit(), false);
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::bodyStarted);
+            now += TimeUnit.SECONDS.toNanos(2);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::succeeded);
+        }
+
+        assertThat(limiter.getLimit())
+                .isGreaterThanOrEqualTo(steadyLimit);
+    }
+
+    @Test
+    void shouldBackOffOnDroppedRequests() {
+        acquire(2, false).forEach(AdaptiveConcurrencyLimiter.Permit::dropped);
+
+        assertThat(limiter.getLimit())
+                .isEqualTo(8);
+        assertThat(limiter.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    void shouldKeepLimitWithinBounds() {
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(false).dropped();
+        }
+
+        assertThat(limiter.getLimit())
+                .isEqualTo(MIN_LIMIT);
+
+        for (int i = 0; i < 500; i++) {
+            serveBatch(10);
+        }
+
+        assertThat(limiter.getLimit())
+                .isEqualTo(MAX_LIMIT);
+    }
+}
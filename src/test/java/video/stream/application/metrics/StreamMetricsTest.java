@@ -0,0 +1,49 @@
+package video.stream.application.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class StreamMetricsTest {
+
+    private final static int MAX_TAGGED_VIDEOS = 2;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StreamMetrics streamMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        streamMetrics = new StreamMetrics(meterRegistry, MAX_TAGGED_VIDEOS);
+    }
+
+    @Test
+    void shouldCountRequestsOfVideosBeyondLimitAsOther() {
+        streamMetrics.recordRequest(1L);
+        streamMetrics.recordRequest(2L);
+        streamMetrics.recordRequest(3L);
+        streamMetrics.recordRequest(4L);
+        streamMetrics.recordRequest(1L);
+
+        assertThat(meterRegistry.get(StreamMetrics.REQUESTS_COUNTER).counters())
+                .hasSize(MAX_TAGGED_VIDEOS + 1);
+        assertThat(meterRegistry.get(StreamMetrics.REQUESTS_COUNTER).tag("video", "1").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get(StreamMetrics.REQUESTS_COUNTER)
+                .tag("video", StreamMetrics.OTHER_VIDEOS_TAG).counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void shouldTrackActiveStreams() {
+        streamMetrics.streamStarted();
+        streamMetrics.streamStarted();
+        streamMetrics.streamFinished();
+
+        assertThat(meterRegistry.get(StreamMetrics.ACTIVE_STREAMS_GAUGE).gauge().value())
+                .isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,116 @@
+package video.stream.application.mp4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileFixtures;
+import video.stream.application.file.FileMetadata;
+
+public class HlsSegmentIndexCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Mp4LayoutCache mp4LayoutCache;
+    private HlsSegmentIndexCache hlsSegmentIndexCache;
+    private FileRegionWriter fileRegionWriter;
+
+    @BeforeEach
+    public void setUp() {
+        FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+        mp4LayoutCache = new Mp4LayoutCache(true, 1024 * 1024, 16 * 1024 * 1024, fileChannelPool);
+        hlsSegmentIndexCache = new HlsSegmentIndexCache(Duration.ofMillis(100), 16 * 1024 * 1024,
+                fileChannelPool);
+        fileRegionWriter = FileFixtures.createFileRegionWriter(fileChannelPool);
+    }
+
+    private byte[] read(ContentBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    void shouldStartSegmentsAtKeyframesAfterTargetDuration() throws IOException {
+        FileMetadata file = FileFixtures.getMetadata(new Mp4FileBuilder().keyframes(1, 2, 5, 7)
+                .write(tempDir.resolve("video.mp4")));
+        HlsSegmentIndex index = hlsSegmentIndexCache.get(file, mp4LayoutCache.get(file));
+
+        assertThat(index.getSegmentCount()).isEqualTo(2);
+        assertThat(index.getDuration(0)).isEqualTo(0.16);
+        assertThat(index.getDuration(1)).isEqualTo(0.16);
+        assertThat(new String(read(index.getPlaylist()), StandardCharsets.UTF_8))
+                .startsWith("#EXTM3U\n")
+                .contains("#EXT-X-TARGETDURATION:1\n", "#EXT-X-MAP:URI=\"init.mp4\"\n",
+                        "#EXTINF:0.160,\n0.m4s\n#EXTINF:0.160,\n1.m4s\n")
+                .endsWith("#EXT-X-ENDLIST\n");
+    }
+
+    @Test
+    void shouldWriteInitSegmentWithoutSamples() throws IOException {
+        FileMetadata file = FileFixtures.getMetadata(new Mp4FileBuilder().write(tempDir.resolve("video.mp4")));
+        HlsSegmentIndex index = hlsSegmentIndexCache.get(file, mp4LayoutCache.get(file));
+
+        byte[] initSegment = read(index.getInitSegment());
+        List<Mp4Box> boxes = Mp4Parser.readBoxes(ByteBuffer.wrap(initSegment), 0, initSegment.length);
+        Mp4Box moov = Mp4Parser.findBox(boxes, Mp4Parser.MOOV);
+        Mp4Box stbl = moov.findChild("trak").findChild("mdia").findChild("minf").findChild("stbl");
+
+        assertThat(boxes).extracting(Mp4Box::getType).containsExactly("ftyp", "moov");
+        assertThat(moov.findChild("mvex").findChild("trex")).isNotNull();
+        assertThat(stbl.findChild("stsd")).isNotNull();
+        assertThat(ByteBuffer.wrap(initSegment).getInt((int) stbl.findChild("stsz").getPayloadPosition() + 8))
+                .isZero();
+    }
+
+    @Test
+    void shouldRemuxSamplesOfSegmentIntoFragment() throws IOException {
+        Mp4FileBuilder builder = new Mp4FileBuilder().samplesPerChunk(3);
+        FileMetadata file = FileFixtures.getMetadata(builder.write(tempDir.resolve("video.mp4")));
+        Mp4Layout layout = mp4LayoutCache.get(file);
+        HlsSegmentIndex index = hlsSegmentIndexCache.get(file, layout);
+
+        ContentBody body = index.getSegment(1, file, layout, fileRegionWriter);
+        ByteBuffer segment = ByteBuffer.wrap(read(body));
+        int moofSize = segment.getInt(0);
+        int trafPosition = 8 + 16;
+        int trunPosition = trafPosition + 8 + 16 + 20;
+        int dataOffset = segment.getInt(trunPosition + 16);
+
+        assertThat(segment.capacity()).isEqualTo(body.getContentLength());
+        assertThat(segment.getInt(8 + 12)).isEqualTo(2);
+        assertThat(segment.getLong(trafPosition + 8 + 16 + 12)).isEqualTo(160L);
+        assertThat(segment.getInt(trunPosition + 12)).isEqualTo(4);
+        assertThat(segment.getInt(moofSize)).isEqualTo(segment.capacity() - moofSize);
+        assertThat(dataOffset).isEqualTo(moofSize + 8);
+        for (int sample = 4; sample < 8; sample++) {
+            int entry = trunPosition + 20 + 16 * (sample - 4);
+            assertThat(segment.getInt(entry + 4)).isEqualTo(sample % 4 == 0 ? 100 : 50);
+            assertThat(segment.get(dataOffset)).isEqualTo(Mp4FileBuilder.sampleByte(sample));
+            dataOffset += segment.getInt(entry + 4);
+        }
+        assertThat(dataOffset).isEqualTo(segment.capacity());
+    }
+
+    @Test
+    void shouldReturnEmptyIndexForFileThatIsNotMp4() throws IOException {
+        FileMetadata file = FileFixtures.getMetadata(Files.write(tempDir.resolve("random.mp4"), new byte[4096]));
+
+        assertThat(hlsSegmentIndexCache.get(file, mp4LayoutCache.get(file)).isEmpty()).isTrue();
+    }
+}
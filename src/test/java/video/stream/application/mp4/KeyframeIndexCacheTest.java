@@ -0,0 +1,79 @@
+package video.stream.application.mp4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileFixtures;
+import video.stream.application.file.FileMetadata;
+
+public class KeyframeIndexCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Mp4LayoutCache mp4LayoutCache;
+    private KeyframeIndexCache keyframeIndexCache;
+
+    @BeforeEach
+    public void setUp() {
+        FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+        mp4LayoutCache = new Mp4LayoutCache(true, 1024 * 1024, 16 * 1024 * 1024, fileChannelPool);
+        keyframeIndexCache = new KeyframeIndexCache(16 * 1024 * 1024, fileChannelPool);
+    }
+
+    private KeyframeIndex getIndex(Path path) throws IOException {
+        FileMetadata file = FileFixtures.getMetadata(path);
+        return keyframeIndexCache.get(file, mp4LayoutCache.get(file));
+    }
+
+    @Test
+    void shouldIndexKeyframesOfMp4WithMoovAtFront() throws IOException {
+        Mp4FileBuilder builder = new Mp4FileBuilder().moovAtEnd(false);
+        KeyframeIndex index = getIndex(builder.write(tempDir.resolve("faststart.mp4")));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getTime(0)).isEqualTo(0.0);
+        assertThat(index.getOffset(0)).isEqualTo(builder.getSampleOffset(0));
+        assertThat(index.getTime(1)).isEqualTo(0.16);
+        assertThat(index.getOffset(1)).isEqualTo(builder.getSampleOffset(4));
+    }
+
+    @Test
+    void shouldIndexLayoutPositionsOfMp4WithMoovAtEnd() throws IOException {
+        Mp4FileBuilder builder = new Mp4FileBuilder().samplesPerChunk(3).keyframes(1, 4, 7);
+        KeyframeIndex index = getIndex(builder.write(tempDir.resolve("moovAtEnd.mp4")));
+
+        assertThat(index.size()).isEqualTo(3);
+        for (int keyframe = 0; keyframe < 3; keyframe++) {
+            assertThat(index.getOffset(keyframe))
+                    .isEqualTo(builder.getSampleOffset(3 * keyframe) + builder.getMoovSize());
+        }
+    }
+
+    @Test
+    void shouldFindLastKeyframeAtOrBeforeTime() throws IOException {
+        KeyframeIndex index = getIndex(new Mp4FileBuilder().keyframes(1, 3, 5, 7)
+                .write(tempDir.resolve("keyframes.mp4")));
+
+        assertThat(index.findKeyframe(0.0)).isEqualTo(0);
+        assertThat(index.findKeyframe(0.079)).isEqualTo(0);
+        assertThat(index.findKeyframe(0.08)).isEqualTo(1);
+        assertThat(index.findKeyframe(0.2)).isEqualTo(2);
+        assertThat(index.findKeyframe(3600.0)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldReturnEmptyIndexForFileThatIsNotMp4() throws IOException {
+        Path path = Files.write(tempDir.resolve("random.mp4"), new byte[4096]);
+
+        assertThat(getIndex(path).isEmpty()).isTrue();
+    }
+}
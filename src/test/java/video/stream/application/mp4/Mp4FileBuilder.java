@@ -0,0 +1,254 @@
+package video.stream.application.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes small, structurally valid single video track MP4 files for tests.
+ * Every byte of sample {@code i} is {@link #sampleByte(int)}, and
+ * {@code mdatGap} leaves a sparse hole in front of the samples to push their
+ * offsets beyond 32 bits without writing gigabytes.
+ */
+public class Mp4FileBuilder {
+
+    private static final long MAX_32_BIT_OFFSET = 0xFFFFFFFFL;
+
+    private int timescale = 1000;
+    private int sampleDuration = 40;
+    private int[] sampleSizes = new int[] { 100, 50, 50, 50, 100, 50, 50, 50 };
+    private int[] keyframes = new int[] { 1, 5 };
+    private int samplesPerChunk = 2;
+    private boolean moovAtEnd = true;
+    private long mdatGap;
+
+    private long[] sampleOffsets;
+    private long moovPosition;
+    private int moovSize;
+
+    public static byte sampleByte(int sampleIndex) {
+        return (byte) (sampleIndex % 251 + 1);
+    }
+
+    public Mp4FileBuilder timescale(int timescale) {
+        this.timescale = timescale;
+        return this;
+    }
+
+    public Mp4FileBuilder sampleDuration(int sampleDuration) {
+        this.sampleDuration = sampleDuration;
+        return this;
+    }
+
+    public Mp4FileBuilder sampleSizes(int... sampleSizes) {
+        this.sampleSizes = sampleSizes;
+        return this;
+    }
+
+    /**
+     * Sets the sync samples, numbered from 1 like in the {@code stss} box.
+     */
+    public Mp4FileBuilder keyframes(int... keyframes) {
+        this.keyframes = keyframes;
+        return this;
+    }
+
+    public Mp4FileBuilder samplesPerChunk(int samplesPerChunk) {
+        this.samplesPerChunk = samplesPerChunk;
+        return this;
+    }
+
+    public Mp4FileBuilder moovAtEnd(boolean moovAtEnd) {
+        this.moovAtEnd = moovAtEnd;
+        return this;
+    }
+
+    public Mp4FileBuilder mdatGap(long mdatGap) {
+        this.mdatGap = mdatGap;
+        return this;
+    }
+
+    public long getSampleOffset(int sampleIndex) {
+        return sampleOffsets[sampleIndex];
+    }
+
+    public long getMoovPosition() {
+        return moovPosition;
+    }
+
+    public int getMoovSize() {
+        return moovSize;
+    }
+
+    public Path write(Path path) throws IOException {
+        byte[] ftyp = box("ftyp", concat(ascii("isom"), int32(512), ascii("isomiso2avc1mp41")));
+        long samplesSize = Arrays.stream(sampleSizes).asLongStream().sum();
+        long mdatPayloadSize = mdatGap + samplesSize;
+        int mdatHeaderSize = mdatPayloadSize + 8 > MAX_32_BIT_OFFSET ? 16 : 8;
+        long mdatPosition = ftyp.length + (moovAtEnd ? 0 : moov(new long[chunkCount()], false).length);
+        long[] chunkOffsets = computeChunkOffsets(mdatPosition + mdatHeaderSize + mdatGap);
+        boolean wideOffsets = chunkOffsets[chunkOffsets.length - 1] > MAX_32_BIT_OFFSET;
+        if (wideOffsets && !moovAtEnd) {
+            mdatPosition = ftyp.length + moov(new long[chunkCount()], true).length;
+            chunkOffsets = computeChunkOffsets(mdatPosition + mdatHeaderSize + mdatGap);
+        }
+        byte[] moov = moov(chunkOffsets, wideOffsets);
+        moovPosition = moovAtEnd ? mdatPosition + mdatHeaderSize + mdatPayloadSize : ftyp.length;
+        moovSize = moov.length;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            file.write(ftyp);
+            if (!moovAtEnd) {
+                file.write(moov);
+            }
+            if (mdatHeaderSize == 16) {
+                file.write(concat(int32(1), ascii("mdat"), int64(mdatHeaderSize + mdatPayloadSize)));
+            } else {
+                file.write(concat(int32((int) (mdatHeaderSize + mdatPayloadSize)), ascii("mdat")));
+            }
+            for (int i = 0; i < sampleSizes.length; i++) {
+                byte[] sample = new byte[sampleSizes[i]];
+                Arrays.fill(sample, sampleByte(i));
+                file.seek(sampleOffsets[i]);
+                file.write(sample);
+            }
+            if (moovAtEnd) {
+                file.write(moov);
+            }
+        }
+        return path;
+    }
+
+    private long[] computeChunkOffsets(long firstSampleOffset) {
+        sampleOffsets = new long[sampleSizes.length];
+        long offset = firstSampleOffset;
+        for (int i = 0; i < sampleSizes.length; i++) {
+            sampleOffsets[i] = offset;
+            offset += sampleSizes[i];
+        }
+        long[] chunkOffsets = new long[chunkCount()];
+        for (int chunk = 0; chunk < chunkOffsets.length; chunk++) {
+            chunkOffsets[chunk] = sampleOffsets[chunk * samplesPerChunk];
+        }
+        return chunkOffsets;
+    }
+
+    private int chunkCount() {
+        return (sampleSizes.length + samplesPerChunk - 1) / samplesPerChunk;
+    }
+
+    private byte[] moov(long[] chunkOffsets, boolean wideOffsets) {
+        int duration = sampleDuration * sampleSizes.length;
+        byte[] mvhd = fullBox("mvhd", concat(int32(0), int32(0), int32(timescale), int32(duration),
+                int32(0x00010000), int16(0x0100), new byte[10], matrix(), new byte[24], int32(2)));
+        byte[] tkhd = box("tkhd", concat(int32(3), int32(0), int32(0), int32(1), int32(0), int32(duration),
+                new byte[8], int16(0), int16(0), int16(0), int16(0), matrix(), int32(640 << 16),
+                int32(360 << 16)));
+        byte[] mdhd = fullBox("mdhd", concat(int32(0), int32(0), int32(timescale), int32(duration),
+                int16(0x55c4), int16(0)));
+        byte[] hdlr = fullBox("hdlr", concat(int32(0), ascii("vide"), new byte[12], ascii("VideoHandler"),
+                new byte[1]));
+        byte[] vmhd = box("vmhd", concat(int32(1), int16(0), new byte[6]));
+        byte[] dinf = box("dinf", box("dref", concat(int32(0), int32(1), box("url ", int32(1)))));
+        byte[] stbl = box("stbl", concat(stsd(), stts(), stss(), stsc(), stsz(), chunkOffsets(chunkOffsets,
+                wideOffsets)));
+        byte[] minf = box("minf", concat(vmhd, dinf, stbl));
+        byte[] mdia = box("mdia", concat(mdhd, hdlr, minf));
+        return box("moov", concat(mvhd, box("trak", concat(tkhd, mdia))));
+    }
+
+    private byte[] stsd() {
+        byte[] avcC = box("avcC", concat(new byte[] { 1, 0x64, 0, 0x1f, (byte) 0xff, (byte) 0xe1 }, int16(4),
+                new byte[] { 0x67, 0x64, 0, 0x1f }, new byte[] { 1 }, int16(4),
+                new byte[] { 0x68, (byte) 0xee, 0x3c, (byte) 0x80 }));
+        byte[] avc1 = box("avc1", concat(new byte[6], int16(1), new byte[16], int16(640), int16(360),
+                int32(0x00480000), int32(0x00480000), int32(0), int16(1), new byte[32], int16(0x18), int16(-1),
+                avcC));
+        return fullBox("stsd", concat(int32(1), avc1));
+    }
+
+    private byte[] stts() {
+        return fullBox("stts", concat(int32(1), int32(sampleSizes.length), int32(sampleDuration)));
+    }
+
+    private byte[] stss() {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (int keyframe : keyframes) {
+            entries.writeBytes(int32(keyframe));
+        }
+        return fullBox("stss", concat(int32(keyframes.length), entries.toByteArray()));
+    }
+
+    private byte[] stsc() {
+        int lastChunkSamples = sampleSizes.length - (chunkCount() - 1) * samplesPerChunk;
+        if (lastChunkSamples == samplesPerChunk || chunkCount() == 1) {
+            return fullBox("stsc", concat(int32(1), int32(1), int32(lastChunkSamples == samplesPerChunk
+                    ? samplesPerChunk : lastChunkSamples), int32(1)));
+        }
+        return fullBox("stsc", concat(int32(2), int32(1), int32(samplesPerChunk), int32(1), int32(chunkCount()),
+                int32(lastChunkSamples), int32(1)));
+    }
+
+    private byte[] stsz() {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (int sampleSize : sampleSizes) {
+            entries.writeBytes(int32(sampleSize));
+        }
+        return fullBox("stsz", concat(int32(0), int32(sampleSizes.length), entries.toByteArray()));
+    }
+
+    private byte[] chunkOffsets(long[] chunkOffsets, boolean wideOffsets) {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (long chunkOffset : chunkOffsets) {
+            entries.writeBytes(wideOffsets ? int64(chunkOffset) : int32((int) chunkOffset));
+        }
+        return fullBox(wideOffsets ? "co64" : "stco", concat(int32(chunkOffsets.length), entries.toByteArray()));
+    }
+
+    private static byte[] matrix() {
+        return concat(int32(0x00010000), int32(0), int32(0), int32(0), int32(0x00010000), int32(0), int32(0),
+                int32(0), int32(0x40000000));
+    }
+
+    private static byte[] fullBox(String type, byte[] payload) {
+        return box(type, concat(int32(0), payload));
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return concat(int32(8 + payload.length), ascii(type), payload);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            outputStream.writeBytes(part);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] int16(int value) {
+        return new byte[] { (byte) (value >> 8), (byte) value };
+    }
+
+    private static byte[] int32(int value) {
+        return new byte[] { (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value };
+    }
+
+    private static byte[] int64(long value) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+            dataOutputStream.writeLong(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package video.stream.application.mp4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.stream.application.content.ContentBody;
+import video.stream.application.content.FileRegionWriter;
+import video.stream.application.file.FileChannelPool;
+import video.stream.application.file.FileFixtures;
+import video.stream.application.file.FileMetadata;
+
+public class Mp4LayoutCacheTest {
+
+    private final static int SAMPLES_PER_CHUNK = 2;
+
+    @TempDir
+    Path tempDir;
+
+    private Mp4LayoutCache mp4LayoutCache;
+    private FileRegionWriter fileRegionWriter;
+
+    @BeforeEach
+    public void setUp() {
+        FileChannelPool fileChannelPool = FileFixtures.createFileChannelPool();
+        mp4LayoutCache = new Mp4LayoutCache(true, 1024 * 1024, 16 * 1024 * 1024, fileChannelPool);
+        fileRegionWriter = FileFixtures.createFileRegionWriter(fileChannelPool);
+    }
+
+    private byte[] read(Mp4Layout layout, FileMetadata file, long position, long count) throws IOException {
+        ContentBody body = layout.slice(file, position, count, fileRegionWriter);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private Mp4Box findChunkOffsets(ByteBuffer buffer, int start, int end) {
+        List<Mp4Box> boxes = Mp4Parser.readBoxes(buffer, start, end);
+        Mp4Box stbl = Mp4Parser.findBox(boxes, Mp4Parser.MOOV).findChild("trak").findChild("mdia")
+                .findChild("minf").findChild("stbl");
+        return stbl.findChild(Mp4Parser.STCO) != null ? stbl.findChild(Mp4Parser.STCO)
+                : stbl.findChild(Mp4Parser.CO64);
+    }
+
+    @Test
+    void shouldServeFaststartFileAsItIs() throws IOException {
+        Mp4FileBuilder builder = new Mp4FileBuilder().moovAtEnd(false);
+        FileMetadata file = FileFixtures.getMetadata(builder.write(tempDir.resolve("faststart.mp4")));
+
+        Mp4Layout layout = mp4LayoutCache.get(file);
+
+        assertThat(layout.isRelocated())
+                .isFalse();
+        assertThat(layout.getHeaderSize())
+                .isEqualTo(builder.getMoovPosition() + builder.getMoovSize());
+        assertThat(read(layout, file, 0, file.getSize()))
+                .isEqualTo(Files.readAllBytes(file.getPath()));
+    }
+
+    @Test
+    void shouldServeFileWhichIsNotMp4AsItIs() throws IOException {
+        FileMetadata file = FileFixtures.getMetadata(Files.write(tempDir.resolve("video.mp4"), new byte[1000]));
+
+        Mp4Layout layout = mp4LayoutCache.get(file);
+
+        assertThat(layout.isRelocated())
+                .isFalse();
+        assertThat(layout.getHeaderSize())
+                .isEqualTo(0);
+        assertThat(layout.getSize())
+                .isEqualTo(1000);
+    }
+
+    @Test
+    void shouldMoveMoovInFrontOfMediaData() throws IOException {
+        Mp4FileBuilder builder = new Mp4FileBuilder();
+        FileMetadata file = FileFixtures.getMetadata(builder.write(tempDir.resolve("video.mp4")));
+
+        Mp4Layout layout = mp4LayoutCache.get(file);
+        byte[] virtualFile = read(layout, file, 0, layout.getSize());
+
+        assertThat(layout.isRelocated())
+                .isTrue();
+        assertThat(virtualFile.length)
+                .isEqualTo(file.getSize());
+        ByteBuffer buffer = ByteBuffer.wrap(virtualFile);
+        List<Mp4Box> boxes = Mp4Parser.readBoxes(buffer, 0, virtualFile.length);
+        assertThat(boxes)
+                .extracting(Mp4Box::getType)
+                .containsExactly(Mp4Parser.FTYP, Mp4Parser.MOOV, Mp4Parser.MDAT);
+        assertThat(layout.getHeaderSize())
+                .isEqualTo(boxes.get(1).getEnd());
+        Mp4Box stco = findChunkOffsets(buffer, 0, virtualFile.length);
+        int entryCount = buffer.getInt((int) stco.getPayloadPosition() + 4);
+        for (int chunk = 0; chunk < entryCount; chunk++) {
+            int offset = buffer.getInt((int) stco.getPayloadPosition() + 8 + 4 * chunk);
+            assertThat(virtualFile[offset])
+                    .isEqualTo(Mp4FileBuilder.sampleByte(chunk * SAMPLES_PER_CHUNK));
+        }
+    }
+
+    @Test
+    void shouldWidenChunkOffsetsOverflowingAfterRelocation() throws IOException {
+        long gap = 0xFFFFFFFFL - 700;
+        Mp4FileBuilder builder = new Mp4FileBuilder().mdatGap(gap);
+        FileMetadata file = FileFixtures.getMetadata(builder.write(tempDir.resolve("large.mp4")));
+
+        Mp4Layout layout = mp4LayoutCache.get(file);
+        byte[] header = read(layout, file, 0, layout.getHeaderSize());
+
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        long ftypSize = Mp4Parser.readBoxes(buffer, 0, header.length).get(0).getSize();
+        Mp4Box co64 = findChunkOffsets(buffer, 0, header.length);
+        assertThat(co64.getType())
+                .isEqualTo(Mp4Parser.CO64);
+        int entryCount = buffer.getInt((int) co64.getPayloadPosition() + 4);
+        assertThat(layout.getSize())
+                .isEqualTo(file.getSize() + 4L * entryCount);
+        for (int chunk = 0; chunk < entryCount; chunk++) {
+            long offset = buffer.getLong((int) co64.getPayloadPosition() + 8 + 8 * chunk);
+            assertThat(offset)
+                    .isEqualTo(builder.getSampleOffset(chunk * SAMPLES_PER_CHUNK) + header.length - ftypSize);
+            assertThat(read(layout, file, offset, 1)[0])
+                    .isEqualTo(Mp4FileBuilder.sampleByte(chunk * SAMPLES_PER_CHUNK));
+        }
+    }
+}
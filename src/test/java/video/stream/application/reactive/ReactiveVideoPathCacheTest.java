@@ -0,0 +1,139 @@
+package video.stream.application.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class ReactiveVideoPathCacheTest {
+
+    private final static Duration EXPIRE_AFTER = Duration.ofMinutes(10);
+    private final static Duration TIMEOUT = Duration.ofSeconds(10);
+    private final static int CONCURRENT_REQUESTS = 64;
+    private final static Pattern VIDEO_ID = Pattern.compile("videoId=(\\d+)");
+
+    private final Map<Long, AtomicInteger> upstreamCalls = new ConcurrentHashMap<>();
+    private final Map<Long, String> authorizations = new ConcurrentHashMap<>();
+    private volatile HttpStatus upstreamStatus = HttpStatus.OK;
+
+    private ReactiveVideoPathCache videoPathCache;
+
+    private Mono<ClientResponse> exchange(ClientRequest request) {
+        Matcher matcher = VIDEO_ID.matcher(request.url().getQuery());
+        matcher.find();
+        long videoId = Long.parseLong(matcher.group(1));
+        int call = upstreamCalls.computeIfAbsent(videoId, id -> new AtomicInteger()).incrementAndGet();
+        String authorization = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null) {
+            authorizations.put(videoId, authorization);
+        }
+        HttpStatus status = upstreamStatus;
+        return Mono.delay(Duration.ofMillis(50))
+                .map(tick -> ClientResponse.create(status)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"path\":\"/videos/" + videoId + "/" + call + ".mp4\"}")
+                        .build());
+    }
+
+    private int upstreamCalls(Long videoId) {
+        return upstreamCalls.getOrDefault(videoId, new AtomicInteger()).get();
+    }
+
+    private List<String> getPathsConcurrently(Long... videoIds) {
+        return Flux.range(0, CONCURRENT_REQUESTS)
+                .flatMap(i -> videoPathCache.getPath(videoIds[i % videoIds.length]), CONCURRENT_REQUESTS)
+                .collectList()
+                .block(TIMEOUT);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        videoPathCache = new ReactiveVideoPathCache(WebClient.builder().exchangeFunction(this::exchange), 100,
+                EXPIRE_AFTER);
+    }
+
+    @Test
+    void shouldShareUpstreamCallBetweenConcurrentMisses() {
+        List<String> paths = getPathsConcurrently(1L);
+
+        assertThat(paths)
+                .hasSize(CONCURRENT_REQUESTS)
+                .containsOnly("/videos/1/1.mp4");
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldCallUpstreamOncePerVideo() {
+        getPathsConcurrently(1L, 2L, 3L);
+
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(1);
+        assertThat(upstreamCalls(2L))
+                .isEqualTo(1);
+        assertThat(upstreamCalls(3L))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeResolvedPathFromCache() {
+        videoPathCache.getPath(1L).block(TIMEOUT);
+
+        assertThat(videoPathCache.getPath(1L).block(TIMEOUT))
+                .isEqualTo("/videos/1/1.mp4");
+        assertThat(upstreamCalls(1L))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheFailedLookup() {
+        upstreamStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        Mono<String> failed = videoPathCache.getPath(1L);
+
+        assertThat(failed.onErrorReturn("failed").block(TIMEOUT))
+                .isEqualTo("failed");
+
+        upstreamStatus = HttpStatus.OK;
+
+        assertThat(videoPathCache.getPath(1L).block(TIMEOUT))
+                .isEqualTo("/videos/1/2.mp4");
+    }
+
+    @Test
+    void shouldForwardBearerTokenOfCaller() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("player")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+
+        videoPathCache.getPath(1L)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(new JwtAuthenticationToken(jwt)))
+                .block(TIMEOUT);
+
+        assertThat(authorizations.get(1L))
+                .isEqualTo("Bearer token");
+    }
+}
@@ -0,0 +1,113 @@
+package video.stream.application.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class ConsistentHashRingTest {
+
+    private final static int VIDEOS = 10_000;
+    private final static int VIRTUAL_NODES = 160;
+
+    private static RingNode node(int index, long load) {
+        return new RingNode(URI.create("http://10.0.0." + index + ":9015"), VIRTUAL_NODES, load);
+    }
+
+    private static List<RingNode> nodes(int count) {
+        return IntStream.range(0, count).mapToObj(index -> node(index, 0)).collect(Collectors.toList());
+    }
+
+    private static Map<URI, Integer> countOwners(ConsistentHashRing ring) {
+        Map<URI, Integer> counts = new HashMap<>();
+        for (long videoId = 0; videoId < VIDEOS; videoId++) {
+            counts.merge(ring.getOwner(videoId).getUri(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    void shouldSpreadVideosEvenlyOverInstances() {
+        Map<URI, Integer> counts = countOwners(ConsistentHashRing.build(nodes(4)));
+
+        assertThat(counts)
+                .hasSize(4);
+        assertThat(counts.values())
+                .allSatisfy(count -> assertThat(count).isBetween(VIDEOS / 4 * 3 / 4, VIDEOS / 4 * 5 / 4));
+    }
+
+    @Test
+    void shouldAgreeOnOwnerRegardlessOfInstanceOrder() {
+        List<RingNode> reversed = new ArrayList<>(nodes(4));
+        Collections.reverse(reversed);
+        ConsistentHashRing ring = ConsistentHashRing.build(nodes(4));
+        ConsistentHashRing reversedRing = ConsistentHashRing.build(reversed);
+
+        for (long videoId = 0; videoId < 1000; videoId++) {
+            assertThat(reversedRing.getOwner(videoId))
+                    .isEqualTo(ring.getOwner(videoId));
+        }
+    }
+
+    @Test
+    void shouldOnlyMoveVideosToAddedInstance() {
+        ConsistentHashRing ring = ConsistentHashRing.build(nodes(4));
+        ConsistentHashRing grown = ConsistentHashRing.build(nodes(5));
+        int moved = 0;
+
+        for (long videoId = 0; videoId < VIDEOS; videoId++) {
+            RingNode before = ring.getOwner(videoId);
+            RingNode after = grown.getOwner(videoId);
+            if (!before.equals(after)) {
+                assertThat(after)
+                        .isEqualTo(node(4, 0));
+                moved++;
+            }
+        }
+        assertThat(moved)
+                .isBetween(VIDEOS / 5 / 2, VIDEOS / 5 * 3 / 2);
+    }
+
+    @Test
+    void shouldRouteToOwnerWhileLoadIsBounded() {
+        ConsistentHashRing ring = ConsistentHashRing.build(nodes(3));
+
+        for (long videoId = 0; videoId < 1000; videoId++) {
+            assertThat(ring.route(videoId, 1.25))
+                    .isEqualTo(ring.getOwner(videoId));
+        }
+    }
+
+    @Test
+    void shouldSpillOverloadedOwnerToSameNextInstance() {
+        ConsistentHashRing ring = ConsistentHashRing.build(nodes(3));
+        long videoId = 7;
+        URI owner = ring.getOwner(videoId).getUri();
+        ConsistentHashRing loaded = ring.withLoad(owner, 100);
+
+        RingNode routed = loaded.route(videoId, 1.25);
+
+        assertThat(routed.getUri())
+                .isNotEqualTo(owner);
+        assertThat(loaded.route(videoId, 1.25))
+                .isEqualTo(routed);
+        assertThat(loaded.getOwner(videoId).getUri())
+                .isEqualTo(owner);
+    }
+
+    @Test
+    void shouldNotRouteOnEmptyRing() {
+        assertThat(ConsistentHashRing.EMPTY.route(7, 1.25))
+                .isNull();
+        assertThat(ConsistentHashRing.EMPTY.getOwner(7))
+                .isNull();
+    }
+}
@@ -0,0 +1,83 @@
+package video.stream.infrastructure;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.http2.Http2Protocol;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import video.stream.MovieNetVideoStreamServiceApplication;
+
+public class Http2ConfigTest {
+
+    private static ServletWebServerApplicationContext context;
+
+    @BeforeAll
+    static void startService() {
+        context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+                MovieNetVideoStreamServiceApplication.class).run(
+                        "--server.port=0",
+                        "--server.http2.enabled=true",
+                        "--eureka.client.enabled=false",
+                        "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://localhost:1/jwks.json",
+                        "--video-stream.http2.initial-window-size=2097152",
+                        "--video-stream.http2.max-concurrent-stream-execution=4");
+    }
+
+    @AfterAll
+    static void stopService() {
+        context.close();
+    }
+
+    private static Http2Protocol getHttp2Protocol() {
+        Connector connector = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector();
+        return Arrays.stream(connector.findUpgradeProtocols())
+                .filter(Http2Protocol.class::isInstance)
+                .map(Http2Protocol.class::cast)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void shouldApplyHttp2Settings() {
+        Http2Protocol http2Protocol = getHttp2Protocol();
+
+        assertThat(http2Protocol.getInitialWindowSize())
+                .isEqualTo(2097152);
+        assertThat(http2Protocol.getMaxConcurrentStreamExecution())
+                .isEqualTo(4);
+        assertThat(http2Protocol.getMaxConcurrentStreams())
+                .isEqualTo(128);
+        assertThat(http2Protocol.getStreamWriteTimeout())
+                .isEqualTo(20000);
+    }
+
+    @Test
+    void shouldUpgradeClearTextConnectionsToHttp2() throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+        URI uri = URI.create("http://localhost:" + context.getWebServer().getPort() + "/video-stream?videoId=1");
+
+        client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).header("Range", "bytes=0-").build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertThat(response.version())
+                .isEqualTo(HttpClient.Version.HTTP_2);
+        assertThat(response.statusCode())
+                .isEqualTo(401);
+    }
+}
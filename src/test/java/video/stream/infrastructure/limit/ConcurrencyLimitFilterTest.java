@@ -0,0 +1,179 @@
+package video.stream.infrastructure.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import video.stream.application.limit.AdaptiveConcurrencyLimiter;
+
+public class ConcurrencyLimitFilterTest {
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter(true, 10, 1, 100, 1.5, 0.2, 0.5, Duration.ofSeconds(2));
+        filter = new ConcurrencyLimitFilter(limiter);
+    }
+
+    private static MockHttpServletRequest request(String path, String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+
+    @Test
+    void shouldRejectRequestsOverLimit() throws ServletException, IOException {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(false);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/video-stream", "bytes=1000-"), response, chain);
+
+        assertThat(response.getStatus())
+                .isEqualTo(503);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER))
+                .isEqualTo("2");
+        assertThat(chain.getRequest())
+                .isNull();
+    }
+
+    @Test
+    void shouldHoldSlotWhileRequestIsServed() throws ServletException, IOException {
+        int[] inFlight = new int[1];
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                inFlight[0] = limiter.getInFlight();
+            }
+        });
+
+        filter.doFilter(request("/video-stream", "bytes=0-"), new MockHttpServletResponse(), chain);
+
+        assertThat(inFlight[0])
+                .isEqualTo(1);
+        assertThat(limiter.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    void shouldBackOffOnServerErrors() throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(500);
+
+        filter.doFilter(request("/video-stream/seek", null), response, new MockFilterChain());
+
+        assertThat(limiter.getLimit())
+                .isEqualTo(9);
+        assertThat(limiter.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    void shouldBackOffOnReadFailures() {
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.getOutputStream();
+                throw new IOException("Input/output error");
+            }
+        });
+
+        assertThatThrownBy(() -> filter.doFilter(request("/video-stream", "bytes=0-"),
+                new MockHttpServletResponse(), chain))
+                .isInstanceOf(IOException.class);
+        assertThat(limiter.getLimit())
+                .isEqualTo(9);
+        assertThat(limiter.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    void shouldIgnoreClientAborts() {
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                };
+            }
+        };
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.getOutputStream().write(new byte[1024]);
+            }
+        });
+
+        assertThatThrownBy(() -> filter.doFilter(request("/video-stream", "bytes=0-"), response, chain))
+                .isInstanceOf(IOException.class);
+        assertThat(limiter.getLimit())
+                .isEqualTo(10);
+        assertThat(limiter.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    void shouldNotLimitOtherEndpoints() throws ServletException, IOException {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(false);
+        }
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/video-stream/hls/1/master.m3u8", null), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest())
+                .isNotNull();
+    }
+
+    @Test
+    void shouldTreatFirstRangeOfVideoAsPlaybackStart() {
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=0-"))
+                .isTrue();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=0-1023"))
+                .isTrue();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=1024-"))
+                .isFalse();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=0-0,5000000-"))
+                .isFalse();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=-500"))
+                .isFalse();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream", "bytes=0-x"))
+                .isFalse();
+        assertThat(ConcurrencyLimitFilter.isPlaybackStart("/video-stream/seek", null))
+                .isFalse();
+    }
+}
@@ -0,0 +1,212 @@
+package video.stream.infrastructure.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import video.stream.MovieNetVideoStreamServiceApplication;
+import video.stream.application.mp4.Mp4FileBuilder;
+import video.stream.application.routing.ContentRouter;
+import video.stream.application.routing.VideoStreamRoutingClient;
+import video.stream.infrastructure.security.AuthorizationServerStub;
+
+/**
+ * Runs several instances in process, registered in the simple discovery
+ * client standing in for Eureka, against a stub {@code video-service}
+ * resolving every video to one small MP4 file.
+ */
+public class ContentAffinityRoutingTest {
+
+    private final static int INSTANCES = 3;
+    private final static String SERVICE_ID = "video-stream-service";
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static final List<URI> instanceUris = new ArrayList<>();
+
+    @TempDir
+    static Path tempDir;
+
+    private static AuthorizationServerStub stub;
+    private static String token;
+
+    @BeforeAll
+    static void startInstances() throws Exception {
+        Path video = new Mp4FileBuilder().moovAtEnd(false).write(tempDir.resolve("video.mp4"));
+        stub = new AuthorizationServerStub();
+        stub.addContext("/video/path", exchange -> AuthorizationServerStub.respond(exchange,
+                "{\"path\":\"" + video.toAbsolutePath().toString().replace("\\", "\\\\") + "\"}"));
+        token = stub.createToken();
+        List<String> registry = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            URI uri = URI.create("http://localhost:" + findFreePort());
+            instanceUris.add(uri);
+            registry.add("--spring.cloud.discovery.client.simple.instances." + SERVICE_ID + "[" + i + "].uri="
+                    + uri);
+        }
+        for (URI uri : instanceUris) {
+            List<String> args = new ArrayList<>(registry);
+            args.addAll(List.of(
+                    "--server.port=" + uri.getPort(),
+                    "--eureka.client.enabled=false",
+                    "--spring.cloud.discovery.client.simple.instances.video-service[0].uri=" + stub.getUri(),
+                    "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + stub.getJwkSetUri(),
+                    "--video-stream.routing.enabled=true",
+                    "--video-stream.routing.self-uri=" + uri,
+                    "--video-stream.routing.refresh-interval=100ms",
+                    // never diverts for load, the streams still finishing would make the owners vary otherwise
+                    "--video-stream.routing.load-factor=" + INSTANCES));
+            contexts.add(new SpringApplicationBuilder(MovieNetVideoStreamServiceApplication.class)
+                    .run(args.toArray(new String[0])));
+        }
+        for (ConfigurableApplicationContext context : contexts) {
+            ContentRouter contentRouter = context.getBean(ContentRouter.class);
+            for (int attempt = 0; attempt < 100 && contentRouter.getRingSize() < INSTANCES; attempt++) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+        stub.close();
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static HttpURLConnection request(URI instance, String pathAndQuery) throws IOException {
+        return request(instance, pathAndQuery, "bytes=0-");
+    }
+
+    private static HttpURLConnection request(URI instance, String pathAndQuery, String range) throws IOException {
+        return request(instance, pathAndQuery, range, token);
+    }
+
+    private static HttpURLConnection request(URI instance, String pathAndQuery, String range, String token)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) instance.resolve(pathAndQuery).toURL().openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("Range", range);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        connection.getResponseCode();
+        return connection;
+    }
+
+    private static URI findServingInstance(String pathAndQuery) throws IOException {
+        URI serving = null;
+        for (URI instance : instanceUris) {
+            if (request(instance, pathAndQuery).getResponseCode() != 307) {
+                assertThat(serving)
+                        .isNull();
+                serving = instance;
+            }
+        }
+        return serving;
+    }
+
+    @Test
+    void shouldServeEachVideoOnOneInstanceAndRedirectOthersToIt() throws IOException {
+        Set<URI> servingInstances = new HashSet<>();
+
+        for (long videoId = 1; videoId <= 30; videoId++) {
+            String pathAndQuery = "/video-stream?videoId=" + videoId;
+            URI serving = findServingInstance(pathAndQuery);
+            servingInstances.add(serving);
+            for (URI instance : instanceUris) {
+                HttpURLConnection connection = request(instance, pathAndQuery);
+                if (instance.equals(serving)) {
+                    assertThat(connection.getResponseCode())
+                            .isEqualTo(206);
+                } else {
+                    assertThat(connection.getHeaderField("Location"))
+                            .isEqualTo(serving + pathAndQuery + "&routed=true");
+                }
+            }
+        }
+        assertThat(servingInstances)
+                .containsExactlyInAnyOrderElementsOf(instanceUris);
+    }
+
+    @Test
+    void shouldRouteHlsRequestsOfVideoToSameInstance() throws IOException {
+        for (long videoId = 1; videoId <= 10; videoId++) {
+            assertThat(findServingInstance("/video-stream/hls/" + videoId + "/playlist.m3u8"))
+                    .isEqualTo(findServingInstance("/video-stream?videoId=" + videoId));
+        }
+    }
+
+    @Test
+    void shouldServeRoutedRequestsLocally() throws IOException {
+        for (URI instance : instanceUris) {
+            assertThat(request(instance, "/video-stream?videoId=1&routed=true").getResponseCode())
+                    .isEqualTo(206);
+        }
+    }
+
+    @Test
+    void shouldNotRedirectUnauthenticatedRequests() throws IOException {
+        for (URI instance : instanceUris) {
+            for (long videoId = 1; videoId <= 10; videoId++) {
+                HttpURLConnection connection = request(instance, "/video-stream?videoId=" + videoId, "bytes=0-",
+                        null);
+
+                assertThat(connection.getResponseCode())
+                        .isEqualTo(401);
+                assertThat(connection.getHeaderField("Location"))
+                        .isNull();
+            }
+        }
+    }
+
+    @Test
+    void shouldServeContinuationsOfPlaybackWhereTheyLand() throws IOException {
+        for (URI instance : instanceUris) {
+            for (long videoId = 1; videoId <= 10; videoId++) {
+                assertThat(request(instance, "/video-stream?videoId=" + videoId, "bytes=100-").getResponseCode())
+                        .isEqualTo(206);
+                assertThat(request(instance, "/video-stream?videoId=" + videoId, "bytes=0-0,100-199")
+                        .getResponseCode())
+                        .isEqualTo(206);
+                assertThat(request(instance, "/video-stream/seek?videoId=" + videoId + "&time=0.2").getResponseCode())
+                        .isEqualTo(206);
+                assertThat(request(instance, "/video-stream/hls/" + videoId + "/0.m4s").getResponseCode())
+                        .isNotEqualTo(307);
+            }
+        }
+    }
+
+    @Test
+    void shouldLetClientsRouteDirectlyToServingInstance() throws IOException {
+        VideoStreamRoutingClient client = new VideoStreamRoutingClient(
+                contexts.get(0).getBean(DiscoveryClient.class), SERVICE_ID, 160, 1.25);
+
+        for (long videoId = 1; videoId <= 10; videoId++) {
+            assertThat(client.getInstanceUri(videoId))
+                    .isEqualTo(findServingInstance("/video-stream?videoId=" + videoId));
+            assertThat(client.getStreamUri(videoId))
+                    .isEqualTo(URI.create(client.getInstanceUri(videoId) + "/video-stream?videoId=" + videoId));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package video.stream.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import com.nimbusds.jose.JOSEException;
+
+import video.stream.MovieNetVideoStreamServiceApplication;
+
+public class ActuatorSecurityTest {
+
+    private static AuthorizationServerStub stub;
+    private static ServletWebServerApplicationContext context;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void startService() throws IOException, JOSEException {
+        stub = new AuthorizationServerStub();
+        context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+                MovieNetVideoStreamServiceApplication.class).run(
+                        "--server.port=0",
+                        "--eureka.client.enabled=false",
+                        "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + stub.getJwkSetUri());
+    }
+
+    @AfterAll
+    static void stopService() {
+        context.close();
+        stub.close();
+    }
+
+    private static int get(String path, String token) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + context.getWebServer().getPort() + path));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Test
+    void shouldRequireTokenForMetrics() throws IOException, InterruptedException, JOSEException {
+        assertThat(get("/actuator/prometheus", null))
+                .isEqualTo(401);
+        assertThat(get("/actuator/prometheus", stub.createToken()))
+                .isEqualTo(200);
+    }
+
+    @Test
+    void shouldServeHealthWithoutToken() throws IOException, InterruptedException {
+        assertThat(get("/actuator/health", null))
+                .isEqualTo(200);
+    }
+}
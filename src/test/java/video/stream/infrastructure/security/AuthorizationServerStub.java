@@ -0,0 +1,80 @@
+package video.stream.infrastructure.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the JWK set of a generated key and signs player tokens with it, for
+ * tests running the service in process. Further contexts can be added to
+ * stand in for other services.
+ */
+public class AuthorizationServerStub implements AutoCloseable {
+
+    private static final String KEY_ID = "test";
+    private static final String JWKS_PATH = "/jwks.json";
+
+    private final RSAKey key;
+    private final HttpServer server;
+
+    public AuthorizationServerStub() throws IOException, JOSEException {
+        this.key = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String jwkSet = new JWKSet(key.toPublicJWK()).toString();
+        server.createContext(JWKS_PATH, exchange -> respond(exchange, jwkSet));
+        server.start();
+    }
+
+    public static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    public void addContext(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+    }
+
+    public String getUri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public String getJwkSetUri() {
+        return getUri() + JWKS_PATH;
+    }
+
+    public String createToken() throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("player")
+                .claim("authorities", List.of("ROLE_USER"))
+                .expirationTime(new Date(System.currentTimeMillis() + 3600_000L))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(KEY_ID).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
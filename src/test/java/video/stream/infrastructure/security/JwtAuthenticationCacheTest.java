@@ -0,0 +1,94 @@
+package video.stream.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import reactor.core.publisher.Mono;
+
+public class JwtAuthenticationCacheTest {
+
+    private final static Instant NOW = Instant.parse("2021-07-01T12:00:00Z");
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger decodedTokens = new AtomicInteger();
+    private final JwtAuthenticationCache authenticationCache = new JwtAuthenticationCache(100,
+            Duration.ofMinutes(10), nanos::get, Clock.fixed(NOW, ZoneOffset.UTC));
+    private final JwtAuthenticationProvider provider = new JwtAuthenticationProvider(token -> {
+        decodedTokens.incrementAndGet();
+        return jwt(token, NOW.plusSeconds(Long.parseLong(token)));
+    });
+
+    @Test
+    void shouldVerifyTokenOnlyOnce() {
+        CachingJwtAuthenticationManager manager = new CachingJwtAuthenticationManager(provider,
+                authenticationCache);
+
+        Authentication first = manager.authenticate(new BearerTokenAuthenticationToken("60"));
+        Authentication second = manager.authenticate(new BearerTokenAuthenticationToken("60"));
+        manager.authenticate(new BearerTokenAuthenticationToken("120"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.isAuthenticated()).isTrue();
+        assertThat(decodedTokens).hasValue(2);
+    }
+
+    @Test
+    void shouldVerifyTokenOnlyOnceReactively() {
+        ReactiveCachingJwtAuthenticationManager manager = new ReactiveCachingJwtAuthenticationManager(
+                authentication -> Mono.fromCallable(() -> provider.authenticate(authentication)),
+                authenticationCache);
+
+        Authentication first = manager.authenticate(new BearerTokenAuthenticationToken("60")).block();
+        Authentication second = manager.authenticate(new BearerTokenAuthenticationToken("60")).block();
+
+        assertThat(second).isSameAs(first);
+        assertThat(decodedTokens).hasValue(1);
+    }
+
+    @Test
+    void shouldExpireAuthenticationWithToken() {
+        authenticationCache.put("token", provider.authenticate(new BearerTokenAuthenticationToken("60")));
+
+        nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertThat(authenticationCache.get("token")).isNotNull();
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(authenticationCache.get("token")).isNull();
+    }
+
+    @Test
+    void shouldExpireLongLivedTokenAfterMaxTimeToLive() {
+        authenticationCache.put("token", provider.authenticate(new BearerTokenAuthenticationToken("86400")));
+
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThat(authenticationCache.get("token")).isNull();
+    }
+
+    @Test
+    void shouldNotCacheExpiredToken() {
+        authenticationCache.put("token", provider.authenticate(new BearerTokenAuthenticationToken("-1")));
+
+        assertThat(authenticationCache.get("token")).isNull();
+        assertThat(authenticationCache.size()).isZero();
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(NOW.minusSeconds(10))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
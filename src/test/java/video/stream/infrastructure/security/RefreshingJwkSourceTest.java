@@ -0,0 +1,154 @@
+package video.stream.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+
+public class RefreshingJwkSourceTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger retrievals = new AtomicInteger();
+    private final AtomicReference<String> jwkSet = new AtomicReference<>();
+    private final AtomicReference<CountDownLatch> gate = new AtomicReference<>(new CountDownLatch(0));
+    private final Callable<String> retriever = () -> {
+        retrievals.incrementAndGet();
+        gate.get().await();
+        String body = jwkSet.get();
+        if (body == null) {
+            throw new IllegalStateException("Authorization server unavailable");
+        }
+        return body;
+    };
+    private final RefreshingJwkSource jwkSource = new RefreshingJwkSource(retriever, Duration.ofMinutes(5),
+            Duration.ofSeconds(30), Duration.ofMillis(500), nanos::get);
+
+    @AfterEach
+    void tearDown() {
+        jwkSource.stop();
+    }
+
+    @Test
+    void shouldServeKeysFromPrefetchedSet() throws Exception {
+        RSAKey key = publish(generateKey("first"));
+        jwkSource.start();
+
+        assertThat(jwkSource.get(selector("first"), null)).containsExactly(key.toPublicJWK());
+        assertThat(jwkSource.get(selector("first"), null)).containsExactly(key.toPublicJWK());
+        assertThat(retrievals).hasValue(1);
+    }
+
+    @Test
+    void shouldRefreshOnUnknownKeyAtMostOncePerInterval() throws Exception {
+        publish(generateKey("first"));
+        jwkSource.start();
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        RSAKey rotated = publish(generateKey("second"));
+
+        assertThat(jwkSource.get(selector("second"), null)).containsExactly(rotated.toPublicJWK());
+        assertThat(jwkSource.get(selector("third"), null)).isEmpty();
+        assertThat(retrievals).hasValue(2);
+
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertThat(jwkSource.get(selector("third"), null)).isEmpty();
+        assertThat(retrievals).hasValue(3);
+    }
+
+    @Test
+    void shouldSurviveUnavailableAuthorizationServerAtStartup() throws Exception {
+        jwkSource.start();
+        RSAKey key = publish(generateKey("first"));
+
+        assertThat(jwkSource.get(selector("first"), null)).isEmpty();
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertThat(jwkSource.get(selector("first"), null)).containsExactly(key.toPublicJWK());
+        assertThat(retrievals).hasValue(2);
+    }
+
+    @Test
+    void shouldReportFailedRefreshOnUnknownKey() {
+        jwkSource.start();
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertThatThrownBy(() -> jwkSource.get(selector("first"), null))
+                .isInstanceOf(KeySourceException.class);
+    }
+
+    @Test
+    void shouldShareRefreshBetweenConcurrentMisses() throws Exception {
+        publish(generateKey("first"));
+        jwkSource.start();
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        RSAKey rotated = publish(generateKey("second"));
+        gate.set(new CountDownLatch(1));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<JWK>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                lookups.add(executor.submit(() -> jwkSource.get(selector("second"), null)));
+            }
+            Thread.sleep(100);
+            gate.get().countDown();
+
+            for (Future<List<JWK>> lookup : lookups) {
+                assertThat(lookup.get()).containsExactly(rotated.toPublicJWK());
+            }
+            assertThat(retrievals).hasValue(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldGiveUpWaitingForHangingAuthorizationServer() throws Exception {
+        RSAKey key = publish(generateKey("first"));
+        jwkSource.start();
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        gate.set(new CountDownLatch(1));
+
+        long startTime = System.nanoTime();
+        assertThatThrownBy(() -> jwkSource.get(selector("second"), null))
+                .isInstanceOf(KeySourceException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime))
+                .isLessThan(Duration.ofSeconds(5));
+        assertThat(jwkSource.get(selector("first"), null)).containsExactly(key.toPublicJWK());
+
+        gate.get().countDown();
+    }
+
+    private RSAKey publish(RSAKey key) {
+        jwkSet.set(new JWKSet(key).toString());
+        return key;
+    }
+
+    private static RSAKey generateKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private static JWKSelector selector(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+}
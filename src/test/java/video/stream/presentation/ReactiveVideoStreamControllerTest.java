@@ -0,0 +1,334 @@
+package video.stream.presentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.nimbusds.jose.JOSEException;
+
+import video.stream.MovieNetVideoStreamServiceApplication;
+import video.stream.application.mp4.Mp4FileBuilder;
+import video.stream.infrastructure.security.AuthorizationServerStub;
+
+/**
+ * Runs the service on the reactive stack against a stub {@code video-service}
+ * resolving video {@code 1} to an MP4 file with its {@code moov} in front and
+ * video {@code 2} to one with its {@code moov} at the end, once for every way
+ * the {@link video.stream.infrastructure.ReactiveContentBodyWriter} writes
+ * file regions.
+ */
+public class ReactiveVideoStreamControllerTest {
+
+    private final static long FASTSTART_VIDEO_ID = 1L;
+    private final static long MOOV_AT_END_VIDEO_ID = 2L;
+    private final static int SAMPLES = 5000;
+    private final static int SAMPLE_SIZE = 400;
+    private final static int KEYFRAME_INTERVAL = 25;
+    private final static int MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+    enum Writer {
+        /**
+         * File regions read through the chunk cache.
+         */
+        CACHED("--video-stream.chunk-cache.enabled=true"),
+        /**
+         * File regions sent as zero-copy file transfers.
+         */
+        ZERO_COPY,
+        /**
+         * File regions read in buffers paced by the bandwidth limits.
+         */
+        SHAPED("--video-stream.bandwidth.per-client=1073741824");
+
+        private final String[] args;
+
+        Writer(String... args) {
+            this.args = args;
+        }
+    }
+
+    @TempDir
+    static Path tempDir;
+
+    private static Mp4FileBuilder faststartBuilder;
+    private static Mp4FileBuilder moovAtEndBuilder;
+    private static byte[] faststartFile;
+    private static AuthorizationServerStub stub;
+    private static String token;
+    private static final Map<Writer, ReactiveWebServerApplicationContext> contexts = new EnumMap<>(Writer.class);
+
+    @BeforeAll
+    static void startService() throws IOException, JOSEException {
+        faststartBuilder = mp4FileBuilder().moovAtEnd(false);
+        moovAtEndBuilder = mp4FileBuilder();
+        Path faststartPath = faststartBuilder.write(tempDir.resolve("faststart.mp4"));
+        Path moovAtEndPath = moovAtEndBuilder.write(tempDir.resolve("moovAtEnd.mp4"));
+        faststartFile = Files.readAllBytes(faststartPath);
+        stub = new AuthorizationServerStub();
+        stub.addContext("/video/path", exchange -> {
+            Path file = exchange.getRequestURI().getQuery().equals("videoId=" + MOOV_AT_END_VIDEO_ID)
+                    ? moovAtEndPath
+                    : faststartPath;
+            AuthorizationServerStub.respond(exchange,
+                    "{\"path\":\"" + file.toAbsolutePath().toString().replace("\\", "\\\\") + "\"}");
+        });
+        token = stub.createToken();
+        for (Writer writer : Writer.values()) {
+            List<String> args = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.main.web-application-type=reactive",
+                    "--eureka.client.enabled=false",
+                    "--spring.cloud.discovery.client.simple.instances.video-service[0].uri=" + stub.getUri(),
+                    "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + stub.getJwkSetUri()));
+            args.addAll(Arrays.asList(writer.args));
+            contexts.put(writer, (ReactiveWebServerApplicationContext) new SpringApplicationBuilder(
+                    MovieNetVideoStreamServiceApplication.class).run(args.toArray(new String[0])));
+        }
+    }
+
+    @AfterAll
+    static void stopService() {
+        contexts.values().forEach(ReactiveWebServerApplicationContext::close);
+        stub.close();
+    }
+
+    private static Mp4FileBuilder mp4FileBuilder() {
+        int[] sampleSizes = new int[SAMPLES];
+        Arrays.fill(sampleSizes, SAMPLE_SIZE);
+        int[] keyframes = new int[SAMPLES / KEYFRAME_INTERVAL];
+        for (int i = 0; i < keyframes.length; i++) {
+            keyframes[i] = i * KEYFRAME_INTERVAL + 1;
+        }
+        return new Mp4FileBuilder()
+                .sampleSizes(sampleSizes)
+                .keyframes(keyframes)
+                .samplesPerChunk(KEYFRAME_INTERVAL);
+    }
+
+    private static WebTestClient client(Writer writer) {
+        return WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + contexts.get(writer).getWebServer().getPort())
+                .defaultHeaders(headers -> headers.setBearerAuth(token))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_BODY_SIZE))
+                .build();
+    }
+
+    private static EntityExchangeResult<byte[]> get(Writer writer, long videoId, String range,
+            HttpHeaders conditions) {
+        return client(writer).get()
+                .uri("/video-stream?videoId={videoId}", videoId)
+                .header(HttpHeaders.RANGE, range)
+                .headers(headers -> headers.addAll(conditions))
+                .exchange()
+                .expectBody(byte[].class)
+                .returnResult();
+    }
+
+    private static EntityExchangeResult<byte[]> get(Writer writer, long videoId, String range) {
+        return get(writer, videoId, range, new HttpHeaders());
+    }
+
+    private static byte[] slice(long start, long end) {
+        return Arrays.copyOfRange(faststartFile, (int) start, (int) end + 1);
+    }
+
+    private static byte[] prepareMultipartBody(String boundary, long... ranges) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < ranges.length; i += 2) {
+            outputStream.write(("--" + boundary + "\r\n"
+                    + "Content-Type: video/mp4\r\n"
+                    + "Content-Range: bytes " + ranges[i] + "-" + ranges[i + 1] + "/" + faststartFile.length + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(slice(ranges[i], ranges[i + 1]));
+            outputStream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        outputStream.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return outputStream.toByteArray();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldServeRange(Writer writer) {
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID, "bytes=500000-599999");
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 500000-599999/" + faststartFile.length);
+        assertThat(response.getResponseHeaders().getContentLength())
+                .isEqualTo(100000);
+        assertThat(response.getResponseBody())
+                .isEqualTo(slice(500000, 599999));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldServeChunkOfOpenEndedRange(Writer writer) {
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID, "bytes=100000-");
+        byte[] body = response.getResponseBody();
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 100000-" + (100000 + body.length - 1) + "/" + faststartFile.length);
+        assertThat(body)
+                .isEqualTo(slice(100000, 100000 + body.length - 1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldServeMultipartContentForSeveralRanges(Writer writer) throws IOException {
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID, "bytes=700000-799999, 0-99");
+        MediaType contentType = response.getResponseHeaders().getContentType();
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(contentType.toString())
+                .startsWith("multipart/byteranges");
+        assertThat(response.getResponseBody())
+                .isEqualTo(prepareMultipartBody(contentType.getParameter("boundary"), 0, 99, 700000, 799999));
+        assertThat(response.getResponseHeaders().getContentLength())
+                .isEqualTo(response.getResponseBody().length);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldServeRelocatedHeaderAndSamplesOfMp4WithMoovAtEnd(Writer writer) {
+        long headerSize = moovAtEndBuilder.getSampleOffset(0) - 8 + moovAtEndBuilder.getMoovSize();
+
+        EntityExchangeResult<byte[]> response = get(writer, MOOV_AT_END_VIDEO_ID,
+                "bytes=" + (headerSize - 100) + "-" + (headerSize + 199));
+        byte[] body = response.getResponseBody();
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(body)
+                .hasSize(300);
+        assertThat(new String(body, 104, 4, StandardCharsets.US_ASCII))
+                .isEqualTo("mdat");
+        assertThat(Arrays.copyOfRange(body, 108, 300))
+                .containsOnly(Mp4FileBuilder.sampleByte(0));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldStreamFromKeyframeBeforeSeekTime(Writer writer) {
+        int keyframe = 10 * KEYFRAME_INTERVAL;
+
+        EntityExchangeResult<byte[]> response = client(writer).get()
+                .uri("/video-stream/seek?videoId={videoId}&time={time}", FASTSTART_VIDEO_ID, 10.5)
+                .exchange()
+                .expectBody(byte[].class)
+                .returnResult();
+        byte[] body = response.getResponseBody();
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getResponseHeaders().getFirst("X-Keyframe-Time"))
+                .isEqualTo("10.0");
+        assertThat(response.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .startsWith("bytes " + faststartBuilder.getSampleOffset(keyframe) + "-");
+        assertThat(body)
+                .isEqualTo(slice(faststartBuilder.getSampleOffset(keyframe),
+                        faststartBuilder.getSampleOffset(keyframe) + body.length - 1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldRespondNotModifiedIfNoneMatchesCurrentVersion(Writer writer) {
+        String entityTag = get(writer, FASTSTART_VIDEO_ID, "bytes=0-99").getResponseHeaders().getETag();
+        HttpHeaders conditions = new HttpHeaders();
+        conditions.setIfNoneMatch(entityTag);
+
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID, "bytes=0-99", conditions);
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getResponseHeaders().getETag())
+                .isEqualTo(entityTag);
+        assertThat(response.getResponseBody())
+                .isNull();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldServeWholeFileIfIfRangeValidatorIsStale(Writer writer) {
+        HttpHeaders conditions = new HttpHeaders();
+        conditions.set(HttpHeaders.IF_RANGE, "\"stale\"");
+
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID, "bytes=1000-1999", conditions);
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(response.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isNull();
+        assertThat(response.getResponseBody())
+                .isEqualTo(faststartFile);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldRespondWithRangeNotSatisfiableIfRangeStartsBeyondEndOfFile(Writer writer) {
+        EntityExchangeResult<byte[]> response = get(writer, FASTSTART_VIDEO_ID,
+                "bytes=" + faststartFile.length + "-");
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes */" + faststartFile.length);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Writer.class)
+    void shouldRejectRequestsWithoutToken(Writer writer) {
+        WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + contexts.get(writer).getWebServer().getPort())
+                .build()
+                .get()
+                .uri("/video-stream?videoId={videoId}", FASTSTART_VIDEO_ID)
+                .header(HttpHeaders.RANGE, "bytes=0-")
+                .exchange()
+                .expectStatus()
+                .isUnauthorized();
+    }
+
+    @Test
+    void shouldRequireTokenForMetrics() {
+        WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + contexts.get(Writer.ZERO_COPY).getWebServer().getPort())
+                .build()
+                .get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus()
+                .isUnauthorized();
+        client(Writer.ZERO_COPY).get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+}